@@ -0,0 +1,216 @@
+import java.util.*;
+
+/*
+ * Adaptive search of the number of demands at which the failure probability of a trial crosses targetFailureRate.
+ * The load is first bracketed (the step doubles until a load above the target is found, up to maxNumDemands), then the
+ * bracket is bisected down to the resolution. If the failure rate is still below the target at maxNumDemands the
+ * search stops there and the estimate is not bracketed. At each load point trials are run in parallel batches until
+ * the Wilson confidence interval of the failure rate is on one side of the target, or its half width is at most
+ * maxHalfWidth, or maxTrialsPerPoint is reached. The estimated limit is the linear interpolation between the last two
+ * load points, with the bracket as error bar. A trial that ended with an error is not counted, it aborts the search.
+ */
+public class AdaptiveSweep {
+    // z of the two sided 95% confidence interval, also of the paired differences of ScenarioComparison
+    static final double Z = 1.96;
+
+    private final TrialRunner runner;
+    private final double targetFailureRate;
+    private final double maxHalfWidth;
+    private final int maxTrialsPerPoint;
+    private final int batchSize;
+    private final int maxNumDemands;
+    // load points already estimated, by number of demands
+    private final SortedMap<Integer, LoadPoint> loadPoints = new TreeMap<>();
+
+    public AdaptiveSweep(SweepRunner runner, double targetFailureRate, double maxHalfWidth, int maxTrialsPerPoint, int batchSize, int maxNumDemands) {
+        this(runner::runTrials, targetFailureRate, maxHalfWidth, maxTrialsPerPoint, batchSize, maxNumDemands);
+    }
+
+    AdaptiveSweep(TrialRunner runner, double targetFailureRate, double maxHalfWidth, int maxTrialsPerPoint, int batchSize, int maxNumDemands) {
+        if (maxTrialsPerPoint <= 0) throw new IllegalArgumentException("The maximum number of trials per load point must be positive: " + maxTrialsPerPoint);
+        this.runner = runner;
+        this.targetFailureRate = targetFailureRate;
+        this.maxHalfWidth = maxHalfWidth;
+        this.maxTrialsPerPoint = maxTrialsPerPoint;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxNumDemands = maxNumDemands;
+    }
+
+    /*
+     * run method
+     * Searches the limit starting from startNumDemands, with resolution demands of precision (also the first bracket step)
+     */
+    public Estimate run(int startNumDemands, int resolution, String outputFolder) {
+        // a zero step would never leave the first load point
+        if (resolution <= 0) throw new IllegalArgumentException("The resolution must be a positive number of demands: " + resolution);
+        LoadPoint lower = null;
+        LoadPoint upper;
+        LoadPoint first = estimate(startNumDemands, outputFolder);
+
+        // bracket: [lower, upper] with lower below and upper above the target
+        if (!first.isAboveTarget()) {
+            lower = first;
+            int step = resolution;
+            while (true) {
+                // the failure rate does not reach the target up to the maximum load
+                if (lower.getNumberOfDemands() >= maxNumDemands) return new Estimate(Double.NaN, 0, lower, null, getTotalTrials());
+                LoadPoint point = estimate((int) Math.min((long) lower.getNumberOfDemands() + step, maxNumDemands), outputFolder);
+                if (point.isAboveTarget()) {
+                    upper = point;
+                    break;
+                }
+                lower = point;
+                step = (int) Math.min(2L * step, Integer.MAX_VALUE);
+            }
+        } else {
+            upper = first;
+            int step = resolution;
+            // the step doubles down to the smallest load, resolution demands, which is tried before giving up
+            while (upper.getNumberOfDemands() > resolution) {
+                LoadPoint point = estimate(Math.max(resolution, upper.getNumberOfDemands() - step), outputFolder);
+                if (!point.isAboveTarget()) {
+                    lower = point;
+                    break;
+                }
+                upper = point;
+                step = (int) Math.min(2L * step, Integer.MAX_VALUE);
+            }
+            // even the smallest load fails too often, the limit is below the resolution
+            if (lower == null) return new Estimate(0, upper.getNumberOfDemands(), null, upper, getTotalTrials());
+        }
+
+        // bisection down to the resolution
+        while (upper.getNumberOfDemands() - lower.getNumberOfDemands() > resolution) {
+            int steps = (upper.getNumberOfDemands() - lower.getNumberOfDemands() + resolution - 1) / resolution;
+            LoadPoint point = estimate(lower.getNumberOfDemands() + (steps / 2) * resolution, outputFolder);
+            if (point.isAboveTarget()) upper = point;
+            else lower = point;
+        }
+
+        // linear interpolation of the failure rate between the two points
+        double lowerRate = lower.getFailureRate();
+        double upperRate = upper.getFailureRate();
+        double fraction = upperRate > lowerRate ? (targetFailureRate - lowerRate) / (upperRate - lowerRate) : 0.5;
+        fraction = Math.max(0, Math.min(1, fraction));
+        double limit = lower.getNumberOfDemands() + fraction * (upper.getNumberOfDemands() - lower.getNumberOfDemands());
+        return new Estimate(limit, upper.getNumberOfDemands() - lower.getNumberOfDemands(), lower, upper, getTotalTrials());
+    }
+
+    private LoadPoint estimate(int numDemands, String outputFolder) {
+        LoadPoint point = loadPoints.computeIfAbsent(numDemands, LoadPoint::new);
+        while (!point.isDecided()) {
+            int count = Math.min(batchSize, maxTrialsPerPoint - point.getTrials());
+            for (SweepRunner.TrialResult result : runner.runTrials(numDemands, point.getTrials(), count, outputFolder)) {
+                point.add(!SweepRunner.checkNotError(result).isSuccess());
+            }
+        }
+        System.out.println(numDemands + " demands: " + point);
+        return point;
+    }
+
+    private int getTotalTrials() {
+        int trials = 0;
+        for (LoadPoint point : loadPoints.values()) trials += point.getTrials();
+        return trials;
+    }
+
+    /*
+     * wilsonInterval method
+     * Wilson score interval {low, high} of a proportion of failures on trials
+     */
+    static double[] wilsonInterval(int failures, int trials) {
+        if (trials == 0) return new double[] { 0, 1 };
+        double p = (double) failures / trials;
+        double z2 = Z * Z;
+        double denominator = 1 + z2 / trials;
+        double center = (p + z2 / (2.0 * trials)) / denominator;
+        double halfWidth = Z * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+        return new double[] { Math.max(0, center - halfWidth), Math.min(1, center + halfWidth) };
+    }
+
+    /*
+     * Source of the trials of a load point, SweepRunner.runTrials: count trials from firstIteration at numDemands, results
+     * in iteration order
+     */
+    interface TrialRunner {
+        List<SweepRunner.TrialResult> runTrials(int numDemands, int firstIteration, int count, String outputFolder);
+    }
+
+    /*
+     * Failure rate estimate at a number of demands
+     */
+    public class LoadPoint {
+        private final int numberOfDemands;
+        private int trials;
+        private int failures;
+
+        LoadPoint(int numberOfDemands) {
+            this.numberOfDemands = numberOfDemands;
+        }
+
+        void add(boolean failure) {
+            trials++;
+            if (failure) failures++;
+        }
+
+        public int getNumberOfDemands() { return numberOfDemands; }
+        public int getTrials() { return trials; }
+        public int getFailures() { return failures; }
+        public double getFailureRate() { return trials == 0 ? 0 : (double) failures / trials; }
+        public double[] getConfidenceInterval() { return wilsonInterval(failures, trials); }
+
+        // the confidence interval is on one side of the target, or tight enough, or no more trials are allowed
+        boolean isDecided() {
+            if (trials >= maxTrialsPerPoint) return true;
+            if (trials == 0) return false;
+            double[] interval = getConfidenceInterval();
+            return interval[1] < targetFailureRate || interval[0] > targetFailureRate || (interval[1] - interval[0]) / 2 <= maxHalfWidth;
+        }
+
+        boolean isAboveTarget() { return getFailureRate() >= targetFailureRate; }
+
+        @Override
+        public String toString() {
+            double[] interval = getConfidenceInterval();
+            return String.format(Locale.ROOT, "failure rate %.3f [%.3f, %.3f] on %d trials", getFailureRate(), interval[0], interval[1], trials);
+        }
+    }
+
+    /*
+     * Estimated number of demands at which the failure rate crosses the target, with error bar and the two load points
+     * around it (lower is null if even the smallest load fails too often). If the target is not reached up to the
+     * maximum load the estimate is not bracketed: upper is null, lower is the maximum load and the number is NaN
+     */
+    public static class Estimate {
+        private final double numberOfDemands;
+        private final int errorBar;
+        private final LoadPoint lower;
+        private final LoadPoint upper;
+        private final int totalTrials;
+
+        Estimate(double numberOfDemands, int errorBar, LoadPoint lower, LoadPoint upper, int totalTrials) {
+            this.numberOfDemands = numberOfDemands;
+            this.errorBar = errorBar;
+            this.lower = lower;
+            this.upper = upper;
+            this.totalTrials = totalTrials;
+        }
+
+        public double getNumberOfDemands() { return numberOfDemands; }
+        // width of the final bracket, the limit lies within [lower, upper]
+        public int getErrorBar() { return errorBar; }
+        public LoadPoint getLower() { return lower; }
+        public LoadPoint getUpper() { return upper; }
+        public int getTotalTrials() { return totalTrials; }
+        public boolean isBracketed() { return upper != null; }
+
+        @Override
+        public String toString() {
+            if (!isBracketed())
+                return String.format(Locale.ROOT, "Limit not bracketed: %s at the maximum load of %d demands, below the target, after %d trials", lower, lower.getNumberOfDemands(), totalTrials);
+            String bracket = lower == null ? "below " + upper.getNumberOfDemands()
+                    : "within [" + lower.getNumberOfDemands() + ", " + upper.getNumberOfDemands() + "]";
+            return String.format(Locale.ROOT, "Estimated limit: %.0f demands, %s, after %d trials", numberOfDemands, bracket, totalTrials);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import java.util.SplittableRandom;
+
+/*
+ * Walker's alias table: samples an index with the given probabilities in O(1), one random int and one random double
+ * per sample, after an O(n) construction.
+ */
+public class AliasTable {
+    private final double[] probability;
+    private final int[] alias;
+
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        double sum = 0;
+        for (double weight : weights) sum += weight;
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int numSmall = 0;
+        int numLarge = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) small[numSmall++] = i;
+            else large[numLarge++] = i;
+        }
+        while (numSmall > 0 && numLarge > 0) {
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) small[numSmall++] = more;
+            else large[numLarge++] = more;
+        }
+        // what is left has probability 1 up to rounding errors
+        while (numLarge > 0) probability[large[--numLarge]] = 1;
+        while (numSmall > 0) probability[small[--numSmall]] = 1;
+    }
+
+    public int sample(SplittableRandom random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+}
@@ -0,0 +1,166 @@
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/*
+ * Candidate path list of a topology stored on disk, so that the k shortest paths are computed only by the first run.
+ * The file name is the SHA-256 of what the paths depend on: the nodes, the origin, destination, length and propagation
+ * speed of every WDM link, k and the propagation delay limit.
+ * File format (big endian): magic, version, file length, hash, number of nodes, one offset per node pair (origin *
+ * numberOfNodes + destination, -1 if no paths), then for every pair the number of paths and for each path its number
+ * of links and the link indexes, all as variable length ints (7 bits per byte).
+ * The file is memory mapped and the paths of a pair are decoded the first time they are read.
+ */
+public class CandidatePathStore {
+    private static final int MAGIC = 0x43504C53; // "CPLS"
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 32;
+    // magic, version, file length, hash, number of nodes
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + HASH_LENGTH + 4;
+
+    private final ByteBuffer buffer;
+    private final int numberOfNodes;
+
+    private CandidatePathStore(ByteBuffer buffer, int numberOfNodes) {
+        this.buffer = buffer;
+        this.numberOfNodes = numberOfNodes;
+    }
+
+    /*
+     * hash method
+     * SHA-256 of the data the candidate paths depend on
+     */
+    public static byte[] hash(NetPlan netPlan, NetworkLayer wdmLayer, int k, double maxPropagationDelayMs) {
+        ByteBuffer data = ByteBuffer.allocate(4 * 4 + 8 + netPlan.getNumberOfLinks(wdmLayer) * (4 + 4 + 8 + 8));
+        data.putInt(VERSION).putInt(netPlan.getNumberOfNodes()).putInt(netPlan.getNumberOfLinks(wdmLayer));
+        data.putInt(k).putDouble(maxPropagationDelayMs);
+        for (Link link : netPlan.getLinks(wdmLayer)) {
+            data.putInt(link.getOriginNode().getIndex()).putInt(link.getDestinationNode().getIndex());
+            data.putDouble(link.getLengthInKm()).putDouble(link.getPropagationSpeedInKmPerSecond());
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data.array());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // file of the paths with the given hash in folder
+    public static Path file(Path folder, byte[] hash) {
+        StringBuilder name = new StringBuilder("paths-");
+        for (int i = 0; i < 8; i++) name.append(String.format("%02x", hash[i]));
+        return folder.resolve(name.append(".bin").toString());
+    }
+
+    /*
+     * open method
+     * Maps the file written for hash, null if it does not exist or is not a complete file for that hash
+     */
+    public static CandidatePathStore open(Path file, byte[] hash) {
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != channel.size()) return null;
+            byte[] storedHash = new byte[HASH_LENGTH];
+            for (int i = 0; i < HASH_LENGTH; i++) storedHash[i] = buffer.get(16 + i);
+            if (!Arrays.equals(storedHash, hash)) return null;
+            int numberOfNodes = buffer.getInt(16 + HASH_LENGTH);
+            if (HEADER_LENGTH + 4L * numberOfNodes * numberOfNodes > channel.size()) return null;
+            return new CandidatePathStore(buffer, numberOfNodes);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /*
+     * write method
+     * Writes candidatePaths[origin * numberOfNodes + destination][path][link] to file. The file is written under a
+     * temporary name and then renamed, so concurrent runs never read a partial file
+     */
+    public static void write(Path file, byte[] hash, int numberOfNodes, int[][][] candidatePaths) throws IOException {
+        int tableLength = 4 * numberOfNodes * numberOfNodes;
+        int[] offsets = new int[numberOfNodes * numberOfNodes];
+        Arrays.fill(offsets, -1);
+        VarIntOutput records = new VarIntOutput();
+        for (int pair = 0; pair < candidatePaths.length; pair++) {
+            if (candidatePaths[pair] == null) continue;
+            offsets[pair] = HEADER_LENGTH + tableLength + records.size();
+            records.writeVarInt(candidatePaths[pair].length);
+            for (int[] path : candidatePaths[pair]) {
+                records.writeVarInt(path.length);
+                for (int link : path) records.writeVarInt(link);
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + tableLength);
+        header.putInt(MAGIC).putInt(VERSION).putLong((long) HEADER_LENGTH + tableLength + records.size());
+        header.put(hash).putInt(numberOfNodes);
+        for (int offset : offsets) header.putInt(offset);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                out.write(header.array());
+                records.writeTo(out);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /*
+     * read method
+     * Decodes the candidate paths of a node pair (origin * numberOfNodes + destination), null if none
+     */
+    public int[][] read(int pair) {
+        int position = buffer.getInt(HEADER_LENGTH + 4 * pair);
+        if (position < 0) return null;
+        int[] cursor = { position };
+        int[][] paths = new int[readVarInt(cursor)][];
+        for (int p = 0; p < paths.length; p++) {
+            paths[p] = new int[readVarInt(cursor)];
+            for (int l = 0; l < paths[p].length; l++) paths[p][l] = readVarInt(cursor);
+        }
+        return paths;
+    }
+
+    public int getNumberOfNodes() { return numberOfNodes; }
+
+    // absolute reads, the buffer is shared by concurrent readers
+    private int readVarInt(int[] cursor) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(cursor[0]++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static class VarIntOutput extends ByteArrayOutputStream {
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/*
+ * Discrete-event mode of the heuristic: demands arrive as a Poisson process, with the traffic classes, destinations and
+ * QoS of TrafficGenerator, and depart after a holding time (mean 1), so the offered load in Erlangs is the arrival rate.
+ * Only the events are handled here. Each arrival is routed by the PathAllocator of the heuristic, the same policy and
+ * code of the offline routing (candidate path evaluation, parallel mode, spectrum policy, profile), on the
+ * LightpathPlan of the run. A demand that can not be routed is blocked. A departure releases its traffic from the
+ * plan, which tears down the lightpaths left empty and frees their slots.
+ * The lightpaths of each routed demand (connection) are kept by id with the ids of the departed ones reused, and the
+ * departures wait in an EventQueue, so no NetPlan object is created. Blocking and time averages are measured on the
+ * arrivals after the warm-up ones.
+ */
+public class DynamicTrafficSimulation {
+    public static final String HOLDING_TIME_EXPONENTIAL = "exponential";
+    public static final String HOLDING_TIME_DETERMINISTIC = "deterministic";
+    // Gbps of each demand, as the ones added by TrafficGenerator.generate
+    private static final double DEMAND_TRAFFIC = 100.0;
+    // demands drawn from the traffic generator at a time
+    private static final int TRAFFIC_BATCH = 4096;
+
+    /*
+     * Routing of an arrival: the lightpath of each segment of the chosen path, created in the plan if needed, or null
+     * if the demand is blocked. The traffic is added to them by the simulation
+     */
+    public interface PathAllocator {
+        int[] allocatePath(int origin, int destination, double traffic);
+    }
+
+    private final LightpathPlan plan;
+    private final PathAllocator allocator;
+    private final SpectrumOccupancy spectrum;
+    private final TrafficGenerator trafficGenerator;
+    private final SplittableRandom timeRandom;
+    private final double arrivalRate;
+    private final boolean exponentialHoldingTime;
+    private final long totalSlots;
+
+    // lightpath used by each segment of the path of every routed demand (connection), by connection id
+    private int[][] connectionLightpaths = new int[64][];
+    private int numConnectionIds;
+    private int[] freeConnectionIds = new int[64];
+    private int numFreeConnectionIds;
+    private final EventQueue departures = new EventQueue(1024);
+
+    private double now;
+    private boolean measuring;
+    private int activeConnections;
+
+    // measured after the warm-up
+    private long arrivals;
+    private long blocked;
+    private long priorityArrivals;
+    private long priorityBlocked;
+    private long lightpathsCreatedBefore;
+    private long lightpathsTornDownBefore;
+    private int maxActiveLightpaths;
+    private double measuredTime;
+    private double activeConnectionsArea;
+    private double activeLightpathsArea;
+    private double occupiedSlotsArea;
+    // all the events processed, warm-up included
+    private long events;
+
+    /*
+     * Arrivals are routed by allocator on plan, whose lightpaths use the slots of spectrum (empty at the start). The
+     * traffic generator draws the demands, random the interarrival and holding times
+     */
+    public DynamicTrafficSimulation(LightpathPlan plan, PathAllocator allocator, SpectrumOccupancy spectrum, int numberOfFibers, TrafficGenerator trafficGenerator, SplittableRandom random, double loadInErlangs, String holdingTimeDistribution) {
+        if (!(loadInErlangs > 0)) throw new IllegalArgumentException("The offered load must be positive: " + loadInErlangs);
+        if (!holdingTimeDistribution.equals(HOLDING_TIME_EXPONENTIAL) && !holdingTimeDistribution.equals(HOLDING_TIME_DETERMINISTIC))
+            throw new IllegalArgumentException("Unknown holding time distribution: " + holdingTimeDistribution);
+        this.plan = plan;
+        this.allocator = allocator;
+        this.spectrum = spectrum;
+        this.trafficGenerator = trafficGenerator;
+        this.timeRandom = random;
+        this.arrivalRate = loadInErlangs;
+        this.exponentialHoldingTime = holdingTimeDistribution.equals(HOLDING_TIME_EXPONENTIAL);
+        this.totalSlots = (long) numberOfFibers * spectrum.getNumberOfSlots();
+    }
+
+    /*
+     * run method
+     * Processes warmupArrivals arrivals, then measuredArrivals more measuring the blocking and the time averages, with
+     * all the departures due before each arrival
+     */
+    public void run(long warmupArrivals, long measuredArrivals) {
+        TrafficMatrix traffic = null;
+        int nextDemand = 0;
+        double nextArrival = now + exponential() / arrivalRate;
+        for (long arrival = 0; arrival < warmupArrivals + measuredArrivals; arrival++) {
+            while (departures.peekTime() <= nextArrival) {
+                advanceTo(departures.peekTime());
+                depart(departures.poll());
+                events++;
+            }
+            advanceTo(nextArrival);
+            if (arrival == warmupArrivals) {
+                measuring = true;
+                lightpathsCreatedBefore = plan.getLightpathsCreated();
+                lightpathsTornDownBefore = plan.getLightpathsTornDown();
+                maxActiveLightpaths = plan.getNumberOfActiveLightpaths();
+            }
+
+            if (traffic == null || nextDemand == traffic.size()) {
+                traffic = trafficGenerator.generateMatrix(TRAFFIC_BATCH);
+                nextDemand = 0;
+            }
+            boolean priority = traffic.isPriority(nextDemand);
+            int connection = arrive(traffic.getSource(nextDemand), traffic.getDestination(nextDemand), DEMAND_TRAFFIC);
+            nextDemand++;
+            if (connection >= 0) departures.add(now + (exponentialHoldingTime ? exponential() : 1), connection);
+            if (measuring) {
+                arrivals++;
+                if (priority) priorityArrivals++;
+                if (connection < 0) {
+                    blocked++;
+                    if (priority) priorityBlocked++;
+                }
+                maxActiveLightpaths = Math.max(maxActiveLightpaths, plan.getNumberOfActiveLightpaths());
+            }
+            events++;
+            nextArrival = now + exponential() / arrivalRate;
+        }
+    }
+
+    /*
+     * arrive method
+     * Routes a demand on the current state, returns its connection id or -1 if it is blocked
+     */
+    private int arrive(int origin, int destination, double traffic) {
+        int[] lightpaths = allocator.allocatePath(origin, destination, traffic);
+        if (lightpaths == null) return -1;
+        plan.addTraffic(traffic, lightpaths);
+        activeConnections++;
+        return addConnection(lightpaths);
+    }
+
+    /*
+     * depart method
+     * Releases the traffic of a connection, the plan tears down its lightpaths left without traffic
+     */
+    private void depart(int connection) {
+        plan.releaseTraffic(DEMAND_TRAFFIC, connectionLightpaths[connection], spectrum);
+        connectionLightpaths[connection] = null;
+        if (numFreeConnectionIds == freeConnectionIds.length) freeConnectionIds = Arrays.copyOf(freeConnectionIds, 2 * numFreeConnectionIds);
+        freeConnectionIds[numFreeConnectionIds++] = connection;
+        activeConnections--;
+    }
+
+    private int addConnection(int[] lightpaths) {
+        int connection;
+        if (numFreeConnectionIds > 0) {
+            connection = freeConnectionIds[--numFreeConnectionIds];
+        } else {
+            connection = numConnectionIds++;
+            if (connection == connectionLightpaths.length) connectionLightpaths = Arrays.copyOf(connectionLightpaths, 2 * connection);
+        }
+        connectionLightpaths[connection] = lightpaths;
+        return connection;
+    }
+
+    // moves the clock, adding the time since the last event to the time averages if measuring
+    private void advanceTo(double time) {
+        if (measuring) {
+            double elapsed = time - now;
+            measuredTime += elapsed;
+            activeConnectionsArea += activeConnections * elapsed;
+            activeLightpathsArea += plan.getNumberOfActiveLightpaths() * elapsed;
+            occupiedSlotsArea += plan.getOccupiedSlots() * elapsed;
+        }
+        now = time;
+    }
+
+    // exponential random value of mean 1
+    private double exponential() {
+        return -Math.log(1 - timeRandom.nextDouble());
+    }
+
+    public long getArrivals() { return arrivals; }
+    public long getBlocked() { return blocked; }
+    public long getEvents() { return events; }
+    public double getBlockingProbability() { return arrivals == 0 ? 0 : (double) blocked / arrivals; }
+
+    /*
+     * addTo method
+     * Adds the blocking, the time averages and the counts measured after the warm-up to a result record
+     */
+    public void addTo(Map<String, Object> record) {
+        record.put("arrivals", arrivals);
+        record.put("blocked", blocked);
+        record.put("blocking_probability", getBlockingProbability());
+        record.put("priority_arrivals", priorityArrivals);
+        record.put("priority_blocked", priorityBlocked);
+        record.put("best_effort_arrivals", arrivals - priorityArrivals);
+        record.put("best_effort_blocked", blocked - priorityBlocked);
+        record.put("mean_active_demands", measuredTime > 0 ? activeConnectionsArea / measuredTime : 0);
+        record.put("mean_active_lightpaths", measuredTime > 0 ? activeLightpathsArea / measuredTime : 0);
+        record.put("max_active_lightpaths", maxActiveLightpaths);
+        record.put("mean_spectrum_utilization", measuredTime > 0 ? occupiedSlotsArea / measuredTime / totalSlots : 0);
+        record.put("lightpaths_created", measuring ? plan.getLightpathsCreated() - lightpathsCreatedBefore : 0);
+        record.put("lightpaths_torn_down", measuring ? plan.getLightpathsTornDown() - lightpathsTornDownBefore : 0);
+        record.put("simulated_time", measuredTime);
+        record.put("events", events);
+    }
+}
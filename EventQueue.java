@@ -0,0 +1,66 @@
+import java.util.Arrays;
+
+/*
+ * Pending events of DynamicTrafficSimulation as a binary min-heap on primitive arrays: the time of each event and an
+ * int payload (the connection of a departure). Adding and removing an event is O(log n) without allocating, the arrays
+ * only grow when the queue is larger than ever before.
+ */
+public class EventQueue {
+    private double[] times;
+    private int[] payloads;
+    private int size;
+
+    public EventQueue(int initialCapacity) {
+        this.times = new double[Math.max(1, initialCapacity)];
+        this.payloads = new int[times.length];
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void add(double time, int payload) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, 2 * size);
+            payloads = Arrays.copyOf(payloads, 2 * size);
+        }
+        // sift up from the new leaf
+        int child = size++;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (times[parent] <= time) break;
+            times[child] = times[parent];
+            payloads[child] = payloads[parent];
+            child = parent;
+        }
+        times[child] = time;
+        payloads[child] = payload;
+    }
+
+    // time of the next event, +infinity if the queue is empty
+    public double peekTime() {
+        return size == 0 ? Double.POSITIVE_INFINITY : times[0];
+    }
+
+    /*
+     * poll method
+     * Removes the next event and returns its payload, the queue must not be empty
+     */
+    public int poll() {
+        int payload = payloads[0];
+        double lastTime = times[--size];
+        int lastPayload = payloads[size];
+        // sift down the last leaf from the root
+        int parent = 0;
+        int child;
+        while ((child = 2 * parent + 1) < size) {
+            if (child + 1 < size && times[child + 1] < times[child]) child++;
+            if (lastTime <= times[child]) break;
+            times[parent] = times[child];
+            payloads[parent] = payloads[child];
+            parent = child;
+        }
+        times[parent] = lastTime;
+        payloads[parent] = lastPayload;
+        return payload;
+    }
+}
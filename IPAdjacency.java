@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/*
+ * IP links of a LightpathPlan grouped by node pair, only for the pairs with at least one link: the IPLinkCapacityIndex
+ * of a pair is created with its first lightpath. The pairs are found through an open addressing table keyed by the long
+ * origin << 32 | destination (node indexes), so a lookup does not allocate, and the pairs leaving each node are
+ * chained in creation order. Memory grows with the pairs actually used, not with the square of the number of nodes.
+ * Lookups can run concurrently with each other, not with getOrCreate.
+ */
+public class IPAdjacency {
+    private static final long NO_KEY = -1L;
+
+    // open addressing table (linear probing) from the key of a pair to its position in the arrays below
+    private long[] keys;
+    private int[] positions;
+    private int mask;
+
+    // pairs in creation order
+    private IPLinkCapacityIndex[] indexes;
+    private int[] destinations;
+    // next pair with the same origin, -1 at the end of the chain
+    private int[] nextFromOrigin;
+    private int numberOfPairs;
+
+    // firstFromOrigin[node] = first pair leaving the node, -1 if none
+    private final int[] firstFromOrigin;
+    private final int[] lastFromOrigin;
+
+    public IPAdjacency(int numberOfNodes) {
+        this.firstFromOrigin = new int[numberOfNodes];
+        this.lastFromOrigin = new int[numberOfNodes];
+        Arrays.fill(firstFromOrigin, -1);
+        Arrays.fill(lastFromOrigin, -1);
+        int capacity = 16;
+        this.keys = new long[capacity];
+        this.positions = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, NO_KEY);
+        this.indexes = new IPLinkCapacityIndex[capacity / 2];
+        this.destinations = new int[capacity / 2];
+        this.nextFromOrigin = new int[capacity / 2];
+    }
+
+    private static long key(int origin, int destination) {
+        return ((long) origin << 32) | destination;
+    }
+
+    /*
+     * get method
+     * Returns the IP links from origin to destination, null if no lightpath was created between them
+     */
+    public IPLinkCapacityIndex get(int origin, int destination) {
+        int position = find(key(origin, destination));
+        return position < 0 ? null : indexes[position];
+    }
+
+    /*
+     * hasSpareCapacity method
+     * True if one of the IP links from origin to destination can carry the given traffic
+     */
+    public boolean hasSpareCapacity(int origin, int destination, double traffic) {
+        IPLinkCapacityIndex index = get(origin, destination);
+        return index != null && index.hasSpareCapacity(traffic);
+    }
+
+    /*
+     * getFirstWithSpareCapacity method
+     * Returns the lightpath of the first IP link (in creation order) from origin to destination that can carry the
+     * given traffic, -1 if none
+     */
+    public int getFirstWithSpareCapacity(int origin, int destination, double traffic) {
+        IPLinkCapacityIndex index = get(origin, destination);
+        return index == null ? -1 : index.getFirstWithSpareCapacity(traffic);
+    }
+
+    /*
+     * getOrCreate method
+     * Returns the IP links from origin to destination, creating the index of the pair for its first link
+     */
+    public IPLinkCapacityIndex getOrCreate(int origin, int destination) {
+        long key = key(origin, destination);
+        int position = find(key);
+        if (position < 0) position = addPair(key, origin, destination);
+        return indexes[position];
+    }
+
+    /*
+     * Pairs leaving a node, without allocating:
+     * for (int pair = firstPair(node); pair >= 0; pair = nextPair(pair)) ... getDestination(pair), getIPLinks(pair)
+     */
+    public int firstPair(int origin) { return firstFromOrigin[origin]; }
+    public int nextPair(int pair) { return nextFromOrigin[pair]; }
+    public int getDestination(int pair) { return destinations[pair]; }
+    public IPLinkCapacityIndex getIPLinks(int pair) { return indexes[pair]; }
+
+    // number of node pairs with at least one IP link
+    public int getNumberOfPairs() { return numberOfPairs; }
+
+    private int find(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return positions[slot];
+            if (keys[slot] == NO_KEY) return -1;
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private int addPair(long key, int origin, int destination) {
+        if (numberOfPairs == indexes.length) {
+            indexes = Arrays.copyOf(indexes, 2 * numberOfPairs);
+            destinations = Arrays.copyOf(destinations, 2 * numberOfPairs);
+            nextFromOrigin = Arrays.copyOf(nextFromOrigin, 2 * numberOfPairs);
+        }
+        int position = numberOfPairs++;
+        indexes[position] = new IPLinkCapacityIndex();
+        destinations[position] = destination;
+        nextFromOrigin[position] = -1;
+        if (lastFromOrigin[origin] < 0) firstFromOrigin[origin] = position;
+        else nextFromOrigin[lastFromOrigin[origin]] = position;
+        lastFromOrigin[origin] = position;
+
+        // table at most half full
+        if (2 * numberOfPairs > keys.length) rehash(2 * keys.length);
+        insert(key, position);
+        return position;
+    }
+
+    private void insert(long key, int position) {
+        int slot = slot(key);
+        while (keys[slot] != NO_KEY) slot = (slot + 1) & mask;
+        keys[slot] = key;
+        positions[slot] = position;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldPositions = positions;
+        keys = new long[capacity];
+        positions = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, NO_KEY);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != NO_KEY) insert(oldKeys[slot], oldPositions[slot]);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/*
+ * IP links between the same pair of nodes, indexed by spare capacity.
+ * The links (lightpath ids of a LightpathPlan) are kept in creation order and a max segment tree over their spare
+ * capacities answers "is there a link that fits X Gbps" in O(1) and finds the first such link (same one of a linear
+ * scan of the list) in O(log n).
+ * The tree is updated by LightpathPlan every time the spare capacity of one of the links changes. A removed link (torn
+ * down lightpath) keeps its position with no spare capacity until compact moves the remaining ones down.
+ */
+public class IPLinkCapacityIndex {
+    private int[] lightpaths = new int[4];
+    private int size;
+    private int removed;
+    // maxSpare[1] is the root, the leaf of the i-th link is maxSpare[leaves + i], unused leaves are -infinity
+    private double[] maxSpare;
+    private int leaves;
+
+    public IPLinkCapacityIndex() {
+        this.leaves = 4;
+        this.maxSpare = new double[2 * leaves];
+        Arrays.fill(maxSpare, Double.NEGATIVE_INFINITY);
+    }
+
+    /*
+     * add method
+     * Adds the IP link of a lightpath with the given spare capacity, returns its position for update
+     */
+    public int add(int lightpath, double spareCapacity) {
+        if (size == leaves) grow();
+        int position = size++;
+        lightpaths[position] = lightpath;
+        update(position, spareCapacity);
+        return position;
+    }
+
+    /*
+     * hasSpareCapacity method
+     * True if at least one of the links can carry the given traffic
+     */
+    public boolean hasSpareCapacity(double traffic) {
+        return maxSpare[1] >= traffic;
+    }
+
+    /*
+     * getFirstWithSpareCapacity method
+     * Returns the lightpath of the first link (in creation order) that can carry the given traffic, -1 if none
+     */
+    public int getFirstWithSpareCapacity(double traffic) {
+        if (maxSpare[1] < traffic) return -1;
+        int node = 1;
+        while (node < leaves) {
+            node = maxSpare[2 * node] >= traffic ? 2 * node : 2 * node + 1;
+        }
+        return lightpaths[node - leaves];
+    }
+
+    /*
+     * remove method
+     * Removes the link at the given position, the positions of the other links do not change
+     */
+    public void remove(int position) {
+        lightpaths[position] = -1;
+        update(position, Double.NEGATIVE_INFINITY);
+        removed++;
+    }
+
+    // true if at least half of the positions are of removed links
+    public boolean needsCompaction() { return removed > 0 && 2 * removed >= size; }
+
+    /*
+     * compact method
+     * Moves the links left to the first positions, keeping their creation order, and rebuilds the tree. The positions of
+     * the links change, the caller reads the new ones with getLightpath
+     */
+    public void compact() {
+        int kept = 0;
+        for (int position = 0; position < size; position++) {
+            if (lightpaths[position] < 0) continue;
+            lightpaths[kept] = lightpaths[position];
+            maxSpare[leaves + kept] = maxSpare[leaves + position];
+            kept++;
+        }
+        Arrays.fill(maxSpare, leaves + kept, leaves + size, Double.NEGATIVE_INFINITY);
+        size = kept;
+        removed = 0;
+        for (int node = leaves - 1; node >= 1; node--) {
+            maxSpare[node] = Math.max(maxSpare[2 * node], maxSpare[2 * node + 1]);
+        }
+    }
+
+    // positions used, removed links included
+    public int size() { return size; }
+
+    // lightpath of the link at the given position, creation order, -1 if the link was removed
+    public int getLightpath(int position) { return lightpaths[position]; }
+
+    /*
+     * update method
+     * Propagates to the root the new spare capacity of the link at the given position
+     */
+    void update(int position, double spareCapacity) {
+        int node = leaves + position;
+        maxSpare[node] = spareCapacity;
+        for (node >>>= 1; node >= 1; node >>>= 1) {
+            maxSpare[node] = Math.max(maxSpare[2 * node], maxSpare[2 * node + 1]);
+        }
+    }
+
+    private void grow() {
+        double[] oldLeaves = Arrays.copyOfRange(maxSpare, leaves, 2 * leaves);
+        leaves *= 2;
+        lightpaths = Arrays.copyOf(lightpaths, leaves);
+        maxSpare = new double[2 * leaves];
+        Arrays.fill(maxSpare, Double.NEGATIVE_INFINITY);
+        System.arraycopy(oldLeaves, 0, maxSpare, leaves, oldLeaves.length);
+        for (int node = leaves - 1; node >= 1; node--) {
+            maxSpare[node] = Math.max(maxSpare[2 * node], maxSpare[2 * node + 1]);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.utils.Constants.RoutingType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Design of the offline heuristic kept in primitive arrays while routing: the lightpaths (fibers, slots, modulation,
+ * each one carrying an IP link between its end nodes), the IP links of each node pair indexed by spare capacity
+ * (IPAdjacency) and the route of every routed IP demand as the sequence of its lightpaths.
+ * No NetPlan object is created while routing. The results are computed from the plan, and materialize adds to the
+ * NetPlan, in one pass, the WDM demand and route and the IP link of the new lightpaths and the routes of the IP demands
+ * routed since the previous call (same objects, in the same order per layer, that creating them one by one would give).
+ * In the discrete-event mode the traffic of a demand is added with addTraffic instead of addRoute, and released when it
+ * departs: the lightpaths left without traffic are torn down, their slots freed and their ids reused. A plan with torn
+ * down lightpaths is not added to a NetPlan.
+ */
+public class LightpathPlan {
+    // propagation speed of the IP links (km/s)
+    private static final double IP_LINK_PROPAGATION_SPEED_KM_PER_SECOND = 200000;
+
+    private final IPAdjacency ipAdjacency;
+
+    // lightpaths by id, in creation order
+    private int[] lightpathOrigin = new int[64];
+    private int[] lightpathDestination = new int[64];
+    private int[][] lightpathFibers = new int[64][];
+    private int[] lightpathFirstSlot = new int[64];
+    private Modulation[] lightpathModulation = new Modulation[64];
+    private double[] lightpathLengthInKm = new double[64];
+    // traffic of the IP demands routed on the IP link of the lightpath (Gbps)
+    private double[] lightpathCarriedTraffic = new double[64];
+    // index of the IP links of the node pair of the lightpath, and position in it
+    private IPLinkCapacityIndex[] lightpathCapacityIndex = new IPLinkCapacityIndex[64];
+    private int[] lightpathCapacityIndexPosition = new int[64];
+    private int numberOfLightpaths;
+    // numberOfLightpathsFrom[node] = lightpaths starting at the node
+    private final int[] numberOfLightpathsFrom;
+    // ids of the torn down lightpaths, reused by the next ones
+    private int[] freeLightpaths = new int[16];
+    private int numberOfFreeLightpaths;
+    private long lightpathsCreated;
+    private long lightpathsTornDown;
+    // slots of the lightpaths summed over their fibers
+    private long occupiedSlots;
+
+    // routes of the IP demands in routing order: demand index (IP layer), traffic, and lightpaths of the route in
+    // routeLightpaths[routeStart[route] .. routeStart[route + 1])
+    private int[] routeDemand = new int[64];
+    private double[] routeTraffic = new double[64];
+    private int[] routeStart = new int[65];
+    private int[] routeLightpaths = new int[256];
+    private int numberOfRoutes;
+
+    // NetPlan IP link of each lightpath added by materialize
+    private Link[] ipLinks = new Link[0];
+    private int materializedLightpaths;
+    private int materializedRoutes;
+
+    public LightpathPlan(int numberOfNodes) {
+        this.ipAdjacency = new IPAdjacency(numberOfNodes);
+        this.numberOfLightpathsFrom = new int[numberOfNodes];
+    }
+
+    /*
+     * addLightpath method
+     * Adds a lightpath from origin to destination on the given fibers and slots, and its IP link with the data rate of
+     * the modulation as capacity. Returns the id of the lightpath
+     */
+    public int addLightpath(int origin, int destination, int[] fibers, int firstSlot, Modulation modulation, double lengthInKm) {
+        int lightpath;
+        if (numberOfFreeLightpaths > 0) {
+            lightpath = freeLightpaths[--numberOfFreeLightpaths];
+        } else {
+            if (numberOfLightpaths == lightpathOrigin.length) growLightpaths();
+            lightpath = numberOfLightpaths++;
+        }
+        lightpathOrigin[lightpath] = origin;
+        lightpathDestination[lightpath] = destination;
+        lightpathFibers[lightpath] = fibers;
+        lightpathFirstSlot[lightpath] = firstSlot;
+        lightpathModulation[lightpath] = modulation;
+        lightpathLengthInKm[lightpath] = lengthInKm;
+        lightpathCarriedTraffic[lightpath] = 0;
+        IPLinkCapacityIndex capacityIndex = ipAdjacency.getOrCreate(origin, destination);
+        lightpathCapacityIndex[lightpath] = capacityIndex;
+        lightpathCapacityIndexPosition[lightpath] = capacityIndex.add(lightpath, modulation.getDatarate());
+        numberOfLightpathsFrom[origin]++;
+        lightpathsCreated++;
+        occupiedSlots += (long) modulation.getChannelSpacing() * fibers.length;
+        return lightpath;
+    }
+
+    /*
+     * removeLightpath method
+     * Tears down a lightpath without traffic: removes its IP link and frees its slots in spectrum. Its id is reused
+     */
+    public void removeLightpath(int lightpath, SpectrumOccupancy spectrum) {
+        if (lightpathCarriedTraffic[lightpath] > 0) throw new IllegalStateException("Lightpath " + lightpath + " still carries traffic");
+        int numSlots = lightpathModulation[lightpath].getChannelSpacing();
+        spectrum.deallocate(lightpathFibers[lightpath], lightpathFirstSlot[lightpath], numSlots);
+        IPLinkCapacityIndex capacityIndex = lightpathCapacityIndex[lightpath];
+        capacityIndex.remove(lightpathCapacityIndexPosition[lightpath]);
+        if (capacityIndex.needsCompaction()) {
+            capacityIndex.compact();
+            for (int position = 0; position < capacityIndex.size(); position++)
+                lightpathCapacityIndexPosition[capacityIndex.getLightpath(position)] = position;
+        }
+        numberOfLightpathsFrom[lightpathOrigin[lightpath]]--;
+        occupiedSlots -= (long) numSlots * lightpathFibers[lightpath].length;
+        lightpathFibers[lightpath] = null;
+        lightpathCapacityIndex[lightpath] = null;
+        lightpathModulation[lightpath] = null;
+        if (numberOfFreeLightpaths == freeLightpaths.length) freeLightpaths = Arrays.copyOf(freeLightpaths, 2 * numberOfFreeLightpaths);
+        freeLightpaths[numberOfFreeLightpaths++] = lightpath;
+        lightpathsTornDown++;
+    }
+
+    /*
+     * addRoute method
+     * Routes the IP demand with the given index on the IP links of the given lightpaths, in order
+     */
+    public void addRoute(int demandIndex, double traffic, int[] lightpaths) {
+        if (numberOfRoutes == routeDemand.length) {
+            routeDemand = Arrays.copyOf(routeDemand, 2 * numberOfRoutes);
+            routeTraffic = Arrays.copyOf(routeTraffic, 2 * numberOfRoutes);
+            routeStart = Arrays.copyOf(routeStart, 2 * numberOfRoutes + 1);
+        }
+        int start = routeStart[numberOfRoutes];
+        if (start + lightpaths.length > routeLightpaths.length)
+            routeLightpaths = Arrays.copyOf(routeLightpaths, Math.max(2 * routeLightpaths.length, start + lightpaths.length));
+        System.arraycopy(lightpaths, 0, routeLightpaths, start, lightpaths.length);
+        routeDemand[numberOfRoutes] = demandIndex;
+        routeTraffic[numberOfRoutes] = traffic;
+        routeStart[++numberOfRoutes] = start + lightpaths.length;
+        addTraffic(traffic, lightpaths);
+    }
+
+    /*
+     * addTraffic method
+     * Adds traffic to the IP links of the given lightpaths without keeping the route, for demands that will depart
+     */
+    public void addTraffic(double traffic, int[] lightpaths) {
+        for (int lightpath : lightpaths) {
+            lightpathCarriedTraffic[lightpath] += traffic;
+            lightpathCapacityIndex[lightpath].update(lightpathCapacityIndexPosition[lightpath], getSpareCapacity(lightpath));
+        }
+    }
+
+    /*
+     * releaseTraffic method
+     * Removes the traffic of a departing demand from the IP links of its lightpaths and tears down the ones left without
+     * traffic, freeing their slots in spectrum
+     */
+    public void releaseTraffic(double traffic, int[] lightpaths, SpectrumOccupancy spectrum) {
+        for (int lightpath : lightpaths) {
+            lightpathCarriedTraffic[lightpath] -= traffic;
+            if (lightpathCarriedTraffic[lightpath] <= 0) {
+                lightpathCarriedTraffic[lightpath] = 0;
+                removeLightpath(lightpath, spectrum);
+            } else {
+                lightpathCapacityIndex[lightpath].update(lightpathCapacityIndexPosition[lightpath], getSpareCapacity(lightpath));
+            }
+        }
+    }
+
+    public boolean hasSpareCapacity(int origin, int destination, double traffic) {
+        return ipAdjacency.hasSpareCapacity(origin, destination, traffic);
+    }
+
+    // lightpath of the first IP link (creation order) from origin to destination with spare capacity for traffic, -1 if none
+    public int getFirstWithSpareCapacity(int origin, int destination, double traffic) {
+        return ipAdjacency.getFirstWithSpareCapacity(origin, destination, traffic);
+    }
+
+    public IPAdjacency getIPAdjacency() { return ipAdjacency; }
+
+    // ids used, torn down lightpaths included (all the lightpaths if none was torn down)
+    public int getNumberOfLightpaths() { return numberOfLightpaths; }
+    public int getNumberOfActiveLightpaths() { return numberOfLightpaths - numberOfFreeLightpaths; }
+    public long getLightpathsCreated() { return lightpathsCreated; }
+    public long getLightpathsTornDown() { return lightpathsTornDown; }
+    public long getOccupiedSlots() { return occupiedSlots; }
+    public int getNumberOfLightpathsFrom(int node) { return numberOfLightpathsFrom[node]; }
+    public int getOrigin(int lightpath) { return lightpathOrigin[lightpath]; }
+    public int getDestination(int lightpath) { return lightpathDestination[lightpath]; }
+    public int[] getFibers(int lightpath) { return lightpathFibers[lightpath]; }
+    public int getFirstSlot(int lightpath) { return lightpathFirstSlot[lightpath]; }
+    public Modulation getModulation(int lightpath) { return lightpathModulation[lightpath]; }
+    public double getLengthInKm(int lightpath) { return lightpathLengthInKm[lightpath]; }
+    // capacity of the IP link of the lightpath (Gbps)
+    public double getCapacity(int lightpath) { return lightpathModulation[lightpath].getDatarate(); }
+    public double getCarriedTraffic(int lightpath) { return lightpathCarriedTraffic[lightpath]; }
+    public double getSpareCapacity(int lightpath) { return getCapacity(lightpath) - lightpathCarriedTraffic[lightpath]; }
+
+    public int getNumberOfRoutes() { return numberOfRoutes; }
+
+    /*
+     * materialize method
+     * Adds to netPlan the lightpaths and routes added since the previous call: for each lightpath a WDM demand of its
+     * channel spacing routed on its fibers and an IP link of its capacity, then the route of each IP demand on the IP
+     * links of its lightpaths
+     */
+    public void materialize(NetPlan netPlan, NetworkLayer wdmLayer, NetworkLayer ipLayer) {
+        if (lightpathsTornDown > 0) throw new IllegalStateException("A plan with torn down lightpaths can not be added to a NetPlan");
+        if (ipLinks.length < numberOfLightpaths) ipLinks = Arrays.copyOf(ipLinks, lightpathOrigin.length);
+        for (int lightpath = materializedLightpaths; lightpath < numberOfLightpaths; lightpath++) {
+            Node origin = netPlan.getNode(lightpathOrigin[lightpath]);
+            Node destination = netPlan.getNode(lightpathDestination[lightpath]);
+            Modulation modulation = lightpathModulation[lightpath];
+            double occupiedBandwidth = modulation.getChannelSpacing();
+            Demand wdmDemand = netPlan.addDemand(origin, destination, occupiedBandwidth, RoutingType.SOURCE_ROUTING, null, wdmLayer);
+            ipLinks[lightpath] = netPlan.addLink(origin, destination, modulation.getDatarate(), lightpathLengthInKm[lightpath], IP_LINK_PROPAGATION_SPEED_KM_PER_SECOND, null, ipLayer);
+            List<Link> fibers = new ArrayList<>(lightpathFibers[lightpath].length);
+            for (int fiber : lightpathFibers[lightpath]) fibers.add(netPlan.getLink(fiber, wdmLayer));
+            netPlan.addRoute(wdmDemand, occupiedBandwidth, occupiedBandwidth, fibers, null);
+        }
+        materializedLightpaths = numberOfLightpaths;
+
+        for (int route = materializedRoutes; route < numberOfRoutes; route++) {
+            List<Link> path = new ArrayList<>(routeStart[route + 1] - routeStart[route]);
+            for (int i = routeStart[route]; i < routeStart[route + 1]; i++) path.add(ipLinks[routeLightpaths[i]]);
+            netPlan.addRoute(netPlan.getDemand(routeDemand[route], ipLayer), routeTraffic[route], routeTraffic[route], path, null);
+        }
+        materializedRoutes = numberOfRoutes;
+    }
+
+    private void growLightpaths() {
+        int length = 2 * lightpathOrigin.length;
+        lightpathOrigin = Arrays.copyOf(lightpathOrigin, length);
+        lightpathDestination = Arrays.copyOf(lightpathDestination, length);
+        lightpathFibers = Arrays.copyOf(lightpathFibers, length);
+        lightpathFirstSlot = Arrays.copyOf(lightpathFirstSlot, length);
+        lightpathModulation = Arrays.copyOf(lightpathModulation, length);
+        lightpathLengthInKm = Arrays.copyOf(lightpathLengthInKm, length);
+        lightpathCarriedTraffic = Arrays.copyOf(lightpathCarriedTraffic, length);
+        lightpathCapacityIndex = Arrays.copyOf(lightpathCapacityIndex, length);
+        lightpathCapacityIndexPosition = Arrays.copyOf(lightpathCapacityIndexPosition, length);
+    }
+}
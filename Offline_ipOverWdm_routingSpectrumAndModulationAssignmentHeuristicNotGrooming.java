@@ -1,11 +1,8 @@
 
-import cern.colt.matrix.tdouble.DoubleFactory2D;
-import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import com.net2plan.interfaces.networkDesign.*;
 import com.net2plan.libraries.WDMUtils;
 import com.net2plan.utils.Constants.RoutingType;
 import com.net2plan.utils.InputParameter;
-import com.net2plan.utils.Pair;
 import com.net2plan.utils.Triple;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -20,10 +17,15 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.stream.IntStream;
 
 // Main class
 
@@ -33,6 +35,7 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 	private final InputParameter k = new InputParameter ("k", 10 , "Maximum number of admissible paths per input-output node pair" , 1 , Integer.MAX_VALUE);
 	private final InputParameter numFrequencySlotsPerFiber = new InputParameter ("numFrequencySlotsPerFiber", 4950 , "Number of wavelengths per link" , 1, Integer.MAX_VALUE);
 	// InputParameter to use a single type of transponder in the entire network
+	private final InputParameter spectrumAssignment = new InputParameter ("spectrumAssignment", "#select# firstFit bestFit exactFit", "Slots of a new lightpath among the runs of free slots common to the fibers of its path: firstFit (lowest run that fits), bestFit (smallest run that fits, lowest on ties) or exactFit (lowest run of exactly the needed width, first fit if none)");
 	private final InputParameter singleTransponderForAll = new InputParameter ("singleTransponderForAll", false , "If true, a single transponder type is used in the entire network");
 	// InputParameter to define the type of transponder to use in case of singleTransponderForAll = true
 	private final InputParameter singleTransponderType = new InputParameter ("singleTransponderType", true , "Transponder type to use in case of singleTransponderForAll = true, if true LR is used, if false ZR+ is used");
@@ -40,31 +43,80 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 	private final InputParameter percentageOfCoreTraffic = new InputParameter ("percentageOfCoreTraffic", 0.5 , "Percentage of the total traffic generated by core nodes" , 0 , true , 1 , true);
 	private final InputParameter maxPropagationDelayMs = new InputParameter ("maxPropagationDelayMs", -1.0 , "Maximum allowed propagation time of a lightpath in milliseconds. If non-positive, no limit is assumed");
 	private final InputParameter NumberOfDemands = new InputParameter("NumberOfDemands", 350, "Number of demands to be generated");
+	private final InputParameter incrementalDemands = new InputParameter("incrementalDemands", 0, "If positive, after routing NumberOfDemands demands batches of incrementalDemands new demands are added and routed on top of the current state until a batch fails, writing a result after each batch");
+	private final InputParameter dynamicArrivals = new InputParameter("dynamicArrivals", 0, "If positive, discrete-event mode: instead of routing NumberOfDemands demands that never leave, demands arrive as a Poisson process and depart after a holding time, freeing their IP link capacity and tearing down the lightpaths left empty, and the blocking of this number of arrivals (after the warm-up ones) is written as result. The NetPlan is not modified");
+	private final InputParameter dynamicWarmupArrivals = new InputParameter("dynamicWarmupArrivals", 100000, "Arrivals of the discrete-event mode before the measured ones, to reach the steady state", 0, Integer.MAX_VALUE);
+	private final InputParameter dynamicLoadErlangs = new InputParameter("dynamicLoadErlangs", 1000.0, "Offered load of the discrete-event mode in Erlangs: mean number of demands in the network (the mean holding time is 1)");
+	private final InputParameter holdingTimeDistribution = new InputParameter("holdingTimeDistribution", "#select# exponential deterministic", "Holding time of the demands of the discrete-event mode, mean 1: exponential (Poisson departures) or deterministic");
+	private final InputParameter candidatePathCache = new InputParameter("candidatePathCache", "candidatePathCache", "Folder where the candidate paths of each topology, k and maxPropagationDelayMs are stored after being computed once, and read by the next runs. If empty, the paths are always computed");
+	private final InputParameter lazyCandidatePaths = new InputParameter("lazyCandidatePaths", false, "If true, the candidate paths of a node pair are generated (Yen's algorithm) only when a demand between the pair is routed, and a longer one only if the shorter ones are not enough. If false, the k paths of all the pairs are computed at the start (or read from candidatePathCache)");
 	private final InputParameter resultPath = new InputParameter("resultPath", "result", "Path of the folder for the result file");
+	private final InputParameter randomSeed = new InputParameter("randomSeed", -1, "Seed of the random traffic generation, if negative a different traffic is generated at each run");
+	private final InputParameter resultFormat = new InputParameter("resultFormat", "#select# xml jsonl csv", "Format of the result: xml (one file per run), jsonl or csv (one record per run appended to results.jsonl or results.csv in resultPath)");
+	private final InputParameter writeTransponderAttributes = new InputParameter("writeTransponderAttributes", true, "If true, the number of LR and ZR+ transponders is written as attributes of the nodes and of the WDM links at the end of the run");
+	private final InputParameter parallelCandidatePaths = new InputParameter("parallelCandidatePaths", false, "If true, all the k candidate paths of a demand are evaluated concurrently (fork-join common pool) on the same spectrum and IP link state, then the cheapest one is chosen as in the sequential evaluation (the first one on ties). Useful with large k");
+	private final InputParameter aggregateDemands = new InputParameter("aggregateDemands", false, "If true, the demands with the same ingress node, egress node and QoS are routed one after the other as a flow, so the candidate paths are evaluated only for the demands that need new lightpaths and the next ones fill them. If false, the demands with the same QoS and shortest path length keep the order of generation (only consecutive identical demands are routed as a flow)");
+	private final InputParameter buildNetPlan = new InputParameter("buildNetPlan", true, "If true, the lightpaths (WDM demands and routes), the IP links and the routes of the IP demands are added to the NetPlan in one pass after routing (after each batch in incremental mode). If false, the results are computed from the internal plan only and the NetPlan keeps just the IP demands, faster when only the result file is read");
+	private final InputParameter profileRun = new InputParameter("profileRun", false, "If true, the wall time of each phase and the counts of first fit calls, IP link lookups, lightpaths and rejected paths are measured, added to the result record and emitted as JFR events");
+	private final TopologyIndex sharedTopology;
+	private final ResultWriter sharedResultWriter;
+	private final TrafficMatrix sharedTraffic;
+	private TopologyIndex topology;
 	private NetPlan netPlan;
-	private Map<Pair<Node,Node>,List<List<Link>>> cpl;
+	private PathPlanCache pathPlans;
 	private NetworkLayer wdmLayer, ipLayer;
 	//private WDMUtils.TransponderTypesInfo transponderInfo;
 	private final Map<String,Transponder> transponders = new HashMap<>();
 	private int NodeNumber;
 	private int LinkNumberWDM;
 	private int SlotPerFiber;
-	private DoubleMatrix2D frequencySlot2FiberOccupancy_se;
-	private int totalZR = 0;
-	private int totalLR = 0;
+	private SpectrumOccupancy frequencySlot2FiberOccupancy_se;
+	private TransponderCounters transponderCounters;
 	private int totalCost = 0;
 	private int demandNumber;
+	private LightpathPlan plan;
+	private int unsatisfiedDemands;
+	private RunProfile profile = RunProfile.DISABLED;
+	// if false every demand is routed alone by routeDemand, the reference the flows of routeFlow are tested against
+	boolean routeFlows = true;
 	private static final String QOS_TYPE_PRIORITY = "PRIORITY";
 	private static final String QOS_TYPE_BEST_EFFORT = "BEST_EFFORT";
 	private static final String SUBREGION_TYPE_CORE = "CORE";
 	private static final String SUBREGION_TYPE_METRO = "METRO";
 
+	public Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming()
+	{
+		this(null, null);
+	}
+
+	/*
+	 * The candidate paths and the link data of sharedTopology are reused instead of being computed at each run,
+	 * used when many trials are executed on copies of the same topology.
+	 * If sharedResultWriter is not null the result record is written there (resultFormat and resultPath are not used)
+	 */
+	public Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(TopologyIndex sharedTopology, ResultWriter sharedResultWriter)
+	{
+		this(sharedTopology, sharedResultWriter, null);
+	}
+
+	/*
+	 * If sharedTraffic is not null its demands are routed instead of generating NumberOfDemands random ones, so runs with
+	 * different transponder settings can be compared on the same traffic (not with incrementalDemands)
+	 */
+	public Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(TopologyIndex sharedTopology, ResultWriter sharedResultWriter, TrafficMatrix sharedTraffic)
+	{
+		this.sharedTopology = sharedTopology;
+		this.sharedResultWriter = sharedResultWriter;
+		this.sharedTraffic = sharedTraffic;
+	}
+
 	@Override
 	public String executeAlgorithm(NetPlan netPlan, Map<String, String> algorithmParameters, Map<String, String> net2planParameters) {
 		/* Initialize all InputParameter objects defined in this object (this uses Java reflection) */
 		InputParameter.initializeAllInputParameterFieldsOfObject(this, algorithmParameters);
 
 		this.netPlan = netPlan;
+		this.profile = profileRun.getBoolean() ? new RunProfile(true) : RunProfile.DISABLED;
 		netPlan.setRoutingTypeAllDemands(RoutingType.SOURCE_ROUTING, netPlan.getNetworkLayerDefault());
 
 		/* Create a two-layer IP over WDM design if the input is single layer */
@@ -103,46 +155,89 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 		netPlan.removeAllMulticastDemands(wdmLayer);
 
 		/* Initialize the slot occupancy */
-		this.frequencySlot2FiberOccupancy_se = DoubleFactory2D.dense.make(SlotPerFiber, LinkNumberWDM);
+		this.frequencySlot2FiberOccupancy_se = new SpectrumOccupancy(LinkNumberWDM, SlotPerFiber, SpectrumOccupancy.Policy.policyOf(spectrumAssignment.getString()));
 
-		/* Compute the candidate path list of possible paths */
-		this.cpl = netPlan.computeUnicastCandidatePathList(netPlan.getVectorLinkLengthInKm(wdmLayer), k.getInt(), -1, -1, maxPropagationDelayMs.getDouble(), -1, -1, -1, null, wdmLayer);
+		/* Compute the candidate path list of possible paths, unless a compatible one is shared by the caller */
+		long phaseStart = profile.start();
+		if (sharedTopology != null && sharedTopology.isCompatible(netPlan, wdmLayer, k.getInt(), maxPropagationDelayMs.getDouble(), lazyCandidatePaths.getBoolean()))
+			this.topology = sharedTopology;
+		else
+			this.topology = new TopologyIndex(netPlan, wdmLayer, k.getInt(), maxPropagationDelayMs.getDouble(), getCandidatePathCacheFolder(candidatePathCache.getString()), lazyCandidatePaths.getBoolean());
+		profile.endPhase(RunProfile.PHASE_CANDIDATE_PATHS, phaseStart);
 
-		/* Compute the CPL, adding the routes */
-		Map<Pair<Node, Node>, List<IPLink>> mapIPLinks = new HashMap<>();
+		/* Path plans (segments, modulation and transponder of each candidate path) of the selected transponder mode */
+		String singleType = null;
+		if (singleTransponderForAll.getBoolean())
+			singleType = singleTransponderType.getBoolean() ? SUBREGION_TYPE_CORE : SUBREGION_TYPE_METRO; // Long Reach or ZR+ in the entire network
+		this.pathPlans = topology.getPathPlanCache(singleType, transponders);
 
-		int unsatisfiedDemands = 0;
+		/* Transponder counters per node, WDM link and island */
+		this.transponderCounters = new TransponderCounters(topology.getRegions(), NodeNumber, LinkNumberWDM);
 
-		List<Demand> orderedDemands;
-		for(Node n1: netPlan.getNodes())
-		{
-			for(Node n2: netPlan.getNodes())
-			{
-				if(!n1.equals(n2))
-				{
-					mapIPLinks.put(Pair.of(n1,n2),new ArrayList<>());
-				}
-			}
+		/* Lightpaths, IP links and routes of the design, added to the NetPlan only at the end of routing */
+		this.plan = new LightpathPlan(NodeNumber);
+		this.unsatisfiedDemands = 0;
+
+		if (dynamicArrivals.getInt() > 0)
+			return runDynamicTraffic();
+
+		// Generate the demands in the IP layer using TrafficGenerator Class
+		SplittableRandom random = randomSeed.getInt() < 0 ? new SplittableRandom() : new SplittableRandom(randomSeed.getInt());
+		TrafficGenerator trafficGenerator = new TrafficGenerator(netPlan, percentageOfCoreTraffic.getDouble(), random, topology.getRegions());
+		phaseStart = profile.start();
+		if (sharedTraffic != null) {
+			if (incrementalDemands.getInt() > 0)
+				throw new Net2PlanException("A shared traffic matrix can not be used in incremental mode");
+			demandNumber = sharedTraffic.size();
+			trafficGenerator.addDemands(sharedTraffic);
+		} else {
+			trafficGenerator.generate(demandNumber);
 		}
-        for(Node node: netPlan.getNodes())
-        {
-            node.setAttribute("ZR",0);
-            node.setAttribute("LR",0);
-        }
-		for(Link link: netPlan.getLinks(wdmLayer))
-		{
-			link.setAttribute("ZR",0);
-			link.setAttribute("LR",0);
+		profile.endPhase(RunProfile.PHASE_TRAFFIC_GENERATION, phaseStart);
+		routeDemands(netPlan.getDemands(ipLayer));
+
+		if (incrementalDemands.getInt() <= 0) {
+			writeResult();
+			return "Ok! " + getOutMessage();
 		}
 
-		// Generate the demands in the IP layer using TrafficGenerator Class
-		TrafficGenerator trafficGenerator = new TrafficGenerator(netPlan, percentageOfCoreTraffic.getDouble());
-		trafficGenerator.generate(demandNumber);
+		// Incremental mode: the spectrum occupancy, the IP links and the transponder counters are kept, each new batch
+		// of demands is routed on top of them. The ramp ends at the first batch that can not be routed, whose demands
+		// stay (partially routed) in netPlan
+		while (true) {
+			writeResult();
+			String outMessage = getOutMessage();
+			int routedDemands = netPlan.getNumberOfDemands(ipLayer);
+			phaseStart = profile.start();
+			trafficGenerator.generate(incrementalDemands.getInt());
+			profile.endPhase(RunProfile.PHASE_TRAFFIC_GENERATION, phaseStart);
+			demandNumber = routedDemands + incrementalDemands.getInt();
+			try {
+				routeDemands(netPlan.getDemands(ipLayer).subList(routedDemands, netPlan.getNumberOfDemands(ipLayer)));
+			} catch (Net2PlanException e) {
+				return "Ok! " + outMessage + ". Blocked at " + demandNumber + " demands: " + e.getMessage();
+			}
+		}
+	}
+
+	/*
+	 * routeDemands method
+	 * Routes the given demands on top of the current state, in the order priority first, then shortest path first.
+	 * Throws Net2PlanException if a priority demand can not be routed or if the best effort demands not routed are more
+	 * than 1% of all the demands of the IP layer
+	 */
+	private void routeDemands(List<Demand> demands) {
+		int numberOfDemands = netPlan.getNumberOfDemands(ipLayer);
 
+		// Plans of the shortest paths of the demands, computed here the first time a pair is seen
+		long phaseStart = profile.start();
+		for (Demand demand : demands) pathPlans.getPathPlan(demand.getIngressNode().getIndex(), demand.getEgressNode().getIndex(), 0);
+		profile.endPhase(RunProfile.PHASE_PATH_PLANS, phaseStart);
 
-		// Order netPlan.getDemands(ipLayer) according
+		// Order the demands according
 		// to qosType (priority first, best-effort last) and length of the shortest path
-		orderedDemands = new ArrayList<>(netPlan.getDemands(ipLayer));
+		phaseStart = profile.start();
+		List<Demand> orderedDemands = new ArrayList<>(demands);
 		orderedDemands.sort((d1, d2) -> {
 			if (d1.getQosType().equals(QOS_TYPE_PRIORITY) && d2.getQosType().equals(QOS_TYPE_BEST_EFFORT)) {
 				return -1;
@@ -150,213 +245,388 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 				return 1;
 			} else {
 				return Double.compare(
-						getLengthInKm(cpl.get(Pair.of(d1.getIngressNode(), d1.getEgressNode())).get(0)),
-						getLengthInKm(cpl.get(Pair.of(d2.getIngressNode(), d2.getEgressNode())).get(0))
+						pathPlans.getPathPlan(d1.getIngressNode().getIndex(), d1.getEgressNode().getIndex(), 0).getLengthInKm(),
+						pathPlans.getPathPlan(d2.getIngressNode().getIndex(), d2.getEgressNode().getIndex(), 0).getLengthInKm()
 				);
 			}
 
 		});
+		if (aggregateDemands.getBoolean()) orderedDemands = groupIdenticalDemands(orderedDemands);
+		profile.endPhase(RunProfile.PHASE_DEMAND_SORTING, phaseStart);
 
-		for (Demand ipDemand : orderedDemands) {
-
-			boolean atLeastOnePath = false;
-			int bestPathCost = Integer.MAX_VALUE;
-			List<List<Link>> bestPath = null;
-			List<Modulation> bestPathModulations = null;
-
+		phaseStart = profile.start();
+		try {
+			routeOrderedDemands(orderedDemands, numberOfDemands);
+		} finally {
+			// also the demands routed before a failure
+			if (buildNetPlan.getBoolean()) {
+				long stepStart = profile.start();
+				plan.materialize(netPlan, wdmLayer, ipLayer);
+				profile.addTime(RunProfile.PHASE_NETPLAN_OBJECTS, stepStart);
+			}
+			profile.endPhase(RunProfile.PHASE_ROUTING, phaseStart);
+		}
+	}
 
-			for (List<Link> singlePath : cpl.get(Pair.of(ipDemand.getIngressNode(), ipDemand.getEgressNode()))) {
+	/*
+	 * routeOrderedDemands method
+	 * Routing loop of routeDemands: consecutive demands with the same ingress, egress, QoS and traffic are routed together
+	 * by routeFlow (unless routeFlows is false)
+	 */
+	private void routeOrderedDemands(List<Demand> orderedDemands, int numberOfDemands) {
+		int first = 0;
+		while (first < orderedDemands.size()) {
+			int end = first + 1;
+			while (routeFlows && end < orderedDemands.size() && isSameFlow(orderedDemands.get(first), orderedDemands.get(end))) end++;
+			routeFlow(orderedDemands.subList(first, end), numberOfDemands);
+			first = end;
+		}
+	}
 
-				List<List<Link>> subpathsList;
+	/*
+	 * routeFlow method
+	 * Routes identical demands in order, with the same result of routing each of them with routeDemand.
+	 * After a demand is routed, the next ones take the first candidate path with spare capacity on all its segments (the
+	 * path of cost 0 that routeDemand would choose) until one of its IP links is full, so the candidate paths are only
+	 * evaluated again when new lightpaths are needed. Only the candidate paths already generated are checked: a later
+	 * path of cost 0 is found by routeDemand, so lazy candidate paths are not generated just to look for spare capacity.
+	 * If a demand can not be routed, neither can the next ones
+	 */
+	private void routeFlow(List<Demand> flow, int numberOfDemands) {
+		int origin = flow.get(0).getIngressNode().getIndex();
+		int destination = flow.get(0).getEgressNode().getIndex();
+		double traffic = flow.get(0).getOfferedTraffic();
+		int next = 0;
+		while (next < flow.size()) {
+			if (!routeDemand(flow.get(next++), numberOfDemands)) {
+				while (next < flow.size()) handleUnroutedDemand(flow.get(next++), numberOfDemands);
+				return;
+			}
+			if (next == flow.size()) return;
+			// the paths before the one found can only lose spare capacity while the flow fills it
+			int numberOfPaths = pathPlans.getNumberOfGeneratedPaths(origin, destination);
+			int p = getFirstPathWithSpareCapacity(origin, destination, traffic, 0, numberOfPaths);
+			while (next < flow.size() && p >= 0) {
+				PathPlan pathPlan = pathPlans.getPathPlan(origin, destination, p);
+				if (hasSpareCapacity(pathPlan, traffic))
+					routeOnIPLinks(flow.get(next++), pathPlan);
+				else
+					p = getFirstPathWithSpareCapacity(origin, destination, traffic, p + 1, numberOfPaths);
+			}
+		}
+	}
 
-				// if singleTransponderForAll is false, then the path is split in subpaths, each one with a different transponder
-				if (!singleTransponderForAll.getBoolean()){
-					//path -> list(subpath)
-					subpathsList = calculateSubPath(singlePath);
-				} else {
-					//path -> list(path)
-					subpathsList = new ArrayList<>();
-					subpathsList.add(singlePath);
-				}
+	/*
+	 * routeDemand method
+	 * Best path of a demand on the current state, lightpaths and IP links created as needed. Returns false if the demand
+	 * can not be routed (and is a best effort demand under the drop threshold)
+	 */
+	private boolean routeDemand(Demand ipDemand, int numberOfDemands) {
+		int[] lightpaths = allocatePath(ipDemand.getIngressNode().getIndex(), ipDemand.getEgressNode().getIndex(), ipDemand.getOfferedTraffic());
+		//if no path has been found, handle the possible error
+		if (lightpaths == null) {
+			handleUnroutedDemand(ipDemand, numberOfDemands);
+			return false;
+		}
+		plan.addRoute(ipDemand.getIndex(), ipDemand.getOfferedTraffic(), lightpaths);
+		return true;
+	}
 
-				List<Modulation> modulationsList = new ArrayList<>();
-				for (int ind = 0; ind < subpathsList.size(); ind++) {
-					List<Link> subpath = subpathsList.get(ind);
+	/*
+	 * allocatePath method
+	 * Chooses the best candidate path from origin to destination for traffic on the current state and creates the
+	 * lightpaths (slots, transponders, cost) of its segments without an IP link with spare capacity. Returns the lightpath
+	 * of each segment, the traffic is added to them by the caller, or null if no path can carry the traffic.
+	 * Used by routeDemand and by the arrivals of the discrete-event mode
+	 */
+	int[] allocatePath(int origin, int destination, double traffic) {
+
+		boolean atLeastOnePath = false;
+		int bestPathCost = Integer.MAX_VALUE;
+		PathPlan bestPath = null;
+		// slots of the new lightpaths of the best path, found while checking it
+		SpectrumOccupancy.Reservation bestReservation = null;
+
+		// segments, modulations and transponders of each candidate path come precomputed from the path plans.
+		// A path using only existing IP links costs 0 and no later path can cost less, so the next paths are not needed
+		// in parallel mode the candidates are evaluated before choosing: the same ones of the sequential loop, up to the
+		// first path with spare capacity on all its segments (cost 0), if any
+		PathPlan[] candidates = null;
+		SpectrumOccupancy.Reservation[] evaluated = null;
+		if (parallelCandidatePaths.getBoolean()) {
+			candidates = pathPlans.getPathPlans(origin, destination);
+			int firstWithSpareCapacity = getFirstPathWithSpareCapacity(origin, destination, traffic, 0, candidates.length);
+			if (firstWithSpareCapacity >= 0) candidates = Arrays.copyOf(candidates, firstWithSpareCapacity + 1);
+			evaluated = evaluateCandidatesInParallel(candidates, traffic);
+		}
+		PathPlan pathPlan;
+		int p = 0;
+		for (; bestPathCost > 0 && (pathPlan = candidates != null ? (p < candidates.length ? candidates[p] : null) : pathPlans.getPathPlan(origin, destination, p)) != null; p++) {
+			SpectrumOccupancy.Reservation reservation = evaluated != null ? evaluated[p] : evaluateCandidate(pathPlan, traffic, profile);
+			if (reservation == null) continue;
+			int cost = getNewLightpathsCost(pathPlan, reservation);
+
+			// if the entire path is able to accommodate the demand, store the path with the smallest cost
+			if (cost < bestPathCost) {
+				if (bestReservation != null) frequencySlot2FiberOccupancy_se.release(bestReservation);
+				bestPathCost = cost;
+				bestPath = pathPlan;
+				bestReservation = reservation;
+			} else {
+				frequencySlot2FiberOccupancy_se.release(reservation);
+			}
+			atLeastOnePath = true;
+		}
+		// candidates evaluated after a path of cost 0
+		for (; evaluated != null && p < evaluated.length; p++) {
+			if (evaluated[p] != null) frequencySlot2FiberOccupancy_se.release(evaluated[p]);
+		}
 
-					// If subpath length is longer than the maximum reach of the transponder -> split the subpath in shorter subpaths
 
-					String tag;
-					if (!singleTransponderForAll.getBoolean()) {
-						List<String> tags = new ArrayList<>(subpath.get(0).getTags());
-						tags.retainAll(Arrays.asList(SUBREGION_TYPE_CORE,SUBREGION_TYPE_METRO));
-						tag = tags.get(0); // "METRO" or "CORE"
+		if (!atLeastOnePath) {
+			return null;
+		}
+		else
+		{
+			assert bestPath != null;
+			// the slots of all the new lightpaths of the path are allocated together, or none
+			frequencySlot2FiberOccupancy_se.commit(bestReservation);
+			int[] lightpaths = new int[bestPath.getNumberOfSegments()];
+			for (int ind = 0; ind < bestPath.getNumberOfSegments(); ind++) {
+				Modulation modulation = bestPath.getModulation(ind);
+				// segments without reservation have an existing ip link with spare capacity
+				boolean ipToAdd = bestReservation.isReserved(ind);
+				if(!ipToAdd)
+				{
+					lightpaths[ind] = getFirstIPLink(traffic, bestPath, ind);
+				}
+				// if no ip link is available, another is created on the reserved slots
+				if(ipToAdd) {
+					int[] subpath = bestPath.getSegmentLinks(ind);
+					int slotid = bestReservation.getFirstSlot(ind);
+					int start = bestPath.getSegmentOrigin(ind);
+					int end = bestPath.getSegmentDestination(ind);
+					lightpaths[ind] = plan.addLightpath(start, end, subpath, slotid, modulation, getLengthInKm(subpath));
+					profile.count(RunProfile.COUNT_LIGHTPATHS_CREATED);
+					if (bestPath.getTransponderType(ind).equals(SUBREGION_TYPE_CORE)) {
+						totalCost += transponders.get(SUBREGION_TYPE_CORE).getCost() * 2;
+						transponderCounters.addLightpath(TransponderCounters.TYPE_LR, start, end, subpath[0], subpath[subpath.length - 1]);
 					} else {
-						if (singleTransponderType.getBoolean()) {
-							tag = SUBREGION_TYPE_CORE; // Long Reach is used in the entire network
-						} else {
-							tag = SUBREGION_TYPE_METRO; // ZR+ is used in the entire network
-						}
-					}
-					if (this.transponders.get(tag).getMaxReach() <= getLengthInKm(subpath)) {
-						List<List<Link>> subsubpaths = calculateSubPathsBasedOnTransponder(subpath, this.transponders.get(tag));
-						int index = subpathsList.indexOf(subpath);
-						subpathsList.remove(subpath);
-						subpathsList.addAll(index, subsubpaths);
-						subpath = subpathsList.get(ind);
+						totalCost += transponders.get(SUBREGION_TYPE_METRO).getCost() * 2;
+						transponderCounters.addLightpath(TransponderCounters.TYPE_ZR, start, end, subpath[0], subpath[subpath.length - 1]);
 					}
-					//find the best modulation
-					Modulation bestModulation = this.transponders.get(tag).getBestModulationFormat(getLengthInKm(subpath));
-					modulationsList.add(bestModulation);
 				}
+			}
+			return lightpaths;
+		}
+	}
 
-				boolean successInFindingPath = true;
-
-				// check if the entire path has available resources
-				for (int ind = 0; ind < subpathsList.size(); ind++) {
-					List<Link> subpath = subpathsList.get(ind);
-					Modulation modulation = modulationsList.get(ind);
-					//check if an ipLink already exists, if not check the wdm availability
-					boolean ipToAdd = true;
-					for(IPLink link: mapIPLinks.get(Pair.of(subpath.get(0).getOriginNode(),subpath.get(subpath.size()-1).getDestinationNode())))
-					{
-						if(link.getSpareCapacity()>=ipDemand.getOfferedTraffic())
-						{
-							ipToAdd = false;
-							break;
-						}
-					}
-					if(ipToAdd) {
-						int slotid = WDMUtils.spectrumAssignment_firstFit(subpath, frequencySlot2FiberOccupancy_se, modulation.getChannelSpacing());
-						if (slotid == -1) {
-							successInFindingPath = false;
-							break;
-						}
-					}
-				}
+	/*
+	 * evaluateCandidate method
+	 * Checks in a single pass if the entire path has available resources: each segment uses an existing ipLink with spare
+	 * capacity or reserves the slots of a new lightpath. Returns the reservation, null if the path can not carry the
+	 * traffic. Only reads the spectrum and IP link state, the steps are measured on stepProfile
+	 */
+	private SpectrumOccupancy.Reservation evaluateCandidate(PathPlan pathPlan, double traffic, RunProfile stepProfile) {
+		// a segment longer than the reach of all the modulations of its transponder cannot be used
+		if (!pathPlan.isReachable()) {
+			stepProfile.count(RunProfile.COUNT_PATHS_REJECTED_REACH);
+			return null;
+		}
 
-				// if the entire path is able to accommodate the demand, calculate cost and store the path with the smallest cost
-				if (successInFindingPath) {
-
-					atLeastOnePath = true;
-					int cost = 0;
-					for(int ind = 0; ind < subpathsList.size(); ind++)
-					{
-						List<Link> subpath = subpathsList.get(ind);
-						Modulation modulation = modulationsList.get(ind);
-						boolean ipToAdd = true;
-						for(IPLink link: mapIPLinks.get(Pair.of(subpath.get(0).getOriginNode(),subpath.get(subpath.size()-1).getDestinationNode())))
-						{
-							if(link.getSpareCapacity()>=ipDemand.getOfferedTraffic())
-							{
-								ipToAdd = false;
-								break;
-							}
-						}
-						if(ipToAdd)
-						{
-							if (transponders.get(SUBREGION_TYPE_CORE).getModulations().contains(modulation)) {
-								cost += transponders.get(SUBREGION_TYPE_CORE).getCost() * 2;
-
-							} else {
-								cost += transponders.get(SUBREGION_TYPE_METRO).getCost() * 2;
-							}
-						}
-					}
-					if(cost<bestPathCost)
-					{
-						bestPathCost = cost;
-						bestPath = subpathsList;
-						bestPathModulations = modulationsList;
-					}
+		SpectrumOccupancy.Reservation reservation = frequencySlot2FiberOccupancy_se.newReservation(pathPlan.getNumberOfSegments());
+		for (int ind = 0; ind < pathPlan.getNumberOfSegments(); ind++) {
+			long stepStart = stepProfile.start();
+			boolean ipToAdd = !plan.hasSpareCapacity(pathPlan.getSegmentOrigin(ind), pathPlan.getSegmentDestination(ind), traffic);
+			stepProfile.addTime(RunProfile.PHASE_IP_LINK_SCAN, stepStart);
+			stepProfile.count(RunProfile.COUNT_IP_LINK_CANDIDATES_SCANNED);
+			if(ipToAdd) {
+				stepStart = stepProfile.start();
+				boolean reserved = frequencySlot2FiberOccupancy_se.reserve(reservation, ind, pathPlan.getSegmentLinks(ind), pathPlan.getModulation(ind).getChannelSpacing());
+				stepProfile.addTime(RunProfile.PHASE_SPECTRUM_FIRST_FIT, stepStart);
+				stepProfile.count(RunProfile.COUNT_FIRST_FIT_CALLS);
+				if (!reserved) {
+					stepProfile.count(RunProfile.COUNT_PATHS_REJECTED_SPECTRUM);
+					frequencySlot2FiberOccupancy_se.release(reservation);
+					return null;
 				}
 			}
+		}
+		return reservation;
+	}
+
+	/*
+	 * evaluateCandidatesInParallel method
+	 * Evaluates all the candidate paths concurrently on the fork-join common pool. Nothing is written to the spectrum or
+	 * the IP links until the evaluation ends, so every candidate sees the same state and the choice is the same of the
+	 * sequential evaluation. Each task measures its steps on its own profile, added to the run profile at the end
+	 */
+	private SpectrumOccupancy.Reservation[] evaluateCandidatesInParallel(PathPlan[] candidates, double traffic) {
+		SpectrumOccupancy.Reservation[] reservations = new SpectrumOccupancy.Reservation[candidates.length];
+		RunProfile[] stepProfiles = new RunProfile[candidates.length];
+		IntStream.range(0, candidates.length).parallel().forEach(p -> {
+			stepProfiles[p] = profile.isEnabled() ? new RunProfile(true) : RunProfile.DISABLED;
+			reservations[p] = evaluateCandidate(candidates[p], traffic, stepProfiles[p]);
+		});
+		for (RunProfile stepProfile : stepProfiles) profile.add(stepProfile);
+		return reservations;
+	}
 
+	// cost of the transponders of the new lightpaths of a path (segments with reserved slots)
+	private static int getNewLightpathsCost(PathPlan pathPlan, SpectrumOccupancy.Reservation reservation) {
+		int cost = 0;
+		for (int ind = 0; ind < pathPlan.getNumberOfSegments(); ind++) {
+			if (reservation.isReserved(ind)) cost += pathPlan.getTransponderCost(ind);
+		}
+		return cost;
+	}
 
-			//if no path has been found, handle the possible error
-			if (!atLeastOnePath) {
-				// if the demand Priority QoS, then return a message
-				if (Objects.equals(ipDemand.getQosType(), QOS_TYPE_PRIORITY)) {
-					throw new Net2PlanException("The demand from " + ipDemand.getIngressNode().getName() + " to " + ipDemand.getEgressNode().getName() + '\n' +
-							"has not been satisfied due to insufficient resources (Priority) ");
-				} else {
-					// check if the threshold has been reached
-					unsatisfiedDemands++;
-					if((double)unsatisfiedDemands/orderedDemands.size()>0.01)
-					{
-						throw new Net2PlanException("BE demands drop larger than 0.01");
-					}
-				}
-			}
-			else
+	/*
+	 * handleUnroutedDemand method
+	 * Throws Net2PlanException if the demand is a priority one or if the best effort demands not routed reach the threshold
+	 */
+	private void handleUnroutedDemand(Demand ipDemand, int numberOfDemands) {
+		// if the demand Priority QoS, then return a message
+		if (Objects.equals(ipDemand.getQosType(), QOS_TYPE_PRIORITY)) {
+			throw new Net2PlanException("The demand from " + ipDemand.getIngressNode().getName() + " to " + ipDemand.getEgressNode().getName() + '\n' +
+					"has not been satisfied due to insufficient resources (Priority) ");
+		} else {
+			// check if the threshold has been reached
+			unsatisfiedDemands++;
+			if((double)unsatisfiedDemands/numberOfDemands>0.01)
 			{
-				assert bestPath != null;
-				List<Link> IPPath = new ArrayList<>();
-				for (int ind = 0; ind < bestPath.size(); ind++) {
-					List<Link> subpath = bestPath.get(ind);
-					Modulation modulation = bestPathModulations.get(ind);
-					IPLink ipLink;
-					boolean ipToAdd=true;
-					//check for an existing ip link with spare capacity
-					for(IPLink link: mapIPLinks.get(Pair.of(subpath.get(0).getOriginNode(),subpath.get(subpath.size()-1).getDestinationNode())))
-					{
-						if(link.getSpareCapacity()>=ipDemand.getOfferedTraffic())
-						{
-							ipToAdd = false;
-							ipLink = link;
-							IPPath.add(link.getN2PLink());
-							ipLink.addDemand(ipDemand);
-							break;
-						}
-					}
-					// if no ip link is available, another is created
-					if(ipToAdd) {
-						int slotid = WDMUtils.spectrumAssignment_firstFit(subpath, frequencySlot2FiberOccupancy_se, modulation.getChannelSpacing());
-						ipLink = new IPLink(subpath, slotid, modulation);
-						Demand newDemand = netPlan.addDemand(ipLink.getStartNode(), ipLink.getEndNode(), ipLink.getModulation().getChannelSpacing(), RoutingType.SOURCE_ROUTING, null, wdmLayer);
-						Link n2pIPlink = netPlan.addLink(ipLink.getStartNode(),ipLink.getEndNode(),ipLink.getModulation().getDatarate(),ipLink.getRsa().getLengthInKm(),200000,null,ipLayer);
-						ipLink.setN2PLink(n2pIPlink);
-						ipLink.addDemand(ipDemand);
-						IPPath.add(n2pIPlink);
-						final double occupiedBandwidth = ipLink.getModulation().getChannelSpacing();
-						netPlan.addRoute(newDemand, occupiedBandwidth, occupiedBandwidth, ipLink.getPath(), null);
-						List<IPLink> ipList = mapIPLinks.get(Pair.of(ipLink.getStartNode(),ipLink.getEndNode()));
-						if(ipList == null)
-						{
-							mapIPLinks.put(Pair.of(ipLink.getStartNode(),ipLink.getEndNode()),new ArrayList<>(Collections.singletonList(ipLink)));
-						}
-						else
-						{
-							ipList.add(ipLink);
-						}
-						WDMUtils.allocateResources(ipLink.getRsa(), frequencySlot2FiberOccupancy_se, null);
-						if (transponders.get(SUBREGION_TYPE_CORE).getModulations().contains(modulation)) {
-							totalCost += transponders.get(SUBREGION_TYPE_CORE).getCost() * 2;
-                            ipLink.getStartNode().setAttribute("LR",Integer.parseInt(ipLink.getStartNode().getAttribute("LR"))+1);
-                            ipLink.getEndNode().setAttribute("LR",Integer.parseInt(ipLink.getEndNode().getAttribute("LR"))+1);
-							ipLink.getPath().get(0).setAttribute("LR",Integer.parseInt(ipLink.getPath().get(0).getAttribute("LR"))+1);
-							ipLink.getPath().get(ipLink.getPath().size()-1).setAttribute("LR",Integer.parseInt(ipLink.getPath().get(ipLink.getPath().size()-1).getAttribute("LR"))+1);
-							totalLR += 2;
-						} else {
-							totalCost += transponders.get(SUBREGION_TYPE_METRO).getCost() * 2;
-                            ipLink.getStartNode().setAttribute("ZR",Integer.parseInt(ipLink.getStartNode().getAttribute("ZR"))+1);
-                            ipLink.getEndNode().setAttribute("ZR",Integer.parseInt(ipLink.getEndNode().getAttribute("ZR"))+1);
-							ipLink.getPath().get(0).setAttribute("ZR",Integer.parseInt(ipLink.getPath().get(0).getAttribute("ZR"))+1);
-							ipLink.getPath().get(ipLink.getPath().size()-1).setAttribute("ZR",Integer.parseInt(ipLink.getPath().get(ipLink.getPath().size()-1).getAttribute("ZR"))+1);
-							totalZR += 2;
-						}
-					}
-				}
-				netPlan.addRoute(ipDemand, ipDemand.getOfferedTraffic(), ipDemand.getOfferedTraffic(), IPPath, null);
+				throw new Net2PlanException("BE demands drop larger than 0.01");
 			}
 		}
+	}
+
+	/*
+	 * getFirstPathWithSpareCapacity method
+	 * Index of the first reachable candidate path, from fromIndex to toIndex (excluded), whose segments all have an IP
+	 * link with spare capacity for traffic, -1 if none
+	 */
+	private int getFirstPathWithSpareCapacity(int origin, int destination, double traffic, int fromIndex, int toIndex) {
+		PathPlan pathPlan;
+		for (int p = fromIndex; p < toIndex && (pathPlan = pathPlans.getPathPlan(origin, destination, p)) != null; p++) {
+			if (pathPlan.isReachable() && hasSpareCapacity(pathPlan, traffic)) return p;
+		}
+		return -1;
+	}
+
+	private boolean hasSpareCapacity(PathPlan pathPlan, double traffic) {
+		for (int ind = 0; ind < pathPlan.getNumberOfSegments(); ind++) {
+			long stepStart = profile.start();
+			boolean spare = plan.hasSpareCapacity(pathPlan.getSegmentOrigin(ind), pathPlan.getSegmentDestination(ind), traffic);
+			profile.addTime(RunProfile.PHASE_IP_LINK_SCAN, stepStart);
+			profile.count(RunProfile.COUNT_IP_LINK_CANDIDATES_SCANNED);
+			if (!spare) return false;
+		}
+		return true;
+	}
+
+	/*
+	 * routeOnIPLinks method
+	 * Routes the demand on the existing IP links of the segments of a path with spare capacity on all of them
+	 */
+	private void routeOnIPLinks(Demand ipDemand, PathPlan pathPlan) {
+		int[] lightpaths = new int[pathPlan.getNumberOfSegments()];
+		for (int ind = 0; ind < pathPlan.getNumberOfSegments(); ind++) lightpaths[ind] = getFirstIPLink(ipDemand.getOfferedTraffic(), pathPlan, ind);
+		plan.addRoute(ipDemand.getIndex(), ipDemand.getOfferedTraffic(), lightpaths);
+	}
+
+	// lightpath of the first IP link of the segment with spare capacity for traffic
+	private int getFirstIPLink(double traffic, PathPlan pathPlan, int segment) {
+		long stepStart = profile.start();
+		int lightpath = plan.getFirstWithSpareCapacity(pathPlan.getSegmentOrigin(segment), pathPlan.getSegmentDestination(segment), traffic);
+		profile.addTime(RunProfile.PHASE_IP_LINK_SCAN, stepStart);
+		profile.count(RunProfile.COUNT_IP_LINK_CANDIDATES_SCANNED);
+		return lightpath;
+	}
+
+	private static boolean isSameFlow(Demand d1, Demand d2) {
+		return d1.getIngressNode().equals(d2.getIngressNode()) && d1.getEgressNode().equals(d2.getEgressNode())
+				&& Objects.equals(d1.getQosType(), d2.getQosType()) && d1.getOfferedTraffic() == d2.getOfferedTraffic();
+	}
+
+	/*
+	 * groupIdenticalDemands method
+	 * Moves the demands with the same ingress, egress and QoS next to the first of them, keeping the order of the groups
+	 * and the order inside each group. The demands of a group have the same QoS and shortest path, so the list stays
+	 * sorted: only demands tied with the ones of other groups change place
+	 */
+	private static List<Demand> groupIdenticalDemands(List<Demand> demands) {
+		Map<Triple<Node, Node, String>, List<Demand>> groups = new LinkedHashMap<>();
+		for (Demand demand : demands)
+			groups.computeIfAbsent(Triple.of(demand.getIngressNode(), demand.getEgressNode(), demand.getQosType()), key -> new ArrayList<>()).add(demand);
+		List<Demand> grouped = new ArrayList<>(demands.size());
+		for (List<Demand> group : groups.values()) grouped.addAll(group);
+		return grouped;
+	}
+
+	/*
+	 * writeResult method
+	 * Writes the result of the demands routed so far (and the transponder attributes if requested)
+	 */
+	private void writeResult() {
+		long phaseStart = profile.start();
+		if (writeTransponderAttributes.getBoolean())
+			transponderCounters.writeAttributes(netPlan, wdmLayer);
+		if (sharedResultWriter != null)
+			sharedResultWriter.write(buildResultRecord());
+		else if (resultFormat.getString().equals("xml"))
+			saveToXML();
+		else
+			appendResultRecord(buildResultRecord(), ResultWriter.formatOf(resultFormat.getString()));
+		profile.endPhase(RunProfile.PHASE_RESULT_WRITING, phaseStart);
+		profile.commitSummary(demandNumber);
+	}
 
-		saveToXML();
-		String outMessage = "Total cost: " + totalCost + ". Num lps " + netPlan.getNumberOfRoutes(wdmLayer);
+	/*
+	 * runDynamicTraffic method
+	 * Discrete-event mode: arrivals and departures simulated by DynamicTrafficSimulation on the plan, each arrival routed
+	 * by allocatePath, and a result record with the blocking and the time averages of the measured arrivals (jsonl if the
+	 * result format is xml). The cost and the transponder counters of the lightpaths created are not written
+	 */
+	private String runDynamicTraffic() {
+		SplittableRandom random = randomSeed.getInt() < 0 ? new SplittableRandom() : new SplittableRandom(randomSeed.getInt());
+		TrafficGenerator trafficGenerator = new TrafficGenerator(netPlan, percentageOfCoreTraffic.getDouble(), random, topology.getRegions());
+		DynamicTrafficSimulation simulation = new DynamicTrafficSimulation(plan, this::allocatePath, frequencySlot2FiberOccupancy_se, LinkNumberWDM,
+				trafficGenerator, random.split(), dynamicLoadErlangs.getDouble(), holdingTimeDistribution.getString());
+		long phaseStart = profile.start();
+		simulation.run(dynamicWarmupArrivals.getInt(), dynamicArrivals.getInt());
+		profile.endPhase(RunProfile.PHASE_ROUTING, phaseStart);
+
+		phaseStart = profile.start();
+		Map<String, Object> record = new LinkedHashMap<>();
+		record.put("load_erlangs", dynamicLoadErlangs.getDouble());
+		record.put("holding_time_distribution", holdingTimeDistribution.getString());
+		record.put("priority_percentage", percentageOfCoreTraffic.getDouble());
+		record.put("single_transponder_for_all", singleTransponderForAll.getBoolean());
+		record.put("single_transponder_type", singleTransponderType.getBoolean());
+		record.put("random_seed", randomSeed.getInt());
+		simulation.addTo(record);
+		profile.addTo(record);
+		if (sharedResultWriter != null)
+			sharedResultWriter.write(record);
+		else
+			appendResultRecord(record, resultFormat.getString().equals("xml") ? ResultWriter.Format.JSONL : ResultWriter.formatOf(resultFormat.getString()));
+		profile.endPhase(RunProfile.PHASE_RESULT_WRITING, phaseStart);
+		profile.commitSummary(dynamicArrivals.getInt());
+		return "Ok! Blocking probability: " + simulation.getBlockingProbability() + " (" + simulation.getBlocked() + " of " + simulation.getArrivals() + " arrivals). Events: " + simulation.getEvents();
+	}
+
+	// folder of the stored candidate paths, null if not stored
+	static Path getCandidatePathCacheFolder(String folder) {
+		return folder.trim().isEmpty() ? null : Paths.get(folder.trim());
+	}
+
+	private String getOutMessage() {
+		String outMessage = "Total cost: " + totalCost + ". Num lps " + plan.getNumberOfLightpaths();
 		//System.out.println (outMessage);
-		return "Ok! " + outMessage;
+		return outMessage;
 	}
 
-	private static double getLengthInKm (Collection<Link> r) { double res = 0; for (Link e : r) res += e.getLengthInKm(); return res; }
+	private double getLengthInKm (int[] linkIndexes) { double res = 0; for (int e : linkIndexes) res += topology.getLinkLengthInKm(e); return res; }
 
 	@Override
 	public String getDescription()
@@ -398,79 +668,79 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 	}
 
 
-	/* --- ADDED FUNCTIONS --- */
 	/*
-	 * calculateSubPath method
-	 * Split the path into subpaths each one belonging to a single network category (METRO and CORE)
+	 * buildResultRecord method
+	 * Result of the run as a flat record, same names of the elements of the XML file except the list of the
+	 * destinations of each node
 	 */
-	private List<List<Link>> calculateSubPath(List<Link> path) {
-		List<List<Link>> subPaths = new ArrayList<>();
-		List<String> tags = new ArrayList<>(path.get(0).getTags());
-		tags.retainAll(Arrays.asList(SUBREGION_TYPE_METRO, SUBREGION_TYPE_CORE));
-		List<Link> currentSubPath = new ArrayList<>();
-		for (Link link : path) {
-
-			List<String> tags2 = new ArrayList<>(link.getTags());
-			tags2.retainAll(Arrays.asList(SUBREGION_TYPE_METRO, SUBREGION_TYPE_CORE));
-			tags.retainAll(tags2);
-			if(tags.isEmpty())
-			{
-				subPaths.add(currentSubPath);
-				currentSubPath = new ArrayList<>();
-				tags = new ArrayList<>(link.getTags());
-				tags.retainAll(Arrays.asList(SUBREGION_TYPE_METRO, SUBREGION_TYPE_CORE));
-			}
-			currentSubPath.add(link);
-		}
-		if(!currentSubPath.isEmpty() && !subPaths.contains(currentSubPath))
+	public Map<String, Object> buildResultRecord() {
+		Map<String, Object> record = new LinkedHashMap<>();
+		record.put("demands", demandNumber);
+		int pr = 0;
+		int be = 0;
+		for(Demand demand: netPlan.getDemands(ipLayer))
 		{
-			subPaths.add(currentSubPath);
+			if(demand.getQosType().equals(QOS_TYPE_PRIORITY)) pr++;
+			else be++;
+		}
+		record.put("priority", pr);
+		record.put("best_effort", be);
+		record.put("priority_percentage", percentageOfCoreTraffic.getDouble());
+		record.put("single_transponder_for_all", singleTransponderForAll.getBoolean());
+		record.put("single_transponder_type", singleTransponderType.getBoolean());
+		record.put("random_seed", randomSeed.getInt());
+		record.put("number_ZR", transponderCounters.getTotal(TransponderCounters.TYPE_ZR));
+		record.put("number_LR", transponderCounters.getTotal(TransponderCounters.TYPE_LR));
+		record.put("total_Cost", totalCost);
+
+		RegionIndex regions = topology.getRegions();
+		for(int island=0;island<regions.getNumberOfIslands(); island++){
+			String islandName = regions.getIslandName(island);
+			int island_ZR = transponderCounters.getIslandCount(TransponderCounters.TYPE_ZR, island);
+			int island_LR = transponderCounters.getIslandCount(TransponderCounters.TYPE_LR, island);
+			record.put("Transponder_"+islandName, island_ZR + island_LR);
+			record.put("ZR_"+islandName, island_ZR);
+			record.put("LR_"+islandName, island_LR);
 		}
 
-		return subPaths;
+		char ch = '-';
+		for(Node node: netPlan.getNodes()){
+			String nodeName = node.getName().replace(' ', ch);
+			record.put("ZR_Node"+nodeName, transponderCounters.getNodeCount(TransponderCounters.TYPE_ZR, node.getIndex()));
+			record.put("LR_Node"+nodeName, transponderCounters.getNodeCount(TransponderCounters.TYPE_LR, node.getIndex()));
+			record.put("num_demands_Node"+nodeName, plan.getNumberOfLightpathsFrom(node.getIndex()));
+		}
+
+		record.put("totalAverageBitrate", getAverageIPLinkBitrate(false));
+		record.put("totalAverageOccupiedBitrate", getAverageIPLinkBitrate(true));
+		// times and counts up to this record (result_writing: the results written before it), only if profileRun
+		profile.addTo(record);
+		return record;
 	}
 
 	/*
-	 * calculateSubPathBasedOnTransponder method
-	 * Used for subpaths with longer distance of the maxReach, the subpath is split in the minimum number of subpaths
-	 * having distance supported by the transponder modulation
+	 * getAverageIPLinkBitrate method
+	 * Average capacity of the IP links (one per lightpath), or average traffic carried if carried, 0 if there are none
 	 */
-	private List<List<Link>> calculateSubPathsBasedOnTransponder(List<Link> path, Transponder transponder)
-	{
-		int[] best = new int[path.size()];
-		Arrays.fill(best,1);
-
-		// Find the best modulation (the best spectral efficiency) with that requires the minimum number of regenerators
-		List<Modulation> modulations = transponder.getModulations();
-		modulations.sort(Comparator.comparingDouble(Modulation::getSpectralEfficiency));
-		for(Modulation modulation: modulations) {
-			int[] regenerators;
-			try {
-				regenerators = WDMUtils.computeRegeneratorPositions(path, modulation.getReach());
-			} catch (Net2PlanException exception) {
-				continue;
-			}
-			if(Arrays.stream(regenerators).sum()<=Arrays.stream(best).sum())
-			{
-				best = regenerators;
-			}
-		}
+	private double getAverageIPLinkBitrate(boolean carried) {
+		int numberOfIPLinks = plan.getNumberOfLightpaths();
+		if (numberOfIPLinks == 0) return 0;
+		double total = 0;
+		for (int lightpath = 0; lightpath < numberOfIPLinks; lightpath++)
+			total += carried ? plan.getCarriedTraffic(lightpath) : plan.getCapacity(lightpath);
+		return total / numberOfIPLinks;
+	}
 
-		// Found the best modulation, split the given path in multiple subpaths
-		List<List<Link>> subPaths = new ArrayList<>();
-		List<Link> currentSubPath = new ArrayList<>();
-		currentSubPath.add(path.get(0));
-		for(int link=1; link<path.size(); link++)
-		{
-			if(best[link]==1)
-			{
-				subPaths.add(currentSubPath);
-				currentSubPath = new ArrayList<>();
-			}
-			currentSubPath.add(path.get(link));
+	/*
+	 * appendResultRecord method
+	 * Appends a result record of this run to the consolidated results file of resultPath
+	 */
+	private void appendResultRecord(Map<String, Object> record, ResultWriter.Format format) {
+		try (ResultWriter writer = new ResultWriter(Paths.get(resultPath.getString(), ResultWriter.fileName(format)), format)) {
+			writer.write(record);
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
 		}
-		subPaths.add(currentSubPath);
-		return subPaths;
 	}
 
 	public void saveToXML() {
@@ -524,51 +794,43 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 			dataElem.appendChild(e);
 
 			e = dom.createElement("single_transponder_type");
-			e.appendChild(dom.createTextNode(Boolean.toString(singleTransponderForAll.getBoolean())));
+			e.appendChild(dom.createTextNode(Boolean.toString(singleTransponderType.getBoolean())));
 			dataElem.appendChild(e);
 
 			// create data elements and place them under root
 			e = dom.createElement("number_ZR");
-			e.appendChild(dom.createTextNode(Integer.toString(totalZR)));
+			e.appendChild(dom.createTextNode(Integer.toString(transponderCounters.getTotal(TransponderCounters.TYPE_ZR))));
 			dataElem.appendChild(e);
 
 			e = dom.createElement("number_LR");
-			e.appendChild(dom.createTextNode(Integer.toString(totalLR)));
+			e.appendChild(dom.createTextNode(Integer.toString(transponderCounters.getTotal(TransponderCounters.TYPE_LR))));
 			dataElem.appendChild(e);
 
 			e = dom.createElement("total_Cost");
 			e.appendChild(dom.createTextNode(Integer.toString(totalCost)));
 			dataElem.appendChild(e);
 
-			//per island:
+			//per island (every island tag of the topology, the totals of the links of the island are kept by the counters):
 
-			for(int island=1;island<10; island++){
-				List<Link> IslandLinks = new ArrayList<>(netPlan.getTaggedLinks("Island"+island));
-				//if(IslandLinks.isEmpty()) throw new Net2PlanException("no link for island " + island);
+			RegionIndex regions = topology.getRegions();
+			for(int island=0;island<regions.getNumberOfIslands(); island++){
+				String islandName = regions.getIslandName(island);
 				int islandTransponder = 0;
-				int island_ZR = 0;
-				int island_LR = 0;
-
-				for(Link link:IslandLinks){
-
-					island_ZR += Integer.parseInt(link.getAttribute("ZR"));
-					island_LR += Integer.parseInt(link.getAttribute("LR"));
-
-				}
-
+				int island_ZR = transponderCounters.getIslandCount(TransponderCounters.TYPE_ZR, island);
+				int island_LR = transponderCounters.getIslandCount(TransponderCounters.TYPE_LR, island);
 
 				// Add transponder per island, ZR and LR per island
 				islandTransponder += island_ZR + island_LR;
 
-				e = dom.createElement("Transponder_Island"+island);
+				e = dom.createElement("Transponder_"+islandName);
 				e.appendChild(dom.createTextNode(Integer.toString(islandTransponder)));
 				dataElem.appendChild(e);
 
-				e = dom.createElement("ZR_Island"+island);
+				e = dom.createElement("ZR_"+islandName);
 				e.appendChild(dom.createTextNode(Integer.toString(island_ZR)));
 				dataElem.appendChild(e);
 
-				e = dom.createElement("LR_Island"+island);
+				e = dom.createElement("LR_"+islandName);
 				e.appendChild(dom.createTextNode(Integer.toString(island_LR)));
 				dataElem.appendChild(e);
 
@@ -589,8 +851,8 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 			for(Node node: nodesList ){
 
 				// Transponder info
-				node_ZR  = Integer.parseInt(node.getAttribute("ZR"));
-				node_LR  = Integer.parseInt(node.getAttribute("LR"));
+				node_ZR  = transponderCounters.getNodeCount(TransponderCounters.TYPE_ZR, node.getIndex());
+				node_LR  = transponderCounters.getNodeCount(TransponderCounters.TYPE_LR, node.getIndex());
 
 				e = dom.createElement("ZR_Node"+node.getName().replace(' ', ch));
 				e.appendChild(dom.createTextNode(Integer.toString(node_ZR)));
@@ -600,49 +862,33 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 				e.appendChild(dom.createTextNode(Integer.toString(node_LR)));
 				dataElem.appendChild(e);
 
-				// Demands info
+				// Demands info (lightpaths starting at the node)
 
-				List<Demand> demandListNode = new ArrayList<>(node.getOutgoingDemands(wdmLayer));
-
-				number_of_demands_per_node = demandListNode.size();
+				number_of_demands_per_node = plan.getNumberOfLightpathsFrom(node.getIndex());
 
 				e = dom.createElement("num_demands_Node"+node.getName().replace(' ', ch));
 				e.appendChild(dom.createTextNode(Integer.toString(number_of_demands_per_node)));
 				dataElem.appendChild(e);
 
 				int count_dem = 0;
-				for(Demand dem: demandListNode){
+				for(int lightpath = 0; lightpath < plan.getNumberOfLightpaths(); lightpath++){
+					if (plan.getOrigin(lightpath) != node.getIndex()) continue;
 
 					e = dom.createElement("Node"+node.getName().replace(' ', ch)+"number"+count_dem);
-					e.appendChild(dom.createTextNode(dem.getEgressNode().getName().replace(' ', ch)));
+					e.appendChild(dom.createTextNode(netPlan.getNode(plan.getDestination(lightpath)).getName().replace(' ', ch)));
 					dataElem.appendChild(e);
 					count_dem ++;
 				}
 			}
 
-			// Per link info
-
-			List<Link> linksList = new ArrayList<>(netPlan.getLinks(ipLayer));
-
-			int totalBitrate = 0;
-			int totalOccupiedBitrate = 0;
-			float avgBitrate = 0;
-			float avgOccupiedBitrate = 0;
-
-			for (Link link: linksList){
-				totalBitrate += link.getCapacity();
-				totalOccupiedBitrate += link.getOccupiedCapacity();
-			}
-
-			avgBitrate = totalBitrate/ linksList.size();
-			avgOccupiedBitrate =  totalOccupiedBitrate/ linksList.size();
+			// Per link info (one IP link per lightpath)
 
 			e = dom.createElement("totalAverageBitrate");
-			e.appendChild(dom.createTextNode(Float.toString(avgBitrate)));
+			e.appendChild(dom.createTextNode(Double.toString(getAverageIPLinkBitrate(false))));
 			dataElem.appendChild(e);
 
 			e = dom.createElement("totalAverageOccupiedBitrate");
-			e.appendChild(dom.createTextNode(Float.toString(avgOccupiedBitrate)));
+			e.appendChild(dom.createTextNode(Double.toString(getAverageIPLinkBitrate(true))));
 			dataElem.appendChild(e);
 
 
@@ -657,11 +903,19 @@ public class Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNo
 				tr.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
 				tr.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
 
-				// send DOM to file
-				tr.transform(new DOMSource(dom),
-						new StreamResult(Files.newOutputStream(Paths.get(resultPath.getString(),
-								new SimpleDateFormat("yyyyMMdd_HHmmss").format(new java.util.Date())+
-										"simulationOutput.xml"))));
+				// send DOM to file, runs finishing in the same second get a numeric suffix instead of overwriting each other
+				String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new java.util.Date());
+				OutputStream out = null;
+				for (int suffix = 0; out == null; suffix++) {
+					try {
+						out = Files.newOutputStream(Paths.get(resultPath.getString(),
+								timestamp + (suffix == 0 ? "" : "_" + suffix) + "simulationOutput.xml"), StandardOpenOption.CREATE_NEW);
+					} catch (FileAlreadyExistsException ignored) {
+					}
+				}
+				try (OutputStream fileOut = out) {
+					tr.transform(new DOMSource(dom), new StreamResult(fileOut));
+				}
 
 			} catch (TransformerException | IOException te) {
 				te.printStackTrace();
@@ -0,0 +1,50 @@
+/*
+ * Segmentation of a candidate path: the path is split in segments (one lightpath each) because of a change of subregion
+ * or because of the reach of the transponder. Each segment has its modulation and the type of transponder that
+ * terminates it ("CORE" for Long Reach, "METRO" for ZR+, the keys of the transponders of the algorithm).
+ * A plan depends only on the topology and on the transponder catalog, so it is computed once and reused by all the demands.
+ */
+public class PathPlan {
+    private final int[][] segmentLinks;
+    private final int[] segmentOrigin;
+    private final int[] segmentDestination;
+    private final Modulation[] modulations;
+    private final String[] transponderTypes;
+    private final double[] transponderCosts;
+    private final double lengthInKm;
+    private final boolean reachable;
+
+    public PathPlan(int[][] segmentLinks, int[] segmentOrigin, int[] segmentDestination, Modulation[] modulations, String[] transponderTypes, double[] transponderCosts, double lengthInKm) {
+        this.segmentLinks = segmentLinks;
+        this.segmentOrigin = segmentOrigin;
+        this.segmentDestination = segmentDestination;
+        this.modulations = modulations;
+        this.transponderTypes = transponderTypes;
+        this.transponderCosts = transponderCosts;
+        this.lengthInKm = lengthInKm;
+        boolean allSegmentsReachable = true;
+        for (Modulation modulation : modulations) {
+            if (modulation == null) allSegmentsReachable = false;
+        }
+        this.reachable = allSegmentsReachable;
+    }
+
+    public int getNumberOfSegments() { return segmentLinks.length; }
+    // indexes of the WDM links of the segment
+    public int[] getSegmentLinks(int segment) { return segmentLinks[segment]; }
+    // index of the first node of the segment
+    public int getSegmentOrigin(int segment) { return segmentOrigin[segment]; }
+    // index of the last node of the segment
+    public int getSegmentDestination(int segment) { return segmentDestination[segment]; }
+    public Modulation getModulation(int segment) { return modulations[segment]; }
+    public String getTransponderType(int segment) { return transponderTypes[segment]; }
+    // cost of the pair of transponders terminating the segment
+    public double getTransponderCost(int segment) { return transponderCosts[segment]; }
+    public double getLengthInKm() { return lengthInKm; }
+
+    /*
+     * isReachable method
+     * False if at least one segment is longer than the reach of every modulation of its transponder
+     */
+    public boolean isReachable() { return reachable; }
+}
@@ -0,0 +1,193 @@
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Path plans (segments, modulation and transponder type per segment) of the candidate paths of every node pair.
+ * The plan of a candidate path is computed the first time it is requested and then reused; the cache is thread safe,
+ * so a single instance can serve all the trials sharing the same TopologyIndex.
+ */
+public class PathPlanCache {
+    private final TopologyIndex topology;
+    private final Map<String, Transponder> transponders;
+    // transponder type used for all the segments, null if each segment uses the transponder of its subregion
+    private final String singleTransponderType;
+    // plans[origin * numberOfNodes + destination][path], k slots per pair filled when requested
+    private final AtomicReferenceArray<PathPlan[]> plans;
+
+    public PathPlanCache(TopologyIndex topology, Map<String, Transponder> transponders, String singleTransponderType) {
+        this.topology = topology;
+        this.transponders = transponders;
+        this.singleTransponderType = singleTransponderType;
+        this.plans = new AtomicReferenceArray<>(topology.getNumberOfNodes() * topology.getNumberOfNodes());
+    }
+
+    /*
+     * getPathPlans method
+     * Returns the plans of all the candidate paths from origin to destination (node indexes), in candidate path order
+     */
+    public PathPlan[] getPathPlans(int origin, int destination) {
+        List<PathPlan> pairPlans = new ArrayList<>();
+        for (PathPlan plan; (plan = getPathPlan(origin, destination, pairPlans.size())) != null; ) pairPlans.add(plan);
+        return pairPlans.toArray(new PathPlan[0]);
+    }
+
+    /*
+     * getPathPlan method
+     * Returns the plan of the index-th candidate path from origin to destination, null if there are no more than index
+     * paths. Only the candidate path asked for is needed, so with lazy candidate paths the later ones are not generated
+     */
+    public PathPlan getPathPlan(int origin, int destination, int index) {
+        int pair = origin * topology.getNumberOfNodes() + destination;
+        PathPlan[] pairPlans = plans.get(pair);
+        if (pairPlans == null) {
+            plans.compareAndSet(pair, null, new PathPlan[topology.getK()]);
+            pairPlans = plans.get(pair);
+        }
+        if (index >= pairPlans.length) return null;
+        // plans are deterministic and immutable, a thread that does not see the plan of another one computes it again
+        PathPlan plan = pairPlans[index];
+        if (plan == null) {
+            int[] path = topology.getCandidatePath(origin, destination, index);
+            if (path == null) {
+                if (index == 0) throw new Net2PlanException("No candidate paths between nodes " + origin + " and " + destination);
+                return null;
+            }
+            plan = computePathPlan(path);
+            pairPlans[index] = plan;
+        }
+        return plan;
+    }
+
+    /*
+     * getNumberOfGeneratedPaths method
+     * Number of candidate paths from origin to destination whose plans can be requested without generating new paths
+     */
+    public int getNumberOfGeneratedPaths(int origin, int destination) {
+        return Math.min(topology.getNumberOfGeneratedPaths(origin, destination), topology.getK());
+    }
+
+    private PathPlan computePathPlan(int[] path) {
+        List<int[]> subpathsList;
+
+        // if singleTransponderType is null, then the path is split in subpaths, each one with a different transponder
+        if (singleTransponderType == null) {
+            //path -> list(subpath)
+            subpathsList = calculateSubPath(path);
+        } else {
+            //path -> list(path)
+            subpathsList = new ArrayList<>();
+            subpathsList.add(path);
+        }
+
+        List<Modulation> modulationsList = new ArrayList<>();
+        List<String> transponderTypesList = new ArrayList<>();
+        List<Double> transponderCostsList = new ArrayList<>();
+        for (int ind = 0; ind < subpathsList.size(); ind++) {
+            int[] subpath = subpathsList.get(ind);
+            String tag = singleTransponderType == null ? RegionIndex.getRegionName(topology.getRegions().getLinkRegion(subpath[0])) : singleTransponderType;
+            Transponder transponder = transponders.get(tag);
+
+            // If subpath length is longer than the maximum reach of the transponder -> split the subpath in shorter subpaths
+            if (transponder.getMaxReach() <= getLengthInKm(subpath)) {
+                List<int[]> subsubpaths = calculateSubPathsBasedOnTransponder(subpath, transponder);
+                subpathsList.remove(ind);
+                subpathsList.addAll(ind, subsubpaths);
+                subpath = subpathsList.get(ind);
+            }
+            //find the best modulation
+            modulationsList.add(transponder.getBestModulationFormat(getLengthInKm(subpath)));
+            transponderTypesList.add(tag);
+            transponderCostsList.add(transponder.getCost() * 2);
+        }
+
+        int numSegments = subpathsList.size();
+        int[] segmentOrigin = new int[numSegments];
+        int[] segmentDestination = new int[numSegments];
+        double[] segmentCost = new double[numSegments];
+        for (int ind = 0; ind < numSegments; ind++) {
+            int[] subpath = subpathsList.get(ind);
+            segmentOrigin[ind] = topology.getLinkOrigin(subpath[0]);
+            segmentDestination[ind] = topology.getLinkDestination(subpath[subpath.length - 1]);
+            segmentCost[ind] = transponderCostsList.get(ind);
+        }
+        return new PathPlan(subpathsList.toArray(new int[0][]), segmentOrigin, segmentDestination,
+                modulationsList.toArray(new Modulation[0]), transponderTypesList.toArray(new String[0]), segmentCost, getLengthInKm(path));
+    }
+
+    /*
+     * calculateSubPath method
+     * Split the path into subpaths each one belonging to a single network category (METRO and CORE)
+     */
+    private List<int[]> calculateSubPath(int[] path) {
+        RegionIndex regions = topology.getRegions();
+        List<int[]> subPaths = new ArrayList<>();
+        int start = 0;
+        for (int link = 1; link < path.length; link++) {
+            if (regions.getLinkRegion(path[link]) != regions.getLinkRegion(path[start])) {
+                subPaths.add(Arrays.copyOfRange(path, start, link));
+                start = link;
+            }
+        }
+        subPaths.add(Arrays.copyOfRange(path, start, path.length));
+        return subPaths;
+    }
+
+    /*
+     * calculateSubPathBasedOnTransponder method
+     * Used for subpaths with longer distance of the maxReach, the subpath is split in the minimum number of subpaths
+     * having distance supported by the transponder modulation
+     */
+    private List<int[]> calculateSubPathsBasedOnTransponder(int[] path, Transponder transponder) {
+        int[] best = new int[path.length];
+        Arrays.fill(best, 1);
+
+        // Find the best modulation (the best spectral efficiency) with that requires the minimum number of regenerators
+        for (Modulation modulation : transponder.getModulationsBySpectralEfficiency()) {
+            int[] regenerators = computeRegeneratorPositions(path, modulation.getReach());
+            if (regenerators == null) continue;
+            if (Arrays.stream(regenerators).sum() <= Arrays.stream(best).sum()) {
+                best = regenerators;
+            }
+        }
+
+        // Found the best modulation, split the given path in multiple subpaths
+        List<int[]> subPaths = new ArrayList<>();
+        int start = 0;
+        for (int link = 1; link < path.length; link++) {
+            if (best[link] == 1) {
+                subPaths.add(Arrays.copyOfRange(path, start, link));
+                start = link;
+            }
+        }
+        subPaths.add(Arrays.copyOfRange(path, start, path.length));
+        return subPaths;
+    }
+
+    /*
+     * computeRegeneratorPositions method
+     * Same placement of WDMUtils.computeRegeneratorPositions (1 = regenerator at the start of the link) on the link
+     * indexes, returns null if a link is longer than the reach
+     */
+    private int[] computeRegeneratorPositions(int[] path, double reachInKm) {
+        int[] regenerators = new int[path.length];
+        double accumulatedLength = 0;
+        for (int link = 0; link < path.length; link++) {
+            double linkLength = topology.getLinkLengthInKm(path[link]);
+            if (linkLength > reachInKm) return null;
+            accumulatedLength += linkLength;
+            if (accumulatedLength > reachInKm) {
+                regenerators[link] = 1;
+                accumulatedLength = linkLength;
+            }
+        }
+        return regenerators;
+    }
+
+    private double getLengthInKm(int[] path) {
+        double res = 0;
+        for (int link : path) res += topology.getLinkLengthInKm(link);
+        return res;
+    }
+}
@@ -0,0 +1,102 @@
+import com.net2plan.interfaces.networkDesign.*;
+
+import java.util.*;
+
+/*
+ * Subregion and island tags of the topology as arrays indexed by node or link index, built once from the NetPlan.
+ * Links have one subregion byte; nodes have a subregion bitmask (a node can be tagged both CORE and METRO). Nodes and
+ * links have an island bitmask, where bit i is the i-th island tag in alphabetical order (the order of getTags()).
+ * Region and island checks become array reads instead of copies and set operations on the tag strings.
+ */
+public class RegionIndex {
+    public static final byte REGION_NONE = 0;
+    public static final byte REGION_CORE = 1;
+    public static final byte REGION_METRO = 2;
+    private static final String SUBREGION_TYPE_CORE = "CORE";
+    private static final String SUBREGION_TYPE_METRO = "METRO";
+    private static final int MAX_ISLANDS = Long.SIZE;
+
+    private final int numberOfNodes;
+    private final byte[] linkRegion;
+    private final long[] linkIslands;
+    private final byte[] nodeRegions;
+    private final long[] nodeIslands;
+    private final String[] islandNames;
+
+    public RegionIndex(NetPlan netPlan, NetworkLayer wdmLayer) {
+        this.numberOfNodes = netPlan.getNumberOfNodes();
+
+        this.linkRegion = new byte[netPlan.getNumberOfLinks(wdmLayer)];
+        for (Link link : netPlan.getLinks(wdmLayer)) {
+            // when both tags are present "CORE" is taken (first one in tag order)
+            if (link.getTags().contains(SUBREGION_TYPE_CORE)) {
+                linkRegion[link.getIndex()] = REGION_CORE;
+            } else if (link.getTags().contains(SUBREGION_TYPE_METRO)) {
+                linkRegion[link.getIndex()] = REGION_METRO;
+            }
+        }
+
+        // every node or link tag that is not a subregion is an island
+        SortedSet<String> islands = new TreeSet<>();
+        for (Node node : netPlan.getNodes()) islands.addAll(node.getTags());
+        for (Link link : netPlan.getLinks(wdmLayer)) islands.addAll(link.getTags());
+        islands.remove(SUBREGION_TYPE_CORE);
+        islands.remove(SUBREGION_TYPE_METRO);
+        if (islands.size() > MAX_ISLANDS)
+            throw new Net2PlanException("The topology has " + islands.size() + " islands, at most " + MAX_ISLANDS + " are supported");
+        this.islandNames = islands.toArray(new String[0]);
+        Map<String, Integer> islandIds = new HashMap<>();
+        for (int i = 0; i < islandNames.length; i++) islandIds.put(islandNames[i], i);
+
+        this.nodeRegions = new byte[numberOfNodes];
+        this.nodeIslands = new long[numberOfNodes];
+        for (Node node : netPlan.getNodes()) {
+            for (String tag : node.getTags()) {
+                if (tag.equals(SUBREGION_TYPE_CORE)) nodeRegions[node.getIndex()] |= REGION_CORE;
+                else if (tag.equals(SUBREGION_TYPE_METRO)) nodeRegions[node.getIndex()] |= REGION_METRO;
+                else nodeIslands[node.getIndex()] |= 1L << islandIds.get(tag);
+            }
+        }
+        this.linkIslands = new long[linkRegion.length];
+        for (Link link : netPlan.getLinks(wdmLayer)) {
+            for (String tag : link.getTags()) {
+                if (!tag.equals(SUBREGION_TYPE_CORE) && !tag.equals(SUBREGION_TYPE_METRO))
+                    linkIslands[link.getIndex()] |= 1L << islandIds.get(tag);
+            }
+        }
+    }
+
+    public int getNumberOfNodes() { return numberOfNodes; }
+
+    /*
+     * getLinkRegion method
+     * Returns the subregion of the link (REGION_CORE or REGION_METRO), REGION_NONE if the link has no subregion tag
+     */
+    public byte getLinkRegion(int linkIndex) { return linkRegion[linkIndex]; }
+
+    /*
+     * isNodeInRegion method
+     * True if the node is tagged with the given subregion (REGION_CORE or REGION_METRO)
+     */
+    public boolean isNodeInRegion(int nodeIndex, byte region) { return (nodeRegions[nodeIndex] & region) != 0; }
+
+    // bit i set if the node is on the i-th island
+    public long getNodeIslands(int nodeIndex) { return nodeIslands[nodeIndex]; }
+
+    // bit i set if the link is on the i-th island
+    public long getLinkIslands(int linkIndex) { return linkIslands[linkIndex]; }
+
+    public int getNumberOfIslands() { return islandNames.length; }
+
+    public String getIslandName(int island) { return islandNames[island]; }
+
+    /*
+     * getRegionName method
+     * Returns the tag of the subregion ("CORE" or "METRO", the keys of the transponders), null for REGION_NONE
+     */
+    public static String getRegionName(byte region) {
+        if (region == REGION_CORE) return SUBREGION_TYPE_CORE;
+        if (region == REGION_METRO) return SUBREGION_TYPE_METRO;
+        return null;
+    }
+}
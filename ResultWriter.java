@@ -0,0 +1,158 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Appends one record (flat map of name -> number, boolean or string) per run to a single result file.
+ * JSONL: one JSON object per line, loaded by pandas with pd.read_json(file, lines=True).
+ * CSV: header with the fields of the first record, loaded by pandas with pd.read_csv(file); when appending to an
+ * existing file its header is kept. A record whose fields are not the ones of the header is rejected, records of
+ * another kind (profiled, scenario or dynamic runs) go to another file.
+ * NaN and infinite numbers are written as null (JSONL) or an empty field (CSV), as missing values.
+ * Records are serialized by the caller and written by a background thread, so a run does not wait for the disk.
+ * Thread safe: the trials of a sweep can share a single writer.
+ */
+public class ResultWriter implements AutoCloseable {
+    public enum Format { JSONL, CSV }
+
+    private final Format format;
+    private final BufferedWriter out;
+    private final ExecutorService writerThread;
+    private List<String> csvColumns;
+    private volatile IOException failure;
+
+    public ResultWriter(Path file, Format format) throws IOException {
+        this.format = format;
+        if (format == Format.CSV && Files.exists(file) && Files.size(file) > 0) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                this.csvColumns = Arrays.asList(reader.readLine().split(",", -1));
+            }
+        }
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.writerThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "result-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * formatOf method
+     * Format for the name given in the parameters ("jsonl" or "csv", case insensitive)
+     */
+    public static Format formatOf(String name) {
+        return Format.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    // file name of the consolidated results in a folder
+    public static String fileName(Format format) {
+        return "results." + format.name().toLowerCase(Locale.ROOT);
+    }
+
+    /*
+     * write method
+     * Queues the record, the IO errors of the background thread are thrown by close.
+     * Throws IllegalArgumentException if the fields of a CSV record are not the columns of the file
+     */
+    public synchronized void write(Map<String, ?> record) {
+        String lines;
+        if (format == Format.JSONL) {
+            lines = toJson(record) + "\n";
+        } else if (csvColumns == null) {
+            csvColumns = new ArrayList<>(record.keySet());
+            lines = String.join(",", csvColumns) + "\n" + toCsv(record) + "\n";
+        } else {
+            checkColumns(record);
+            lines = toCsv(record) + "\n";
+        }
+        writerThread.execute(() -> {
+            try {
+                out.write(lines);
+                out.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        });
+    }
+
+    /*
+     * close method
+     * Waits for the queued records to be written and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        writerThread.shutdown();
+        try {
+            writerThread.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if (failure != null) throw failure;
+    }
+
+    private static String toJson(Map<String, ?> record) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, ?> field : record.entrySet()) {
+            if (json.length() > 1) json.append(',');
+            appendJsonString(json, field.getKey());
+            json.append(':');
+            Object value = field.getValue();
+            if (value == null || !isFinite(value)) json.append("null");
+            else if (value instanceof Number || value instanceof Boolean) json.append(value);
+            else appendJsonString(json, value.toString());
+        }
+        return json.append('}').toString();
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') json.append('\\').append(c);
+            else if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+            else json.append(c);
+        }
+        json.append('"');
+    }
+
+    private String toCsv(Map<String, ?> record) {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < csvColumns.size(); i++) {
+            if (i > 0) csv.append(',');
+            Object value = record.get(csvColumns.get(i));
+            if (value == null || !isFinite(value)) continue;
+            String text = value.toString();
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0)
+                text = '"' + text.replace("\"", "\"\"") + '"';
+            csv.append(text);
+        }
+        return csv.toString();
+    }
+
+    // throws IllegalArgumentException, with the fields not in the header and the columns missing, if they differ
+    private void checkColumns(Map<String, ?> record) {
+        if (record.size() == csvColumns.size() && record.keySet().containsAll(csvColumns)) return;
+        Set<String> extra = new LinkedHashSet<>(record.keySet());
+        extra.removeAll(csvColumns);
+        Set<String> missing = new LinkedHashSet<>(csvColumns);
+        missing.removeAll(record.keySet());
+        throw new IllegalArgumentException("The fields of the record do not match the header of the CSV file, not in the header: "
+                + extra + ", missing: " + missing + ". Write records of another kind to another file");
+    }
+
+    // false for NaN and infinite doubles and floats
+    private static boolean isFinite(Object value) {
+        if (value instanceof Double) return !((Double) value).isNaN() && !((Double) value).isInfinite();
+        if (value instanceof Float) return !((Float) value).isNaN() && !((Float) value).isInfinite();
+        return true;
+    }
+}
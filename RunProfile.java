@@ -0,0 +1,128 @@
+import java.util.Map;
+
+/*
+ * Wall time per phase and event counts of a run of the heuristic, enabled with the profileRun parameter.
+ * The coarse phases (candidate paths ... result writing) are timed once per call and emitted as JFR events, the steps
+ * inside the routing loop (first fit, IP link lookups, NetPlan objects) are accumulated and only summarized.
+ * When disabled, start returns 0 without reading the clock and every other method returns at the first test, so the
+ * instrumented code costs a predictable branch per call.
+ */
+public class RunProfile {
+    public static final int PHASE_CANDIDATE_PATHS = 0;
+    public static final int PHASE_TRAFFIC_GENERATION = 1;
+    public static final int PHASE_PATH_PLANS = 2;
+    public static final int PHASE_DEMAND_SORTING = 3;
+    public static final int PHASE_ROUTING = 4;
+    public static final int PHASE_RESULT_WRITING = 5;
+    // accumulated inside PHASE_ROUTING
+    public static final int PHASE_SPECTRUM_FIRST_FIT = 6;
+    public static final int PHASE_IP_LINK_SCAN = 7;
+    public static final int PHASE_NETPLAN_OBJECTS = 8;
+    static final String[] PHASE_NAMES = { "candidate_paths", "traffic_generation", "path_plans", "demand_sorting", "routing",
+            "result_writing", "spectrum_first_fit", "ip_link_scan", "netplan_objects" };
+
+    public static final int COUNT_FIRST_FIT_CALLS = 0;
+    // one candidate is the index of the IP links between a pair of nodes (IPLinkCapacityIndex), queried in O(1)
+    public static final int COUNT_IP_LINK_CANDIDATES_SCANNED = 1;
+    public static final int COUNT_LIGHTPATHS_CREATED = 2;
+    public static final int COUNT_PATHS_REJECTED_SPECTRUM = 3;
+    public static final int COUNT_PATHS_REJECTED_REACH = 4;
+    static final String[] COUNT_NAMES = { "first_fit_calls", "ip_link_candidates_scanned", "lightpaths_created",
+            "paths_rejected_spectrum", "paths_rejected_reach" };
+
+    public static final RunProfile DISABLED = new RunProfile(false);
+
+    private final boolean enabled;
+    private final long[] phaseNanos = new long[PHASE_NAMES.length];
+    private final long[] counts = new long[COUNT_NAMES.length];
+
+    public RunProfile(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /*
+     * endPhase method
+     * Adds the time since start to a coarse phase and emits its JFR event
+     */
+    public void endPhase(int phase, long start) {
+        if (!enabled) return;
+        long duration = System.nanoTime() - start;
+        phaseNanos[phase] += duration;
+        EventSink events = Events.SINK;
+        if (events != null) events.phase(PHASE_NAMES[phase], duration);
+    }
+
+    /*
+     * addTime method
+     * Adds the time since start to a step of the routing loop, without JFR event
+     */
+    public void addTime(int phase, long start) {
+        if (enabled) phaseNanos[phase] += System.nanoTime() - start;
+    }
+
+    public void count(int counter) {
+        if (enabled) counts[counter]++;
+    }
+
+    /*
+     * add method
+     * Adds the times and counts of another profile, the steps measured by a concurrent task
+     */
+    public void add(RunProfile other) {
+        if (!enabled || !other.enabled) return;
+        for (int phase = 0; phase < phaseNanos.length; phase++) phaseNanos[phase] += other.phaseNanos[phase];
+        for (int counter = 0; counter < counts.length; counter++) counts[counter] += other.counts[counter];
+    }
+
+    public long getPhaseNanos(int phase) { return phaseNanos[phase]; }
+    public long getCount(int counter) { return counts[counter]; }
+
+    /*
+     * addTo method
+     * Adds time_ms_<phase> and count_<counter> fields to a result record, nothing if disabled
+     */
+    public void addTo(Map<String, Object> record) {
+        if (!enabled) return;
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) record.put("time_ms_" + PHASE_NAMES[phase], phaseNanos[phase] / 1e6);
+        for (int counter = 0; counter < COUNT_NAMES.length; counter++) record.put("count_" + COUNT_NAMES[counter], counts[counter]);
+    }
+
+    /*
+     * commitSummary method
+     * Emits the totals so far as a JFR event, for the run of numberOfDemands demands
+     */
+    public void commitSummary(int numberOfDemands) {
+        if (!enabled) return;
+        EventSink events = Events.SINK;
+        if (events != null) events.summary(this, numberOfDemands);
+    }
+
+    /*
+     * Receiver of the JFR events, implemented by RunProfileEvents (jfr source folder)
+     */
+    interface EventSink {
+        void phase(String name, long durationNanos);
+        void summary(RunProfile profile, int numberOfDemands);
+    }
+
+    // loaded the first time an enabled profile emits an event
+    private static final class Events {
+        static final EventSink SINK = load();
+
+        // null if RunProfileEvents was not compiled or the JFR API (jdk.jfr) is missing, as on Java 8 before 8u262
+        private static EventSink load() {
+            try {
+                Class.forName("jdk.jfr.Event");
+                return (EventSink) Class.forName("RunProfileEvents").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+    }
+}
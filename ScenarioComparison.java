@@ -0,0 +1,160 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * Comparison of transponder scenarios with common random numbers: every trial generates one traffic matrix and routes
+ * it under each scenario (SweepRunner.runScenarios), so the differences between scenarios are measured on the same
+ * traffic and their variance does not include the variance between traffic matrices. The scenarios are ZR+ in the whole
+ * network, LR in the whole network and the region split (LR in the core, ZR+ in the metro).
+ * Each scenario run writes its usual result record (results file of the runner), and one paired record per trial with
+ * the outcome of every scenario is written to pairedWriter. After each number of demands the failures of each scenario
+ * and the mean paired cost difference of the single transponder scenarios against the region split are printed, with
+ * the 95% confidence interval over the trials where both succeeded. The sweep stops when every trial of every scenario
+ * fails at a number of demands.
+ */
+public class ScenarioComparison {
+    public static final String ZR_EVERYWHERE = "zr_everywhere";
+    public static final String LR_EVERYWHERE = "lr_everywhere";
+    public static final String REGION_SPLIT = "region_split";
+    // scenario names, in the order they are routed
+    static final String[] SCENARIOS = { ZR_EVERYWHERE, LR_EVERYWHERE, REGION_SPLIT };
+    // fields of the result record of each scenario copied to the paired record
+    private static final String[] PAIRED_FIELDS = { "total_Cost", "number_ZR", "number_LR", "totalAverageOccupiedBitrate" };
+
+    private final SweepRunner runner;
+    private final ResultWriter pairedWriter;
+    private final int numThreads;
+    private final List<Map<String, String>> scenarioParameters = new ArrayList<>();
+
+    public ScenarioComparison(SweepRunner runner, ResultWriter pairedWriter, int numThreads) {
+        this.runner = runner;
+        this.pairedWriter = pairedWriter;
+        this.numThreads = Math.max(1, numThreads);
+        for (String scenario : SCENARIOS) scenarioParameters.add(getParameters(scenario));
+    }
+
+    // transponder parameters of a scenario
+    static Map<String, String> getParameters(String scenario) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("singleTransponderForAll", Boolean.toString(!scenario.equals(REGION_SPLIT)));
+        parameters.put("singleTransponderType", Boolean.toString(scenario.equals(LR_EVERYWHERE)));
+        return parameters;
+    }
+
+    /*
+     * run method
+     * Increases the number of demands until all the scenarios fail in all the iterations of a number of demands.
+     * Returns the number of demands at which the comparison stopped
+     */
+    public int run(int startNumDemands, int incrementNumDemands, int numIterations, String outputFolder) {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            boolean allFailed = false;
+            int numDemands = startNumDemands;
+            while (!allFailed) {
+                System.out.println(numDemands + " demands");
+                List<Future<List<SweepRunner.TrialResult>>> futures = new ArrayList<>(numIterations);
+                for (int iteration = 0; iteration < numIterations; iteration++) {
+                    final int trialNumDemands = numDemands;
+                    final int trialIteration = iteration;
+                    futures.add(executor.submit(() -> runner.runScenarios(trialNumDemands, trialIteration, outputFolder, scenarioParameters)));
+                }
+
+                List<List<SweepRunner.TrialResult>> trials = new ArrayList<>(numIterations);
+                for (Future<List<SweepRunner.TrialResult>> future : futures) {
+                    List<SweepRunner.TrialResult> results = getResult(future);
+                    for (SweepRunner.TrialResult result : results) SweepRunner.checkNotError(result);
+                    trials.add(results);
+                    pairedWriter.write(buildPairedRecord(results));
+                }
+                allFailed = printSummary(numDemands, trials);
+                numDemands += incrementNumDemands;
+            }
+            return numDemands;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * buildPairedRecord method
+     * Record of a trial: number of demands, iteration, seed, and for each scenario its success and the main fields of
+     * its result, prefixed with the scenario name (empty if it failed)
+     */
+    static Map<String, Object> buildPairedRecord(List<SweepRunner.TrialResult> results) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        SweepRunner.TrialResult first = results.get(0);
+        record.put("demands", first.getNumberOfDemands());
+        record.put("iteration", first.getIteration());
+        record.put("random_seed", first.getSeed());
+        for (int s = 0; s < SCENARIOS.length; s++) {
+            SweepRunner.TrialResult result = results.get(s);
+            record.put(SCENARIOS[s] + "_success", result.isSuccess());
+            for (String field : PAIRED_FIELDS)
+                record.put(SCENARIOS[s] + "_" + field, result.isSuccess() ? result.getRecord().get(field) : "");
+        }
+        return record;
+    }
+
+    /*
+     * printSummary method
+     * Prints the failures of each scenario and the paired cost differences against the region split, returns true if
+     * every trial of every scenario failed
+     */
+    private static boolean printSummary(int numDemands, List<List<SweepRunner.TrialResult>> trials) {
+        boolean allFailed = true;
+        StringBuilder summary = new StringBuilder(numDemands + " demands, fails:");
+        for (int s = 0; s < SCENARIOS.length; s++) {
+            int failures = 0;
+            for (List<SweepRunner.TrialResult> trial : trials) {
+                if (trial.get(s).isSuccess()) allFailed = false;
+                else failures++;
+            }
+            summary.append(' ').append(SCENARIOS[s]).append(' ').append(failures).append('/').append(trials.size());
+        }
+        int split = Arrays.asList(SCENARIOS).indexOf(REGION_SPLIT);
+        for (int s = 0; s < SCENARIOS.length; s++) {
+            if (s == split) continue;
+            double[] difference = pairedCostDifference(trials, s, split);
+            summary.append("\n  total_Cost ").append(SCENARIOS[s]).append(" - ").append(REGION_SPLIT).append(": ");
+            if (difference == null) summary.append("no trial where both succeeded");
+            else summary.append(String.format(Locale.ROOT, "%.2f +- %.2f (%d paired trials)", difference[0], difference[1], (int) difference[2]));
+        }
+        System.out.println(summary);
+        return allFailed;
+    }
+
+    /*
+     * pairedCostDifference method
+     * Mean of total_Cost(scenario) - total_Cost(reference) over the trials where both succeeded, half width of its 95%
+     * confidence interval and number of such trials. Null if there are none
+     */
+    static double[] pairedCostDifference(List<List<SweepRunner.TrialResult>> trials, int scenario, int reference) {
+        int n = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (List<SweepRunner.TrialResult> trial : trials) {
+            if (!trial.get(scenario).isSuccess() || !trial.get(reference).isSuccess()) continue;
+            double difference = ((Number) trial.get(scenario).getRecord().get("total_Cost")).doubleValue()
+                    - ((Number) trial.get(reference).getRecord().get("total_Cost")).doubleValue();
+            n++;
+            sum += difference;
+            sumOfSquares += difference * difference;
+        }
+        if (n == 0) return null;
+        double mean = sum / n;
+        double variance = n > 1 ? Math.max(0, (sumOfSquares - n * mean * mean) / (n - 1)) : 0;
+        return new double[] { mean, AdaptiveSweep.Z * Math.sqrt(variance / n), n };
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,382 @@
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+
+import java.util.List;
+
+/*
+ * Frequency slot occupancy of the WDM fibers, stored as one packed bitmap per fiber (bit set = slot occupied).
+ * The free slots common to all the fibers of a path are found by OR-ing the bitmaps of the fibers one 64-bit word at a
+ * time. Each fiber also has two summary bitmaps with one bit per word, set if the word is full (fullWords) or has at
+ * least one occupied slot (usedWords), kept up to date by every allocation and release: the runs of free slots common
+ * to a path are enumerated jumping over the words full in some fiber, or empty in all of them, 64 words at a time.
+ * The slots of a new lightpath are chosen by the policy of the occupancy: first fit (lowest run that fits), best fit
+ * (smallest run that fits) or exact fit (lowest run of exactly the width, else first fit).
+ * The slots of the lightpaths of a candidate path can be reserved segment by segment while the path is evaluated
+ * (Reservation), and then allocated all together by commit, or dropped by release.
+ * The slots of a lightpath that is torn down are freed by deallocate.
+ */
+public class SpectrumOccupancy {
+    public enum Policy {
+        FIRST_FIT("firstFit"), BEST_FIT("bestFit"), EXACT_FIT("exactFit");
+
+        private final String parameterValue;
+
+        Policy(String parameterValue) {
+            this.parameterValue = parameterValue;
+        }
+
+        /*
+         * policyOf method
+         * Policy for the value of the spectrumAssignment parameter (firstFit, bestFit or exactFit)
+         */
+        public static Policy policyOf(String parameterValue) {
+            for (Policy policy : values()) {
+                if (policy.parameterValue.equals(parameterValue.trim())) return policy;
+            }
+            throw new IllegalArgumentException("Unknown spectrum assignment policy: " + parameterValue);
+        }
+    }
+
+    private final int numSlots;
+    private final int numWords;
+    private final Policy policy;
+    // occupied[fiber index][word], slot s of a fiber is bit (s % 64) of word (s / 64)
+    private final long[][] occupied;
+    // fullWords[fiber index][summary word], word w of a fiber is bit (w % 64) of summary word (w / 64)
+    private final long[][] fullWords;
+    private final long[][] usedWords;
+    // slots of the last word, all the bits of the other words
+    private final long lastWordMask;
+
+    public SpectrumOccupancy(int numFibers, int numSlots) {
+        this(numFibers, numSlots, Policy.FIRST_FIT);
+    }
+
+    public SpectrumOccupancy(int numFibers, int numSlots, Policy policy) {
+        this.numSlots = numSlots;
+        this.numWords = (numSlots + 63) >>> 6;
+        this.policy = policy;
+        this.occupied = new long[numFibers][numWords];
+        this.fullWords = new long[numFibers][(numWords + 63) >>> 6];
+        this.usedWords = new long[numFibers][(numWords + 63) >>> 6];
+        this.lastWordMask = -1L >>> -numSlots;
+    }
+
+    public int getNumberOfSlots() { return numSlots; }
+    public Policy getPolicy() { return policy; }
+
+    /*
+     * assign method
+     * Returns the first slot of numContiguousSlots slots free in all the given fibers chosen by the policy, -1 if none
+     */
+    public int assign(int[] fibers, int numContiguousSlots) {
+        return policy == Policy.FIRST_FIT ? firstFit(fibers, numContiguousSlots) : fitFreeRun(fibers, numContiguousSlots, policy);
+    }
+
+    /*
+     * firstFit method
+     * Returns the lowest slot id s such that slots [s, s + numContiguousSlots) are free in all the given fibers, -1 if none
+     */
+    public int firstFit(int[] fibers, int numContiguousSlots) {
+        int start = nextFreeSlot(fibers, 0);
+        while (start >= 0 && start + numContiguousSlots <= numSlots) {
+            int end = nextOccupiedSlot(fibers, start);
+            if (end - start >= numContiguousSlots) return start;
+            start = nextFreeSlot(fibers, end);
+        }
+        return -1;
+    }
+
+    public int firstFit(List<Link> path, int numContiguousSlots) {
+        return firstFit(toFiberIndexes(path), numContiguousSlots);
+    }
+
+    /*
+     * bestFit method
+     * Returns the first slot of the smallest run of slots free in all the given fibers with at least numContiguousSlots
+     * slots (the lowest one on ties), -1 if none
+     */
+    public int bestFit(int[] fibers, int numContiguousSlots) {
+        return fitFreeRun(fibers, numContiguousSlots, Policy.BEST_FIT);
+    }
+
+    /*
+     * exactFit method
+     * Returns the first slot of the lowest run of exactly numContiguousSlots slots free in all the given fibers, or the
+     * first fit if there is no such run, -1 if none fits
+     */
+    public int exactFit(int[] fibers, int numContiguousSlots) {
+        return fitFreeRun(fibers, numContiguousSlots, Policy.EXACT_FIT);
+    }
+
+    // best or exact fit: a single pass on the runs of common free slots, ended by a run of exactly the width
+    private int fitFreeRun(int[] fibers, int numContiguousSlots, Policy fitPolicy) {
+        int firstFit = -1;
+        int bestFit = -1;
+        int bestWidth = Integer.MAX_VALUE;
+        int start = nextFreeSlot(fibers, 0);
+        while (start >= 0 && start + numContiguousSlots <= numSlots) {
+            int end = nextOccupiedSlot(fibers, start);
+            int width = end - start;
+            if (width == numContiguousSlots) return start;
+            if (width > numContiguousSlots) {
+                if (firstFit < 0) firstFit = start;
+                if (width < bestWidth) {
+                    bestFit = start;
+                    bestWidth = width;
+                }
+            }
+            start = nextFreeSlot(fibers, end);
+        }
+        return fitPolicy == Policy.EXACT_FIT ? firstFit : bestFit;
+    }
+
+    /*
+     * allocate method
+     * Marks slots [firstSlot, firstSlot + numContiguousSlots) as occupied in all the given fibers
+     */
+    public void allocate(int[] fibers, int firstSlot, int numContiguousSlots) {
+        int from = firstSlot;
+        int to = firstSlot + numContiguousSlots;
+        if (from < 0 || to > numSlots) throw new Net2PlanException("Slots " + from + "-" + to + " are out of the fiber spectrum");
+        for (int fiber : fibers) {
+            if (isAnyOccupied(occupied[fiber], from, to))
+                throw new Net2PlanException("Slots " + from + "-" + to + " of fiber " + fiber + " are already occupied");
+        }
+        for (int fiber : fibers) {
+            setRange(fiber, from, to);
+        }
+    }
+
+    public void allocate(List<Link> path, int firstSlot, int numContiguousSlots) {
+        allocate(toFiberIndexes(path), firstSlot, numContiguousSlots);
+    }
+
+    /*
+     * deallocate method
+     * Frees slots [firstSlot, firstSlot + numContiguousSlots) in all the given fibers, the slots of a lightpath that is
+     * torn down. Throws Net2PlanException, and frees nothing, if any of them is not occupied
+     */
+    public void deallocate(int[] fibers, int firstSlot, int numContiguousSlots) {
+        int from = firstSlot;
+        int to = firstSlot + numContiguousSlots;
+        if (from < 0 || to > numSlots) throw new Net2PlanException("Slots " + from + "-" + to + " are out of the fiber spectrum");
+        for (int fiber : fibers) {
+            if (!isAllOccupied(occupied[fiber], from, to))
+                throw new Net2PlanException("Slots " + from + "-" + to + " of fiber " + fiber + " are not all occupied");
+        }
+        for (int fiber : fibers) {
+            clearRange(fiber, from, to);
+        }
+    }
+
+    /*
+     * newReservation method
+     * Empty reservation for a path of numSegments segments
+     */
+    public Reservation newReservation(int numSegments) {
+        return new Reservation(this, numSegments);
+    }
+
+    /*
+     * reserve method
+     * Slots for numContiguousSlots on the fibers of a segment chosen by the policy, recorded in the reservation without occupying
+     * them: the reservations of the candidate paths of a demand are alternatives, each one is searched on the current
+     * occupancy. Returns false, and reserves nothing, if no slots are free
+     */
+    public boolean reserve(Reservation reservation, int segment, int[] fibers, int numContiguousSlots) {
+        reservation.checkOpen(this);
+        int firstSlot = assign(fibers, numContiguousSlots);
+        if (firstSlot < 0) return false;
+        reservation.fibers[segment] = fibers;
+        reservation.firstSlot[segment] = firstSlot;
+        reservation.numSlots[segment] = numContiguousSlots;
+        return true;
+    }
+
+    /*
+     * commit method
+     * Allocates the slots of all the reserved segments, or none of them (Net2PlanException) if some are occupied now
+     */
+    public void commit(Reservation reservation) {
+        reservation.checkOpen(this);
+        for (int segment = 0; segment < reservation.fibers.length; segment++) {
+            if (!reservation.isReserved(segment)) continue;
+            int from = reservation.firstSlot[segment];
+            int to = from + reservation.numSlots[segment];
+            for (int fiber : reservation.fibers[segment]) {
+                if (isAnyOccupied(occupied[fiber], from, to))
+                    throw new Net2PlanException("Slots " + from + "-" + to + " of fiber " + fiber + " are already occupied");
+            }
+        }
+        for (int segment = 0; segment < reservation.fibers.length; segment++) {
+            if (!reservation.isReserved(segment)) continue;
+            int from = reservation.firstSlot[segment];
+            for (int fiber : reservation.fibers[segment]) setRange(fiber, from, from + reservation.numSlots[segment]);
+        }
+        reservation.committed = true;
+    }
+
+    /*
+     * release method
+     * Drops a reservation that will not be committed
+     */
+    public void release(Reservation reservation) {
+        reservation.checkOpen(this);
+        reservation.released = true;
+    }
+
+    private static int[] toFiberIndexes(List<Link> path) {
+        int[] fibers = new int[path.size()];
+        for (int i = 0; i < fibers.length; i++) fibers[i] = path.get(i).getIndex();
+        return fibers;
+    }
+
+    // occupied slots of word w in at least one of the fibers
+    private long pathWord(int[] fibers, int w) {
+        long word = 0;
+        for (int fiber : fibers) word |= occupied[fiber][w];
+        return word;
+    }
+
+    // first slot >= from free in all the fibers, -1 if none
+    private int nextFreeSlot(int[] fibers, int from) {
+        if (from >= numSlots) return -1;
+        int w = from >>> 6;
+        long free = ~pathWord(fibers, w) & (-1L << from);
+        while (free == 0) {
+            if ((w = nextWord(fullWords, fibers, w + 1, true)) == numWords) return -1;
+            free = ~pathWord(fibers, w);
+        }
+        int slot = (w << 6) + Long.numberOfTrailingZeros(free);
+        return slot < numSlots ? slot : -1;
+    }
+
+    // first slot >= from occupied in at least one of the fibers, numSlots if none
+    private int nextOccupiedSlot(int[] fibers, int from) {
+        int w = from >>> 6;
+        long busy = pathWord(fibers, w) & (-1L << from);
+        while (busy == 0) {
+            if ((w = nextWord(usedWords, fibers, w + 1, false)) == numWords) return numSlots;
+            busy = pathWord(fibers, w);
+        }
+        return Math.min((w << 6) + Long.numberOfTrailingZeros(busy), numSlots);
+    }
+
+    /*
+     * nextWord method
+     * First word >= from whose bit in the summary is clear in all the fibers (clear = true: not full in any of them,
+     * the words full in a fiber can not have common free slots) or set in at least one (clear = false: not empty in
+     * all of them), numWords if none
+     */
+    private int nextWord(long[][] summary, int[] fibers, int from, boolean clear) {
+        for (int s = from >>> 6; (s << 6) < numWords; s++) {
+            long bits = 0;
+            for (int fiber : fibers) bits |= summary[fiber][s];
+            if (clear) bits = ~bits;
+            if (s == from >>> 6) bits &= -1L << from;
+            if (bits != 0) return Math.min((s << 6) + Long.numberOfTrailingZeros(bits), numWords);
+        }
+        return numWords;
+    }
+
+    private static boolean isAnyOccupied(long[] words, int from, int to) {
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (firstWord == lastWord) return (words[firstWord] & firstMask & lastMask) != 0;
+        if ((words[firstWord] & firstMask) != 0 || (words[lastWord] & lastMask) != 0) return true;
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            if (words[w] != 0) return true;
+        }
+        return false;
+    }
+
+    private static boolean isAllOccupied(long[] words, int from, int to) {
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (firstWord == lastWord) return (~words[firstWord] & firstMask & lastMask) == 0;
+        if ((~words[firstWord] & firstMask) != 0 || (~words[lastWord] & lastMask) != 0) return false;
+        for (int w = firstWord + 1; w < lastWord; w++) {
+            if (words[w] != -1L) return false;
+        }
+        return true;
+    }
+
+    private void clearRange(int fiber, int from, int to) {
+        long[] words = occupied[fiber];
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (firstWord == lastWord) {
+            words[firstWord] &= ~(firstMask & lastMask);
+        } else {
+            words[firstWord] &= ~firstMask;
+            for (int w = firstWord + 1; w < lastWord; w++) words[w] = 0;
+            words[lastWord] &= ~lastMask;
+        }
+        updateSummaries(fiber, firstWord, lastWord);
+    }
+
+    private void setRange(int fiber, int from, int to) {
+        long[] words = occupied[fiber];
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (firstWord == lastWord) {
+            words[firstWord] |= firstMask & lastMask;
+        } else {
+            words[firstWord] |= firstMask;
+            for (int w = firstWord + 1; w < lastWord; w++) words[w] = -1L;
+            words[lastWord] |= lastMask;
+        }
+        updateSummaries(fiber, firstWord, lastWord);
+    }
+
+    // full and used bits of words [firstWord, lastWord] of a fiber after a change
+    private void updateSummaries(int fiber, int firstWord, int lastWord) {
+        long[] words = occupied[fiber];
+        for (int w = firstWord; w <= lastWord; w++) {
+            long mask = w == numWords - 1 ? lastWordMask : -1L;
+            long bit = 1L << w;
+            if ((words[w] & mask) == mask) fullWords[fiber][w >>> 6] |= bit;
+            else fullWords[fiber][w >>> 6] &= ~bit;
+            if (words[w] != 0) usedWords[fiber][w >>> 6] |= bit;
+            else usedWords[fiber][w >>> 6] &= ~bit;
+        }
+    }
+
+    /*
+     * Slots reserved for the segments of a candidate path (segments without reservation use an existing IP link).
+     * A reservation is committed or released once
+     */
+    public static class Reservation {
+        private final SpectrumOccupancy occupancy;
+        private final int[][] fibers;
+        private final int[] firstSlot;
+        private final int[] numSlots;
+        private boolean committed;
+        private boolean released;
+
+        private Reservation(SpectrumOccupancy occupancy, int numSegments) {
+            this.occupancy = occupancy;
+            this.fibers = new int[numSegments][];
+            this.firstSlot = new int[numSegments];
+            this.numSlots = new int[numSegments];
+        }
+
+        public boolean isReserved(int segment) { return fibers[segment] != null; }
+        public int getFirstSlot(int segment) { return firstSlot[segment]; }
+        public int getNumSlots(int segment) { return numSlots[segment]; }
+
+        private void checkOpen(SpectrumOccupancy caller) {
+            if (caller != occupancy) throw new IllegalArgumentException("The reservation belongs to another spectrum occupancy");
+            if (committed || released) throw new IllegalStateException("The reservation has already been " + (committed ? "committed" : "released"));
+        }
+    }
+}
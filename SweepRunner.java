@@ -0,0 +1,449 @@
+import com.net2plan.interfaces.networkDesign.IAlgorithm;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.utils.Triple;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * Runs the same sweep of launch.py inside a single JVM: the topology is loaded once and every trial
+ * (NumberOfDemands, iteration) is executed on a fresh copy of it. A trial that ends with an exception other than a
+ * Net2PlanException (a bug, a record the results file rejects) aborts the sweep instead of counting as a failure.
+ * The iterations of a given number of demands are run in parallel on numThreads workers, each trial has its own NetPlan
+ * copy and algorithm instance while the candidate paths and the link data are shared through a single TopologyIndex.
+ * With the jsonl (default) or csv format the results of all the trials are appended to a single file of the output
+ * folder by a ResultWriter, with the xml format each trial writes its own file in the folder of its number of demands.
+ * With --incremental each iteration is a single load ramp: the start number of demands is routed, then batches of
+ * increment demands are added on top of the routed state until a batch fails, and a result is written after each batch.
+ * With --adaptive the number of demands at which the failure rate crosses --target (default 0.5) is searched by
+ * AdaptiveSweep, using at most <number of iterations> trials per load point and the increment as resolution, up to
+ * --max-demands (default 100000) demands.
+ * With --profile every result record also has the time per phase and the counts of the run (profileRun parameter).
+ * With --scenarios each trial generates one traffic matrix and routes it with ZR+ everywhere, LR everywhere and the
+ * region split (ScenarioComparison), <singleTransponder> is not used and a paired record per trial is written to the
+ * paired results file.
+ *
+ * Usage: java SweepRunner <topology file> <start number of demands> <increment number of demands>
+ *        <percentage of traffic generated by CORE nodes> <singleTransponder> <number of iterations per number of demands>
+ *        [<output folder>] [--threads <number of threads>] [--seed <seed>] [--format xml|jsonl|csv] [--incremental]
+ *        [--adaptive [--target <failure rate>] [--half-width <confidence interval half width>]
+ *        [--max-demands <maximum number of demands>]] [--profile] [--scenarios]
+ */
+public class SweepRunner {
+
+    // maximum load of the adaptive search if --max-demands is not given
+    private static final int DEFAULT_MAX_NUM_DEMANDS = 100000;
+
+    private static final String USAGE = "Usage: java SweepRunner <topology file> <start number of demands> <increment number of demands> <percentage of traffic generated by CORE nodes> <singleTransponder> <number of iterations per number of demands> [<output folder>] [--threads <number of threads>] [--seed <seed>] [--format xml|jsonl|csv] [--incremental] [--adaptive [--target <failure rate>] [--half-width <confidence interval half width>] [--max-demands <maximum number of demands>]] [--profile] [--scenarios]";
+
+    private final NetPlan topology;
+    private final Map<String, String> baseParameters;
+    private final TopologyIndex sharedTopology;
+    private final int numThreads;
+    private final int seed;
+    private final ResultWriter resultWriter;
+    private final List<TrialResult> trialResults = new ArrayList<>();
+
+    public SweepRunner(NetPlan topology, Map<String, String> baseParameters) {
+        this(topology, baseParameters, 1, -1, null);
+    }
+
+    /*
+     * A negative seed generates a different traffic at each trial, otherwise the seed of each trial is derived from
+     * (seed, number of demands, iteration) so that a sweep gives the same results regardless of numThreads.
+     * If resultWriter is null each trial writes its result file (resultFormat parameter) in the folder of its number of demands
+     */
+    public SweepRunner(NetPlan topology, Map<String, String> baseParameters, int numThreads, int seed, ResultWriter resultWriter) {
+        this.topology = topology;
+        this.baseParameters = baseParameters;
+        this.numThreads = numThreads;
+        this.seed = seed;
+        this.resultWriter = resultWriter;
+
+        Map<String, String> parameters = withDefaults(new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(), baseParameters);
+        this.sharedTopology = new TopologyIndex(topology, topology.getNetworkLayer("WDM"),
+                Integer.parseInt(parameters.get("k")), Double.parseDouble(parameters.get("maxPropagationDelayMs")),
+                Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming.getCandidatePathCacheFolder(parameters.get("candidatePathCache")),
+                Boolean.parseBoolean(parameters.get("lazyCandidatePaths")));
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> positional = new ArrayList<>();
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int seed = -1;
+        String format = "jsonl";
+        boolean incremental = false;
+        boolean adaptive = false;
+        double targetFailureRate = 0.5;
+        double maxHalfWidth = 0.1;
+        int maxNumDemands = DEFAULT_MAX_NUM_DEMANDS;
+        boolean profile = false;
+        boolean scenarios = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                numThreads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--format") && i + 1 < args.length) {
+                format = args[++i].toLowerCase(Locale.ROOT);
+            } else if (args[i].equals("--incremental")) {
+                incremental = true;
+            } else if (args[i].equals("--adaptive")) {
+                adaptive = true;
+            } else if (args[i].equals("--target") && i + 1 < args.length) {
+                targetFailureRate = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--half-width") && i + 1 < args.length) {
+                maxHalfWidth = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--max-demands") && i + 1 < args.length) {
+                maxNumDemands = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--profile")) {
+                profile = true;
+            } else if (args[i].equals("--scenarios")) {
+                scenarios = true;
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 6 || positional.size() > 7) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+        args = positional.toArray(new String[0]);
+
+        File topologyFile = new File(args[0]);
+        int startNumDemands = Integer.parseInt(args[1]);
+        int incrementNumDemands = Integer.parseInt(args[2]);
+        double percentageCore = Double.parseDouble(args[3]);
+        boolean singleTransponder = Boolean.parseBoolean(args[4].toLowerCase());
+        int numIterations = Integer.parseInt(args[5]);
+        String outputFolder = args.length == 7 ? args[6] : System.getProperty("user.dir") + "/results";
+
+        // same folder structure of launch.py: <output>/<singleTransponder|multipleTransponders>/C<percentage_core>/demands<num_demands>
+        outputFolder += scenarios ? "/scenarios" : singleTransponder ? "/singleTransponder" : "/multipleTransponders";
+        outputFolder += "/C" + Double.toString(percentageCore).replace('.', '_');
+        System.out.println("Output path: " + outputFolder + "\n");
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("percentageOfCoreTraffic", Double.toString(percentageCore));
+        parameters.put("singleTransponderForAll", Boolean.toString(singleTransponder));
+
+        parameters.put("resultFormat", format);
+        parameters.put("profileRun", Boolean.toString(profile));
+        if (incremental && format.equals("xml")) {
+            System.out.println("--incremental writes all the results of a ramp in one file, use --format jsonl or csv");
+            System.exit(1);
+        }
+        if (adaptive && (incrementNumDemands <= 0 || numIterations <= 0)) {
+            System.out.println("--adaptive uses the increment as resolution and the iterations as the maximum trials per load point, both must be positive");
+            System.exit(1);
+        }
+        if (scenarios && (format.equals("xml") || incremental || adaptive)) {
+            System.out.println("--scenarios writes the paired results of a trial in one file, use --format jsonl or csv, without --incremental and --adaptive");
+            System.exit(1);
+        }
+
+        int lastNumDemands;
+        if (format.equals("xml")) {
+            SweepRunner runner = new SweepRunner(new NetPlan(topologyFile), parameters, numThreads, seed, null);
+            if (adaptive) {
+                System.out.println(new AdaptiveSweep(runner, targetFailureRate, maxHalfWidth, numIterations, numThreads, maxNumDemands).run(startNumDemands, incrementNumDemands, outputFolder));
+                return;
+            }
+            lastNumDemands = runner.runSweep(startNumDemands, incrementNumDemands, numIterations, outputFolder);
+        } else {
+            // one results file for the whole sweep, in the folder of the percentage of core traffic
+            new File(outputFolder).mkdirs();
+            ResultWriter.Format resultFormat = ResultWriter.formatOf(format);
+            try (ResultWriter resultWriter = new ResultWriter(Paths.get(outputFolder, ResultWriter.fileName(resultFormat)), resultFormat)) {
+                SweepRunner runner = new SweepRunner(new NetPlan(topologyFile), parameters, numThreads, seed, resultWriter);
+                if (scenarios) {
+                    try (ResultWriter pairedWriter = new ResultWriter(Paths.get(outputFolder, "paired_" + ResultWriter.fileName(resultFormat)), resultFormat)) {
+                        lastNumDemands = new ScenarioComparison(runner, pairedWriter, numThreads).run(startNumDemands, incrementNumDemands, numIterations, outputFolder);
+                    }
+                    System.out.println("Execution stopped at " + lastNumDemands + " demands");
+                    return;
+                }
+                if (incremental) {
+                    runner.runRamps(startNumDemands, incrementNumDemands, numIterations, outputFolder);
+                    return;
+                }
+                if (adaptive) {
+                    System.out.println(new AdaptiveSweep(runner, targetFailureRate, maxHalfWidth, numIterations, numThreads, maxNumDemands).run(startNumDemands, incrementNumDemands, outputFolder));
+                    return;
+                }
+                lastNumDemands = runner.runSweep(startNumDemands, incrementNumDemands, numIterations, outputFolder);
+            }
+        }
+
+        // print at which number of demands the execution stopped
+        System.out.println("Execution stopped at " + lastNumDemands + " demands");
+    }
+
+    /*
+     * runRamps method
+     * Runs numIterations load ramps (incrementalDemands algorithm parameter): each ramp routes startNumDemands demands and
+     * then batches of incrementNumDemands demands until a batch fails, writing a result after each batch.
+     * A ramp costs a single routing pass instead of one pass per number of demands
+     */
+    public void runRamps(int startNumDemands, int incrementNumDemands, int numIterations, String outputFolder) {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<TrialResult>> futures = new ArrayList<>(numIterations);
+            for (int iteration = 0; iteration < numIterations; iteration++) {
+                final int rampIteration = iteration;
+                futures.add(executor.submit(() -> runTrial(startNumDemands, incrementNumDemands, rampIteration, outputFolder)));
+            }
+            for (int iteration = 0; iteration < numIterations; iteration++) {
+                TrialResult result = getResult(futures.get(iteration));
+                trialResults.add(result);
+                checkNotError(result);
+                System.out.println("Ramp " + iteration + ": " + result.getMessage());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * runSweep method
+     * Increases the number of demands until all the iterations at a given number of demands fail.
+     * Returns the number of demands at which the sweep stopped
+     */
+    public int runSweep(int startNumDemands, int incrementNumDemands, int numIterations, String outputFolder) {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            boolean allIterationsFailed = false;
+            int numDemands = startNumDemands;
+            while (!allIterationsFailed) {
+                String outputFolderDemand = outputFolder + "/demands" + numDemands;
+                if (resultWriter == null) new File(outputFolderDemand).mkdirs();
+                System.out.println(numDemands + " demands");
+
+                // all the iterations of this number of demands are submitted at once, results are collected in iteration order
+                List<Future<TrialResult>> futures = new ArrayList<>(numIterations);
+                for (int iteration = 0; iteration < numIterations; iteration++) {
+                    final int trialNumDemands = numDemands;
+                    final int trialIteration = iteration;
+                    futures.add(executor.submit(() -> runTrial(trialNumDemands, trialIteration, outputFolderDemand)));
+                }
+
+                int count = 0;
+                allIterationsFailed = true;
+                for (int iteration = 0; iteration < numIterations; iteration++) {
+                    System.out.print("Fails: " + count + "/" + iteration + "\r");
+                    TrialResult result = getResult(futures.get(iteration));
+                    trialResults.add(result);
+                    checkNotError(result);
+                    if (result.isSuccess()) {
+                        allIterationsFailed = false;
+                    } else {
+                        count++;
+                        System.out.println(result.getMessage());
+                        // a seeded trial is re-run exactly by a single execution with this randomSeed
+                        if (result.getSeed() >= 0) System.out.println("(iteration " + iteration + ", randomSeed " + result.getSeed() + ")");
+                    }
+                }
+                System.out.println(numDemands + " demands ended with " + count + " fails on " + numIterations + " iterations");
+                numDemands += incrementNumDemands;
+            }
+            return numDemands;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * runTrials method
+     * Runs in parallel the iterations firstIteration ... firstIteration + count - 1 at numDemands, results in iteration order
+     */
+    public List<TrialResult> runTrials(int numDemands, int firstIteration, int count, String outputFolder) {
+        String outputFolderDemand = outputFolder + "/demands" + numDemands;
+        if (resultWriter == null) new File(outputFolderDemand).mkdirs();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, count)));
+        try {
+            List<Future<TrialResult>> futures = new ArrayList<>(count);
+            for (int iteration = firstIteration; iteration < firstIteration + count; iteration++) {
+                final int trialIteration = iteration;
+                futures.add(executor.submit(() -> runTrial(numDemands, trialIteration, outputFolderDemand)));
+            }
+            List<TrialResult> results = new ArrayList<>(count);
+            for (Future<TrialResult> future : futures) {
+                TrialResult result = getResult(future);
+                trialResults.add(result);
+                results.add(result);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TrialResult getResult(Future<TrialResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /*
+     * checkNotError method
+     * A trial that ended with an error is not a sample of the failure rate: the sweep is aborted instead of counting it
+     */
+    static TrialResult checkNotError(TrialResult result) {
+        if (result.isError()) {
+            throw new IllegalStateException("Sweep aborted, the trial of " + result.getNumberOfDemands() + " demands, iteration "
+                    + result.getIteration() + (result.getSeed() >= 0 ? ", randomSeed " + result.getSeed() : "") + " ended with " + result.getMessage());
+        }
+        return result;
+    }
+
+    /*
+     * runTrial method
+     * Executes the algorithm once on a fresh copy of the loaded topology. Thread safe: trials share only read-only data.
+     * A Net2PlanException is a failed trial, any other exception gives an error result
+     */
+    public TrialResult runTrial(int numDemands, int iteration, String resultPath) {
+        return runTrial(numDemands, 0, iteration, resultPath);
+    }
+
+    // incrementalDemands > 0 runs a load ramp starting from numDemands
+    private TrialResult runTrial(int numDemands, int incrementalDemands, int iteration, String resultPath) {
+        return runTrial(numDemands, incrementalDemands, iteration, resultPath, Collections.emptyMap(), null);
+    }
+
+    /*
+     * runTrial method
+     * Trial with the scenario parameters on top of the base ones. If traffic is not null its demands are routed instead of
+     * generating them, and the result record of a successful trial is kept in the result
+     */
+    private TrialResult runTrial(int numDemands, int incrementalDemands, int iteration, String resultPath, Map<String, String> scenario, TrafficMatrix traffic) {
+        Map<String, String> parameters = new HashMap<>(baseParameters);
+        parameters.putAll(scenario);
+        parameters.put("NumberOfDemands", Integer.toString(numDemands));
+        parameters.put("incrementalDemands", Integer.toString(incrementalDemands));
+        parameters.put("resultPath", resultPath);
+        int trialSeed = trialSeed(numDemands, iteration);
+        parameters.put("randomSeed", Integer.toString(trialSeed));
+        // the trial copy is discarded, the transponder counts and the design are only needed in the result file
+        parameters.put("writeTransponderAttributes", "false");
+        parameters.put("buildNetPlan", "false");
+
+        Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming algorithm = new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(sharedTopology, resultWriter, traffic);
+        NetPlan trialNetPlan;
+        synchronized (topology) {
+            trialNetPlan = topology.copy();
+        }
+        TrialResult result;
+        try {
+            String message = algorithm.executeAlgorithm(trialNetPlan, withDefaults(algorithm, parameters), new HashMap<>());
+            result = new TrialResult(numDemands, iteration, trialSeed, true, message, traffic != null ? algorithm.buildResultRecord() : null);
+        } catch (Net2PlanException e) {
+            result = new TrialResult(numDemands, iteration, trialSeed, false, e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            result = new TrialResult(numDemands, iteration, trialSeed, false, true, e.toString(), null);
+        }
+        return result;
+    }
+
+    /*
+     * runScenarios method
+     * Generates the traffic of a trial once and routes it under each scenario (parameters on top of the base ones), each
+     * one on its own copy of the topology and with the candidate paths of the shared TopologyIndex. The traffic is the
+     * same one a single trial with the seed of the trial generates. Results in scenario order. Thread safe
+     */
+    public List<TrialResult> runScenarios(int numDemands, int iteration, String resultPath, List<Map<String, String>> scenarios) {
+        int trialSeed = trialSeed(numDemands, iteration);
+        SplittableRandom random = trialSeed < 0 ? new SplittableRandom() : new SplittableRandom(trialSeed);
+        double percentageOfCoreTraffic = Double.parseDouble(withDefaults(new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(), baseParameters).get("percentageOfCoreTraffic"));
+        // generateMatrix only reads the regions of the shared index, not the NetPlan
+        TrafficMatrix traffic = new TrafficGenerator(topology, percentageOfCoreTraffic, random, sharedTopology.getRegions()).generateMatrix(numDemands);
+
+        List<TrialResult> results = new ArrayList<>(scenarios.size());
+        for (Map<String, String> scenario : scenarios) results.add(runTrial(numDemands, 0, iteration, resultPath, scenario, traffic));
+        return results;
+    }
+
+    public List<TrialResult> getTrialResults() {
+        return Collections.unmodifiableList(trialResults);
+    }
+
+    /*
+     * trialSeed method
+     * Seed of a single trial, it depends only on the sweep seed and on the trial coordinates
+     */
+    int trialSeed(int numDemands, int iteration) {
+        if (seed < 0) return -1;
+        long mixed = ((seed * 1_000_003L) + numDemands) * 1_000_003L + iteration;
+        return (int) (mixed ^ (mixed >>> 32)) & Integer.MAX_VALUE;
+    }
+
+    /*
+     * withDefaults method
+     * Net2Plan requires a value for every InputParameter of the algorithm, the ones not given are taken from their default
+     */
+    static Map<String, String> withDefaults(IAlgorithm algorithm, Map<String, String> parameters) {
+        Map<String, String> allParameters = new HashMap<>();
+        for (Triple<String, String, String> parameter : algorithm.getParameters()) {
+            String defaultValue = parameter.getSecond();
+            if (defaultValue.startsWith("#boolean#")) {
+                defaultValue = defaultValue.substring("#boolean#".length()).trim();
+            } else if (defaultValue.startsWith("#select#")) {
+                defaultValue = defaultValue.substring("#select#".length()).trim().split(" ")[0];
+            }
+            allParameters.put(parameter.getFirst(), defaultValue);
+        }
+        allParameters.putAll(parameters);
+        return allParameters;
+    }
+
+    /*
+     * Outcome of a single execution of the algorithm
+     */
+    public static class TrialResult {
+        private final int numberOfDemands;
+        private final int iteration;
+        private final int seed;
+        private final boolean success;
+        private final boolean error;
+        private final String message;
+        private final Map<String, Object> record;
+
+        public TrialResult(int numberOfDemands, int iteration, int seed, boolean success, String message) {
+            this(numberOfDemands, iteration, seed, success, false, message, null);
+        }
+
+        public TrialResult(int numberOfDemands, int iteration, int seed, boolean success, String message, Map<String, Object> record) {
+            this(numberOfDemands, iteration, seed, success, false, message, record);
+        }
+
+        public TrialResult(int numberOfDemands, int iteration, int seed, boolean success, boolean error, String message, Map<String, Object> record) {
+            this.numberOfDemands = numberOfDemands;
+            this.iteration = iteration;
+            this.seed = seed;
+            this.success = success;
+            this.error = error;
+            this.message = message;
+            this.record = record;
+        }
+
+        public int getNumberOfDemands() { return numberOfDemands; }
+        public int getIteration() { return iteration; }
+        // randomSeed of the trial, -1 if unseeded
+        public int getSeed() { return seed; }
+        public boolean isSuccess() { return success; }
+        // the trial ended with an unexpected exception (a bug, an invalid result record), not with a blocked demand
+        public boolean isError() { return error; }
+        public String getMessage() { return message; }
+        // result record of a successful scenario trial (runScenarios), null otherwise
+        public Map<String, Object> getRecord() { return record; }
+    }
+}
@@ -0,0 +1,186 @@
+import com.net2plan.interfaces.networkDesign.*;
+import com.net2plan.utils.Pair;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Read-only data of the WDM topology that does not change between trials: candidate paths, link lengths and the
+ * subregion and island tags (RegionIndex).
+ * Paths are stored as sequences of link indexes, so that a single instance built from the loaded topology can be shared
+ * by all the trials (also concurrent ones) running on copies of the same NetPlan.
+ * The path plans computed from the candidate paths are cached here too, one PathPlanCache per transponder mode.
+ * With a cache folder the candidate paths are read from the CandidatePathStore file of the topology, pair by pair when
+ * first requested; the k shortest paths are computed (and the file written) only if there is no such file yet.
+ * With lazy candidate paths nothing is computed up front: the paths of a pair are generated one at a time by a
+ * YenPathProvider when getCandidatePath asks for one beyond the ones already found.
+ */
+public class TopologyIndex {
+    private final int numberOfNodes;
+    private final int numberOfLinks;
+    private final int k;
+    private final double maxPropagationDelayMs;
+    private final double[] linkLengthInKm;
+    private final RegionIndex regions;
+    private final int[] linkOrigin;
+    private final int[] linkDestination;
+    // candidatePaths[origin * numberOfNodes + destination][path] = indexes of the links of the path
+    private final AtomicReferenceArray<int[][]> candidatePaths;
+    // file the candidate paths not decoded yet are read from, null if they were all computed
+    private final CandidatePathStore candidatePathStore;
+    // paths generated on demand, null if they are precomputed (or read from candidatePathStore)
+    private final YenPathProvider lazyPaths;
+    private final ConcurrentMap<String, PathPlanCache> pathPlanCaches = new ConcurrentHashMap<>();
+
+    public TopologyIndex(NetPlan netPlan, NetworkLayer wdmLayer, int k, double maxPropagationDelayMs) {
+        this(netPlan, wdmLayer, k, maxPropagationDelayMs, null, false);
+    }
+
+    /*
+     * The candidate paths are stored in (and read from) cacheFolder, null to always compute them.
+     * If lazyCandidatePaths is true they are generated on demand instead, and cacheFolder is not used
+     */
+    public TopologyIndex(NetPlan netPlan, NetworkLayer wdmLayer, int k, double maxPropagationDelayMs, Path cacheFolder, boolean lazyCandidatePaths) {
+        this.numberOfNodes = netPlan.getNumberOfNodes();
+        this.numberOfLinks = netPlan.getNumberOfLinks(wdmLayer);
+        this.k = k;
+        this.maxPropagationDelayMs = maxPropagationDelayMs;
+
+        this.linkLengthInKm = new double[numberOfLinks];
+        this.linkOrigin = new int[numberOfLinks];
+        this.linkDestination = new int[numberOfLinks];
+        double[] linkPropagationDelayMs = new double[numberOfLinks];
+        for (Link link : netPlan.getLinks(wdmLayer)) {
+            linkLengthInKm[link.getIndex()] = link.getLengthInKm();
+            linkOrigin[link.getIndex()] = link.getOriginNode().getIndex();
+            linkDestination[link.getIndex()] = link.getDestinationNode().getIndex();
+            linkPropagationDelayMs[link.getIndex()] = link.getPropagationDelayInMs();
+        }
+        this.regions = new RegionIndex(netPlan, wdmLayer);
+
+        this.candidatePaths = new AtomicReferenceArray<>(numberOfNodes * numberOfNodes);
+        if (lazyCandidatePaths) {
+            this.lazyPaths = new YenPathProvider(numberOfNodes, k, maxPropagationDelayMs, linkLengthInKm, linkPropagationDelayMs, linkOrigin, linkDestination);
+            this.candidatePathStore = null;
+            return;
+        }
+        this.lazyPaths = null;
+
+        byte[] hash = null;
+        Path cacheFile = null;
+        if (cacheFolder != null) {
+            hash = CandidatePathStore.hash(netPlan, wdmLayer, k, maxPropagationDelayMs);
+            cacheFile = CandidatePathStore.file(cacheFolder, hash);
+            CandidatePathStore store = CandidatePathStore.open(cacheFile, hash);
+            if (store != null && store.getNumberOfNodes() == numberOfNodes) {
+                this.candidatePathStore = store;
+                return;
+            }
+        }
+        this.candidatePathStore = null;
+
+        Map<Pair<Node, Node>, List<List<Link>>> cpl = netPlan.computeUnicastCandidatePathList(netPlan.getVectorLinkLengthInKm(wdmLayer), k, -1, -1, maxPropagationDelayMs, -1, -1, -1, null, wdmLayer);
+        int[][][] computedPaths = new int[numberOfNodes * numberOfNodes][][];
+        for (Map.Entry<Pair<Node, Node>, List<List<Link>>> entry : cpl.entrySet()) {
+            List<List<Link>> paths = entry.getValue();
+            int[][] pathIndexes = new int[paths.size()][];
+            for (int p = 0; p < paths.size(); p++) {
+                pathIndexes[p] = new int[paths.get(p).size()];
+                for (int l = 0; l < paths.get(p).size(); l++) {
+                    pathIndexes[p][l] = paths.get(p).get(l).getIndex();
+                }
+            }
+            computedPaths[entry.getKey().getFirst().getIndex() * numberOfNodes + entry.getKey().getSecond().getIndex()] = pathIndexes;
+        }
+        for (int pair = 0; pair < computedPaths.length; pair++) candidatePaths.set(pair, computedPaths[pair]);
+
+        if (cacheFile != null) {
+            try {
+                CandidatePathStore.write(cacheFile, hash, numberOfNodes, computedPaths);
+            } catch (IOException e) {
+                // the run goes on with the computed paths, the next one will try to write the file again
+                System.err.println("Candidate paths not stored in " + cacheFile + ": " + e);
+            }
+        }
+    }
+
+    /*
+     * isCompatible method
+     * True if this index was built for a topology with the same nodes and WDM links and with the same path parameters
+     */
+    public boolean isCompatible(NetPlan netPlan, NetworkLayer wdmLayer, int k, double maxPropagationDelayMs, boolean lazyCandidatePaths) {
+        return netPlan.getNumberOfNodes() == numberOfNodes && netPlan.getNumberOfLinks(wdmLayer) == numberOfLinks
+                && this.k == k && this.maxPropagationDelayMs == maxPropagationDelayMs && isLazy() == lazyCandidatePaths;
+    }
+
+    /*
+     * getCandidatePaths method
+     * Returns the candidate paths from origin to destination (node indexes) as sequences of link indexes, null if none.
+     * With lazy candidate paths all the k paths of the pair are generated
+     */
+    public int[][] getCandidatePaths(int origin, int destination) {
+        if (lazyPaths != null) {
+            List<int[]> paths = new ArrayList<>();
+            for (int[] path; (path = lazyPaths.getPath(origin, destination, paths.size())) != null; ) paths.add(path);
+            return paths.isEmpty() ? null : paths.toArray(new int[0][]);
+        }
+        int pair = origin * numberOfNodes + destination;
+        int[][] paths = candidatePaths.get(pair);
+        if (paths == null && candidatePathStore != null) {
+            paths = candidatePathStore.read(pair);
+            // decoding is deterministic, if another thread got here first its arrays are kept
+            if (paths != null && !candidatePaths.compareAndSet(pair, null, paths)) paths = candidatePaths.get(pair);
+        }
+        return paths;
+    }
+
+    /*
+     * getCandidatePath method
+     * Returns the index-th candidate path from origin to destination (0 = shortest), null if the pair has no more than
+     * index paths. With lazy candidate paths only the paths up to index are generated
+     */
+    public int[] getCandidatePath(int origin, int destination, int index) {
+        if (lazyPaths != null) return lazyPaths.getPath(origin, destination, index);
+        int[][] paths = getCandidatePaths(origin, destination);
+        return paths != null && index < paths.length ? paths[index] : null;
+    }
+
+    /*
+     * getNumberOfGeneratedPaths method
+     * Number of candidate paths from origin to destination available without generating new ones: all of them if they
+     * are precomputed, the ones found so far with lazy candidate paths
+     */
+    public int getNumberOfGeneratedPaths(int origin, int destination) {
+        if (lazyPaths != null) return lazyPaths.getNumberOfGeneratedPaths(origin, destination);
+        int[][] paths = getCandidatePaths(origin, destination);
+        return paths == null ? 0 : paths.length;
+    }
+
+    public boolean isLazy() { return lazyPaths != null; }
+
+    /*
+     * getPathPlanCache method
+     * Returns the path plans for the given transponder type (null if each segment uses the transponder of its subregion).
+     * The transponder catalog is the same for every run, so the plans of a mode are shared by all the users of this index
+     */
+    public PathPlanCache getPathPlanCache(String singleTransponderType, Map<String, Transponder> transponders) {
+        String mode = singleTransponderType == null ? "SUBREGION" : singleTransponderType;
+        return pathPlanCaches.computeIfAbsent(mode, key -> new PathPlanCache(this, transponders, singleTransponderType));
+    }
+
+    public int getNumberOfNodes() { return numberOfNodes; }
+
+    public int getK() { return k; }
+
+    public double getLinkLengthInKm(int linkIndex) { return linkLengthInKm[linkIndex]; }
+
+    public int getLinkOrigin(int linkIndex) { return linkOrigin[linkIndex]; }
+
+    public int getLinkDestination(int linkIndex) { return linkDestination[linkIndex]; }
+
+    public RegionIndex getRegions() { return regions; }
+}
@@ -1,7 +1,7 @@
 import com.net2plan.interfaces.networkDesign.Demand;
 import com.net2plan.interfaces.networkDesign.Net2PlanException;
 import com.net2plan.interfaces.networkDesign.NetPlan;
-import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
 import com.net2plan.utils.*;
 
 import java.util.*;
@@ -10,6 +10,21 @@ public class TrafficGenerator {
 
     private final NetPlan netPlan;
     private double probabilityOfStartingFromCore;
+    // independent random streams per purpose, split from the seed of the generator: the draws of one purpose do not
+    // shift the ones of the others, and concurrent generators do not share any state
+    private final SplittableRandom sourceRandom;
+    private final SplittableRandom classRandom;
+    private final SplittableRandom destinationRandom;
+    private final SplittableRandom qosRandom;
+    // subregion and island of each node, indexed by node index
+    private final RegionIndex regions;
+    // source nodes (node indexes) and destination candidates of each traffic class, built on the first generation
+    private int[] coreNodes;
+    private int[] metroNodes;
+    private int[][][] destinationCandidates;
+    // true if at least one core (metro) source has a destination in at least one class
+    private boolean coreHasCandidates;
+    private boolean metroHasCandidates;
 
     /*
     min 350 services of 100Gbps, increase by 50 services
@@ -45,12 +60,42 @@ public class TrafficGenerator {
     // Percentage of priority traffic from metro to core
     static final double METRO_TO_CORE_PRIORITY = 1;
 
+    // Traffic classes, the candidate destinations of a (class, source node) pair are precomputed
+    static final int CLASS_CORE_TO_SAME_CORE = 0;
+    static final int CLASS_CORE_TO_DIFFERENT_CORE = 1;
+    static final int CLASS_CORE_TO_METRO = 2;
+    static final int CLASS_METRO_TO_SAME_METRO = 3;
+    static final int CLASS_METRO_TO_DIFFERENT_METRO = 4;
+    static final int CLASS_METRO_TO_CORE = 5;
+    // class probabilities given the source type, same order of the classes above
+    private static final AliasTable CORE_CLASSES = new AliasTable(new double[] { CORE_TO_SAME_CORE, CORE_TO_DIFFERENT_CORE, 1 - CORE_TO_SAME_CORE - CORE_TO_DIFFERENT_CORE });
+    private static final AliasTable METRO_CLASSES = new AliasTable(new double[] { METRO_TO_SAME_METRO, METRO_TO_DIFFERENT_METRO, 1 - METRO_TO_SAME_METRO - METRO_TO_DIFFERENT_METRO });
+    // probability of priority QoS of each class (the demands generated by core nodes are always PRIORITY)
+    private static final double[] PRIORITY_PROBABILITY = { 1, 1, 1, METRO_TO_SAME_METRO_PRIORITY, METRO_TO_DIFFERENT_METRO_PRIORITY, METRO_TO_CORE_PRIORITY };
+
     static final String QOS_BEST_EFFORT = "BEST_EFFORT";
     static final String QOS_PRIORITY = "PRIORITY";
 
-    public TrafficGenerator(NetPlan netPlan, double probabilityOfStartingFromCore) {
+    /*
+     * The streams of source, class, destination and QoS pick are split from random in this order, so a
+     * SplittableRandom built from a given seed generates the same traffic on every machine
+     */
+    public TrafficGenerator(NetPlan netPlan, double probabilityOfStartingFromCore, SplittableRandom random, RegionIndex regions) {
         this.netPlan = netPlan;
         this.probabilityOfStartingFromCore = probabilityOfStartingFromCore;
+        this.sourceRandom = random.split();
+        this.classRandom = random.split();
+        this.destinationRandom = random.split();
+        this.qosRandom = random.split();
+        this.regions = regions;
+    }
+
+    public TrafficGenerator(NetPlan netPlan, double probabilityOfStartingFromCore, long seed) {
+        this(netPlan, probabilityOfStartingFromCore, new SplittableRandom(seed), new RegionIndex(netPlan, netPlan.getNetworkLayer("WDM")));
+    }
+
+    public TrafficGenerator(NetPlan netPlan, double probabilityOfStartingFromCore) {
+        this(netPlan, probabilityOfStartingFromCore, new SplittableRandom(), new RegionIndex(netPlan, netPlan.getNetworkLayer("WDM")));
     }
 
     public TrafficGenerator(NetPlan netPlan) {
@@ -58,154 +103,155 @@ public class TrafficGenerator {
     }
 
     public void generate(int numberOfDemands) {
-        // Separate nodes according to their tag
-        List<Node> coreNodes = new ArrayList<>(netPlan.getTaggedNodes("CORE"));
-        List<Node> metroNodes = new ArrayList<>(netPlan.getTaggedNodes("METRO"));
+        addDemands(generateMatrix(numberOfDemands));
+    }
 
-        // Remove from metroNodes elements that are also in coreNodes
-        metroNodes.removeAll(coreNodes);
+    /*
+     * addDemands method
+     * Adds the demands of a traffic matrix to the IP layer of the NetPlan, 100 Gbps each, in the order of the matrix
+     */
+    public void addDemands(TrafficMatrix trafficMatrix) {
+        NetworkLayer ipLayer = netPlan.getNetworkLayer("IP");
+        for (int i = 0; i < trafficMatrix.size(); i++) {
+            // create a Map with the "QoS" attribute of the demand
+            Map<String, String> demandAttributes = new HashMap<>();
+            //demandAttributes.put("QoS", demandQoS);
+
+            // create a new demand
+            Demand newDemand = netPlan.addDemand(netPlan.getNode(trafficMatrix.getSource(i)), netPlan.getNode(trafficMatrix.getDestination(i)), 100.0, Constants.RoutingType.SOURCE_ROUTING, demandAttributes, ipLayer);
+            // Set the demand QoS type
+            newDemand.setQoSType(trafficMatrix.isPriority(i) ? QOS_PRIORITY : QOS_BEST_EFFORT);
+        }
+    }
+
+    /*
+     * generateMatrix method
+     * Generates numberOfDemands demands as node indexes, without adding them to the NetPlan.
+     * Each demand takes a few random draws: source type and node, traffic class (alias table), destination among the
+     * precomputed candidates of (class, source) and QoS. A (class, source) pair without candidates is drawn again
+     */
+    public TrafficMatrix generateMatrix(int numberOfDemands) {
+        if (destinationCandidates == null) computeDestinationCandidates();
+        // without any candidate for the source types that can be drawn the generation would never end
+        if (!(probabilityOfStartingFromCore < 1 && coreHasCandidates) && !(probabilityOfStartingFromCore > 0 && metroHasCandidates))
+            throw new Net2PlanException("No destination candidates for the traffic generation");
+        TrafficMatrix trafficMatrix = new TrafficMatrix(numberOfDemands);
 
         // Generate a random demand for each iteration
         for (int i = 0; i < numberOfDemands; i++) {
-            Node sourceNode, destinationNode;
-            String sourceType;
-            String destinationIsland;
-            String demandQoS;
-            List<Node> destinationCandidates = new ArrayList<>();
+            int sourceNode;
+            int trafficClass;
 
             // Choose if the source of this demand is a core node or a metro node (probabilityOfStartingFromCore chance)
-            if (Math.random() > this.probabilityOfStartingFromCore) {
+            if (sourceRandom.nextDouble() > this.probabilityOfStartingFromCore) {
                 // Extract a random node from CORE node set
-                int randomNodeIndex = (int) (Math.random() * coreNodes.size());
-                sourceNode = coreNodes.get(randomNodeIndex);
-                sourceType = "CORE";
+                sourceNode = coreNodes[sourceRandom.nextInt(coreNodes.length)];
+                trafficClass = CLASS_CORE_TO_SAME_CORE + CORE_CLASSES.sample(classRandom);
             } else {
                 // Extract a random node from METRO node set
-                int randomNodeIndex = (int) (Math.random() * metroNodes.size());
-                sourceNode = metroNodes.get(randomNodeIndex);
-                sourceType = "METRO";
-            }
-
-            double random = Math.random();
-
-            if (sourceType.equals("CORE")) { // CORE
-
-                // The demands generated by core nodes have always the QoS set to PRIORITY
-                demandQoS = QOS_PRIORITY;
-
-                if (random <= CORE_TO_SAME_CORE) { // CORE -> SAME CORE
-                    // Get the set of nodes that are on the same island of the source node
-                    List<Node> destinationCandidatesToSelect = new ArrayList<>(netPlan.getTaggedNodes("CORE"));
-                    destinationCandidatesToSelect.remove(sourceNode);
-                    List<String> sourceNodeIslands = new ArrayList<>(sourceNode.getTags());
-                    sourceNodeIslands.remove("CORE");
-                    sourceNodeIslands.remove("METRO");
-
-                    // Add to destinationCandidates all nodes that are on the same island of the source node
-                    for (String island : sourceNodeIslands) {
-                        List<Node> nodesOnIsland = destinationCandidatesToSelect;
-                        nodesOnIsland.retainAll(netPlan.getTaggedNodes(island));
-                        destinationCandidates.addAll(nodesOnIsland);
-                    }
-
-                } else if (random <= CORE_TO_SAME_CORE + CORE_TO_DIFFERENT_CORE) { // CORE -> DIFFERENT CORE
-                    // Get the set of nodes that are on a different island of the source node
-                    List<Node> destinationCandidatesToSelect = new ArrayList<>(netPlan.getTaggedNodes("CORE"));
-                    destinationCandidatesToSelect.remove(sourceNode);
-                    List<String> sourceNodeIslands = new ArrayList<>(sourceNode.getTags());
-                    sourceNodeIslands.remove("CORE");
-                    sourceNodeIslands.remove("METRO");
-
-                    // Add to destinationCandidates all nodes that are on a different island of the source node
-                    for (String island : sourceNodeIslands) {
-                        List<Node> nodesOnIsland = destinationCandidatesToSelect;
-                        nodesOnIsland.removeAll(netPlan.getTaggedNodes(island));
-                        destinationCandidates.addAll(nodesOnIsland);
-                    }
-                } else { // CORE -> METRO
-                    destinationCandidates = new ArrayList<>(netPlan.getTaggedNodes("METRO"));
-                }
-            } else { // METRO
-                if (random <= METRO_TO_SAME_METRO) { // METRO -> SAME METRO
-                    // Get the set of nodes that are on the same island of the source node
-                    List<Node> destinationCandidatesToSelect = new ArrayList<>(netPlan.getTaggedNodes("METRO"));
-                    destinationCandidatesToSelect.remove(sourceNode);
-                    List<String> sourceNodeIslands = new ArrayList<>(sourceNode.getTags());
-                    sourceNodeIslands.remove("CORE");
-                    sourceNodeIslands.remove("METRO");
-
-                    // Add to destinationCandidates all nodes that are on the same island of the source node
-                    for (String island : sourceNodeIslands) {
-                        List<Node> nodesOnIsland = destinationCandidatesToSelect;
-                        nodesOnIsland.retainAll(netPlan.getTaggedNodes(island));
-                        destinationCandidates.addAll(nodesOnIsland);
-                    }
-
-                    // QoS management
-                    double decision = Math.random();
-                    if (decision < METRO_TO_SAME_METRO_PRIORITY) {
-                        demandQoS = QOS_PRIORITY;
-                    } else {
-                        demandQoS = QOS_BEST_EFFORT;
-                    }
-
-                } else if (random <= METRO_TO_SAME_METRO + METRO_TO_DIFFERENT_METRO) { // METRO -> DIFFERENT METRO
-                    // Get the set of nodes that are on a different island of the source node
-                    List<Node> destinationCandidatesToSelect = new ArrayList<>(netPlan.getTaggedNodes("METRO"));
-                    destinationCandidatesToSelect.remove(sourceNode);
-                    List<String> sourceNodeIslands = new ArrayList<>(sourceNode.getTags());
-                    sourceNodeIslands.remove("CORE");
-                    sourceNodeIslands.remove("METRO");
-
-                    // Add to destinationCandidates all nodes that are on a different island of the source node
-                    for (String island : sourceNodeIslands) {
-                        List<Node> nodesOnIsland = destinationCandidatesToSelect;
-                        nodesOnIsland.removeAll(netPlan.getTaggedNodes(island));
-                        destinationCandidates.addAll(nodesOnIsland);
-                    }
-
-                    // QoS management
-                    double decision = Math.random();
-                    if (decision < METRO_TO_DIFFERENT_METRO_PRIORITY) {
-                        demandQoS = QOS_PRIORITY;
-                    } else {
-                        demandQoS = QOS_BEST_EFFORT;
-                    }
-
-                } else { // METRO -> CORE
-                    destinationCandidates = new ArrayList<>(netPlan.getTaggedNodes("CORE"));
-
-                    // QoS management
-                    double decision = Math.random();
-                    if (decision < METRO_TO_CORE_PRIORITY) {
-                        demandQoS = QOS_PRIORITY;
-                    } else {
-                        demandQoS = QOS_BEST_EFFORT;
-                    }
-                }
+                sourceNode = metroNodes[sourceRandom.nextInt(metroNodes.length)];
+                trafficClass = CLASS_METRO_TO_SAME_METRO + METRO_CLASSES.sample(classRandom);
             }
 
             // Choose destination node
-            destinationCandidates.remove(sourceNode);
-            if(destinationCandidates.size()==0)
+            int[] candidates = destinationCandidates[trafficClass][sourceNode];
+            if(candidates.length==0)
             {
                 i--;
                 continue;
             }
-            int randomNodeIndex = (int) (Math.random() * destinationCandidates.size());
-            destinationNode = destinationCandidates.get(randomNodeIndex);
+            int destinationNode = candidates[destinationRandom.nextInt(candidates.length)];
 
+            // QoS management
+            boolean priority = qosRandom.nextDouble() < PRIORITY_PROBABILITY[trafficClass];
 
-            // create a Map with the "QoS" attribute of the demand
-            Map<String, String> demandAttributes = new HashMap<>();
-            //demandAttributes.put("QoS", demandQoS);
+            trafficMatrix.add(sourceNode, destinationNode, priority);
+        }
+        return trafficMatrix;
+    }
 
-            // create a new demand
-            Demand newDemand = netPlan.addDemand(sourceNode, destinationNode, 100.0, Constants.RoutingType.SOURCE_ROUTING, demandAttributes, netPlan.getNetworkLayer("IP"));
-            // Set the demand QoS type
-            newDemand.setQoSType(demandQoS);
+    /*
+     * computeDestinationCandidates method
+     * Destination candidates of every (traffic class, source node) pair, source excluded. The same and different
+     * island lists keep the cumulative narrowing over the islands of the source, so a destination shared by several
+     * islands is more likely, as in the original list based generation
+     */
+    private void computeDestinationCandidates() {
+        // Separate nodes according to their tag (node indexes, in index order)
+        int[] coreTaggedNodes = getNodesInRegion(RegionIndex.REGION_CORE);
+        int[] metroTaggedNodes = getNodesInRegion(RegionIndex.REGION_METRO);
+
+        // Remove from metroNodes elements that are also in coreNodes
+        this.coreNodes = coreTaggedNodes;
+        this.metroNodes = Arrays.stream(metroTaggedNodes).filter(n -> !regions.isNodeInRegion(n, RegionIndex.REGION_CORE)).toArray();
+
+        int numberOfNodes = regions.getNumberOfNodes();
+        this.destinationCandidates = new int[PRIORITY_PROBABILITY.length][numberOfNodes][];
+        for (int source = 0; source < numberOfNodes; source++) {
+            destinationCandidates[CLASS_CORE_TO_SAME_CORE][source] = getIslandCandidates(coreTaggedNodes, source, true);
+            destinationCandidates[CLASS_CORE_TO_DIFFERENT_CORE][source] = getIslandCandidates(coreTaggedNodes, source, false);
+            destinationCandidates[CLASS_CORE_TO_METRO][source] = withoutNode(metroTaggedNodes, source);
+            destinationCandidates[CLASS_METRO_TO_SAME_METRO][source] = getIslandCandidates(metroTaggedNodes, source, true);
+            destinationCandidates[CLASS_METRO_TO_DIFFERENT_METRO][source] = getIslandCandidates(metroTaggedNodes, source, false);
+            destinationCandidates[CLASS_METRO_TO_CORE][source] = withoutNode(coreTaggedNodes, source);
+        }
+        for (int source : coreNodes) {
+            for (int trafficClass = CLASS_CORE_TO_SAME_CORE; trafficClass <= CLASS_CORE_TO_METRO; trafficClass++)
+                coreHasCandidates |= destinationCandidates[trafficClass][source].length > 0;
+        }
+        for (int source : metroNodes) {
+            for (int trafficClass = CLASS_METRO_TO_SAME_METRO; trafficClass <= CLASS_METRO_TO_CORE; trafficClass++)
+                metroHasCandidates |= destinationCandidates[trafficClass][source].length > 0;
         }
     }
-}
 
+    private int[] getNodesInRegion(byte region) {
+        int[] nodes = new int[regions.getNumberOfNodes()];
+        int size = 0;
+        for (int n = 0; n < nodes.length; n++) {
+            if (regions.isNodeInRegion(n, region)) nodes[size++] = n;
+        }
+        return Arrays.copyOf(nodes, size);
+    }
+
+    // nodes without the first occurrence of node
+    private static int[] withoutNode(int[] nodes, int node) {
+        int[] result = new int[nodes.length];
+        int size = 0;
+        boolean removed = false;
+        for (int n : nodes) {
+            if (n == node && !removed) removed = true;
+            else result[size++] = n;
+        }
+        return Arrays.copyOf(result, size);
+    }
 
+    /*
+     * getIslandCandidates method
+     * For each island of the source node (in tag order) the nodes of the region (source excluded) are narrowed down to
+     * the ones on that island (sameIsland) or not on that island (!sameIsland), and the narrowed list is appended to
+     * the candidates. The narrowing is cumulative over the islands, so a node on several islands can add the same
+     * destination more than once
+     */
+    private int[] getIslandCandidates(int[] regionNodes, int sourceNode, boolean sameIsland) {
+        int[] selection = withoutNode(regionNodes, sourceNode);
+        int selected = selection.length;
+        int[] candidates = new int[selected * Long.bitCount(regions.getNodeIslands(sourceNode))];
+        int numCandidates = 0;
+
+        long sourceIslands = regions.getNodeIslands(sourceNode);
+        while (sourceIslands != 0) {
+            long island = Long.lowestOneBit(sourceIslands);
+            sourceIslands &= ~island;
+            int kept = 0;
+            for (int s = 0; s < selected; s++) {
+                boolean onIsland = (regions.getNodeIslands(selection[s]) & island) != 0;
+                if (onIsland == sameIsland) selection[kept++] = selection[s];
+            }
+            selected = kept;
+            System.arraycopy(selection, 0, candidates, numCandidates, selected);
+            numCandidates += selected;
+        }
+        return Arrays.copyOf(candidates, numCandidates);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Demands generated by TrafficGenerator as primitive arrays (node indexes and QoS), without creating NetPlan demands.
+ * Used to generate very large matrices and to add them to a NetPlan in a single pass.
+ */
+public class TrafficMatrix {
+    private final int[] source;
+    private final int[] destination;
+    private final boolean[] priority;
+    private int size;
+
+    public TrafficMatrix(int capacity) {
+        this.source = new int[capacity];
+        this.destination = new int[capacity];
+        this.priority = new boolean[capacity];
+    }
+
+    public void add(int sourceNode, int destinationNode, boolean isPriority) {
+        source[size] = sourceNode;
+        destination[size] = destinationNode;
+        priority[size] = isPriority;
+        size++;
+    }
+
+    public int size() { return size; }
+    public int getSource(int demand) { return source[demand]; }
+    public int getDestination(int demand) { return destination[demand]; }
+    // true for PRIORITY, false for BEST_EFFORT
+    public boolean isPriority(int demand) { return priority[demand]; }
+}
@@ -1,22 +1,79 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
+/*
+ * The modulation list is compiled at construction into immutable lookup tables, so that the methods below do not scan or
+ * sort the list and a transponder can be shared by concurrent runs.
+ */
 public class Transponder {
     private final String name;
     private final double cost;
-    private List<Modulation> modulationList;
+    private final List<Modulation> modulationList;
+    private final List<Modulation> modulationsBySpectralEfficiency;
+    private final int maxReach;
+    // reachBreakpoints: distinct reaches in ascending order, bestModulation[i]: best modulation with reach >= reachBreakpoints[i]
+    private final int[] reachBreakpoints;
+    private final Modulation[] bestModulation;
 
     public Transponder(String name, double cost, List<Modulation> modulationList)
     {
         this.name = name;
         this.cost = cost;
-        this.modulationList = modulationList;
+        this.modulationList = Collections.unmodifiableList(new ArrayList<>(modulationList));
+
+        List<Modulation> sorted = new ArrayList<>(modulationList);
+        sorted.sort(Comparator.comparingDouble(Modulation::getSpectralEfficiency));
+        this.modulationsBySpectralEfficiency = Collections.unmodifiableList(sorted);
+
+        int max = 0;
+        for (Modulation modulation : modulationList) {
+            if (modulation.getReach() > max) max = modulation.getReach();
+        }
+        this.maxReach = max;
+
+        this.reachBreakpoints = modulationList.stream().mapToInt(Modulation::getReach).distinct().sorted().toArray();
+        this.bestModulation = new Modulation[reachBreakpoints.length];
+        for (int i = 0; i < reachBreakpoints.length; i++) {
+            bestModulation[i] = scanBestModulationFormat(reachBreakpoints[i]);
+        }
     }
 
     public String getName () { return this.name; }
     public double getCost () { return this.cost; }
     public List<Modulation> getModulations () { return this.modulationList; }
 
+    /*
+     * getModulationsBySpectralEfficiency method
+     * Modulations sorted by increasing spectral efficiency (ties in definition order)
+     */
+    public List<Modulation> getModulationsBySpectralEfficiency () { return this.modulationsBySpectralEfficiency; }
+
+    /*
+     * getBestModulationFormat method
+     * Modulation with the highest spectral efficiency among the ones reaching pathLength, null if none.
+     * The modulations reaching pathLength are the ones with reach >= the smallest breakpoint >= pathLength, found by binary search
+     */
     public Modulation getBestModulationFormat(double pathLength)
+    {
+        int low = 0;
+        int high = reachBreakpoints.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (reachBreakpoints[mid] >= pathLength) high = mid;
+            else low = mid + 1;
+        }
+        return low < reachBreakpoints.length ? bestModulation[low] : null;
+    }
+
+    public int getMaxReach()
+    {
+        return maxReach;
+    }
+
+    // linear scan of the modulation list, only used to build the lookup table
+    private Modulation scanBestModulationFormat(double pathLength)
     {
         Modulation best = null;
         double bestSpectralEfficiency = 0;
@@ -32,14 +89,4 @@ public class Transponder {
         }
         return best;
     }
-
-    public int getMaxReach()
-    {
-        int maxReach = 0;
-        for(Modulation modulation: modulationList)
-        {
-            if(modulation.getReach()>maxReach) maxReach = modulation.getReach();
-        }
-        return maxReach;
-    }
 }
@@ -0,0 +1,73 @@
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.interfaces.networkDesign.Node;
+
+/*
+ * Number of transponders per type (LR and ZR+) at each node, at each WDM link and on each island of the topology.
+ * A lightpath is terminated by two transponders: one is counted at each end node and at the first and last link of the
+ * path, and the island totals are updated at the same time from the island mask of those links (RegionIndex).
+ * The counts are kept in int arrays; the "LR" and "ZR" attributes of the NetPlan are written only by writeAttributes.
+ */
+public class TransponderCounters {
+    public static final int TYPE_LR = 0;
+    public static final int TYPE_ZR = 1;
+    private static final String[] ATTRIBUTE_NAMES = { "LR", "ZR" };
+
+    private final RegionIndex regions;
+    // counts[type][index]
+    private final int[][] nodeCount;
+    private final int[][] linkCount;
+    private final int[][] islandCount;
+    private final int[] total = new int[2];
+
+    public TransponderCounters(RegionIndex regions, int numberOfNodes, int numberOfLinks) {
+        this.regions = regions;
+        this.nodeCount = new int[2][numberOfNodes];
+        this.linkCount = new int[2][numberOfLinks];
+        this.islandCount = new int[2][regions.getNumberOfIslands()];
+    }
+
+    /*
+     * addLightpath method
+     * Counts the two transponders of a new lightpath from startNode to endNode over the links firstLink ... lastLink
+     */
+    public void addLightpath(int type, int startNode, int endNode, int firstLink, int lastLink) {
+        nodeCount[type][startNode]++;
+        nodeCount[type][endNode]++;
+        addToLink(type, firstLink);
+        addToLink(type, lastLink);
+        total[type] += 2;
+    }
+
+    private void addToLink(int type, int link) {
+        linkCount[type][link]++;
+        long islands = regions.getLinkIslands(link);
+        while (islands != 0) {
+            islandCount[type][Long.numberOfTrailingZeros(islands)]++;
+            islands &= islands - 1;
+        }
+    }
+
+    public int getNodeCount(int type, int node) { return nodeCount[type][node]; }
+    public int getLinkCount(int type, int link) { return linkCount[type][link]; }
+
+    /*
+     * getIslandCount method
+     * Sum of the counts of the links tagged with the island (index of RegionIndex.getIslandName)
+     */
+    public int getIslandCount(int type, int island) { return islandCount[type][island]; }
+
+    public int getTotal(int type) { return total[type]; }
+
+    /*
+     * writeAttributes method
+     * Writes the counts of every node and WDM link as "LR" and "ZR" attributes
+     */
+    public void writeAttributes(NetPlan netPlan, NetworkLayer wdmLayer) {
+        for (int type = 0; type < ATTRIBUTE_NAMES.length; type++) {
+            for (Node node : netPlan.getNodes()) node.setAttribute(ATTRIBUTE_NAMES[type], nodeCount[type][node.getIndex()]);
+            for (Link link : netPlan.getLinks(wdmLayer)) link.setAttribute(ATTRIBUTE_NAMES[type], linkCount[type][link.getIndex()]);
+        }
+    }
+}
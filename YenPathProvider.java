@@ -0,0 +1,244 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Candidate paths computed on demand: the paths of a node pair are generated in increasing length order with Yen's
+ * algorithm, one at a time, only when a path beyond the ones already found is requested, and kept for the next requests.
+ * Paths over the propagation delay limit are skipped (but still used to generate the next ones), at most k paths are
+ * returned per pair. If the delay of every link is proportional to its length the first path over the limit ends the
+ * search, otherwise at most MAX_SHORTEST_PATHS_PER_PATH * k shortest paths are generated per pair.
+ * Thread safe: the paths of a pair are generated under the lock of that pair.
+ */
+public class YenPathProvider {
+    private static final int MAX_SHORTEST_PATHS_PER_PATH = 100;
+
+    private final int numberOfNodes;
+    private final int k;
+    private final double maxPropagationDelayMs;
+    private final double[] linkLengthInKm;
+    private final double[] linkPropagationDelayMs;
+    private final int[] linkOrigin;
+    private final int[] linkDestination;
+    // outgoingLinks[node] = indexes of the links leaving the node
+    private final int[][] outgoingLinks;
+    // same propagation speed on all the links: the delay of a path grows with its length
+    private final boolean delayGrowsWithLength;
+    // state of the pairs with at least a request, origin * numberOfNodes + destination
+    private final AtomicReferenceArray<PairPaths> pairs;
+
+    public YenPathProvider(int numberOfNodes, int k, double maxPropagationDelayMs, double[] linkLengthInKm, double[] linkPropagationDelayMs, int[] linkOrigin, int[] linkDestination) {
+        this.numberOfNodes = numberOfNodes;
+        this.k = k;
+        this.maxPropagationDelayMs = maxPropagationDelayMs;
+        this.linkLengthInKm = linkLengthInKm;
+        this.linkPropagationDelayMs = linkPropagationDelayMs;
+        this.linkOrigin = linkOrigin;
+        this.linkDestination = linkDestination;
+        this.pairs = new AtomicReferenceArray<>(numberOfNodes * numberOfNodes);
+
+        int[] degree = new int[numberOfNodes];
+        for (int origin : linkOrigin) degree[origin]++;
+        this.outgoingLinks = new int[numberOfNodes][];
+        for (int node = 0; node < numberOfNodes; node++) outgoingLinks[node] = new int[degree[node]];
+        Arrays.fill(degree, 0);
+        for (int link = 0; link < linkOrigin.length; link++) outgoingLinks[linkOrigin[link]][degree[linkOrigin[link]]++] = link;
+
+        boolean sameSpeed = true;
+        for (int link = 1; link < linkOrigin.length; link++) {
+            if (linkPropagationDelayMs[link] * linkLengthInKm[0] != linkPropagationDelayMs[0] * linkLengthInKm[link]) sameSpeed = false;
+        }
+        this.delayGrowsWithLength = sameSpeed;
+    }
+
+    /*
+     * getPath method
+     * Returns the index-th shortest path (0 = shortest) from origin to destination as link indexes, null if the pair has
+     * no more than index paths within the limits
+     */
+    public int[] getPath(int origin, int destination, int index) {
+        if (index >= k || origin == destination) return null;
+        int pair = origin * numberOfNodes + destination;
+        PairPaths pairPaths = pairs.get(pair);
+        if (pairPaths == null) {
+            pairs.compareAndSet(pair, null, new PairPaths(origin, destination));
+            pairPaths = pairs.get(pair);
+        }
+        return pairPaths.get(index);
+    }
+
+    /*
+     * getNumberOfGeneratedPaths method
+     * Number of paths from origin to destination found so far, the ones getPath returns without generating new paths
+     */
+    public int getNumberOfGeneratedPaths(int origin, int destination) {
+        PairPaths pairPaths = pairs.get(origin * numberOfNodes + destination);
+        return pairPaths == null ? 0 : pairPaths.getNumberOfAcceptedPaths();
+    }
+
+    private double getLengthInKm(int[] path) {
+        double length = 0;
+        for (int link : path) length += linkLengthInKm[link];
+        return length;
+    }
+
+    private boolean isWithinDelay(int[] path) {
+        if (maxPropagationDelayMs <= 0) return true;
+        double delay = 0;
+        for (int link : path) delay += linkPropagationDelayMs[link];
+        return delay <= maxPropagationDelayMs;
+    }
+
+    /*
+     * shortestPath method
+     * Dijkstra from source to target by length without the banned links and nodes, null if target is not reachable
+     */
+    private int[] shortestPath(int source, int target, boolean[] bannedLinks, boolean[] bannedNodes) {
+        double[] distance = new double[numberOfNodes];
+        int[] previousLink = new int[numberOfNodes];
+        Arrays.fill(distance, Double.MAX_VALUE);
+        Arrays.fill(previousLink, -1);
+        distance[source] = 0;
+        // {distance, node}, ties broken by node index
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+        queue.add(new double[] { 0, source });
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int node = (int) entry[1];
+            if (entry[0] > distance[node]) continue;
+            if (node == target) break;
+            for (int link : outgoingLinks[node]) {
+                int next = linkDestination[link];
+                if (bannedLinks[link] || bannedNodes[next]) continue;
+                double nextDistance = distance[node] + linkLengthInKm[link];
+                if (nextDistance < distance[next]) {
+                    distance[next] = nextDistance;
+                    previousLink[next] = link;
+                    queue.add(new double[] { nextDistance, next });
+                }
+            }
+        }
+        if (previousLink[target] < 0) return null;
+
+        int hops = 0;
+        for (int node = target; node != source; node = linkOrigin[previousLink[node]]) hops++;
+        int[] path = new int[hops];
+        for (int node = target; node != source; node = linkOrigin[previousLink[node]]) path[--hops] = previousLink[node];
+        return path;
+    }
+
+    /*
+     * Paths of a node pair: the shortest paths found so far (Yen's list A), the ones within the delay limit, and the
+     * candidates for the next shortest path (Yen's list B)
+     */
+    private class PairPaths {
+        private final int origin;
+        private final int destination;
+        private final List<int[]> shortestPaths = new ArrayList<>();
+        private final List<int[]> acceptedPaths = new ArrayList<>();
+        private final PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        // shortest paths and candidates, to add every path once
+        private final Set<PathKey> seen = new HashSet<>();
+        private boolean exhausted;
+
+        PairPaths(int origin, int destination) {
+            this.origin = origin;
+            this.destination = destination;
+        }
+
+        synchronized int[] get(int index) {
+            while (acceptedPaths.size() <= index && !exhausted) {
+                int[] path = nextShortestPath();
+                if (path == null) {
+                    exhausted = true;
+                } else {
+                    shortestPaths.add(path);
+                    if (isWithinDelay(path)) acceptedPaths.add(path);
+                    // the next paths are longer, so over the limit too
+                    else if (delayGrowsWithLength) exhausted = true;
+                    if (shortestPaths.size() >= MAX_SHORTEST_PATHS_PER_PATH * k) exhausted = true;
+                }
+            }
+            return index < acceptedPaths.size() ? acceptedPaths.get(index) : null;
+        }
+
+        synchronized int getNumberOfAcceptedPaths() {
+            return acceptedPaths.size();
+        }
+
+        private int[] nextShortestPath() {
+            if (shortestPaths.isEmpty()) {
+                int[] path = shortestPath(origin, destination, new boolean[linkOrigin.length], new boolean[numberOfNodes]);
+                if (path != null) seen.add(new PathKey(path));
+                return path;
+            }
+
+            // deviations of the last path found from each of its nodes (spur nodes)
+            int[] lastPath = shortestPaths.get(shortestPaths.size() - 1);
+            for (int spur = 0; spur < lastPath.length; spur++) {
+                int spurNode = linkOrigin[lastPath[spur]];
+                boolean[] bannedLinks = new boolean[linkOrigin.length];
+                boolean[] bannedNodes = new boolean[numberOfNodes];
+                // links leaving the spur node in the paths with the same root
+                for (int[] path : shortestPaths) {
+                    if (path.length > spur && isSamePrefix(path, lastPath, spur)) bannedLinks[path[spur]] = true;
+                }
+                // the root path nodes, so that the new path has no loops
+                for (int link = 0; link < spur; link++) bannedNodes[linkOrigin[lastPath[link]]] = true;
+
+                int[] spurPath = shortestPath(spurNode, destination, bannedLinks, bannedNodes);
+                if (spurPath == null) continue;
+                int[] path = Arrays.copyOf(lastPath, spur + spurPath.length);
+                System.arraycopy(spurPath, 0, path, spur, spurPath.length);
+                if (seen.add(new PathKey(path))) candidates.add(new Candidate(path, getLengthInKm(path)));
+            }
+            Candidate next = candidates.poll();
+            return next == null ? null : next.path;
+        }
+    }
+
+    private static boolean isSamePrefix(int[] path, int[] other, int length) {
+        for (int link = 0; link < length; link++) {
+            if (path[link] != other[link]) return false;
+        }
+        return true;
+    }
+
+    // candidate for the next shortest path, ordered by length, then number of links, then link indexes
+    private static class Candidate implements Comparable<Candidate> {
+        private final int[] path;
+        private final double lengthInKm;
+
+        Candidate(int[] path, double lengthInKm) {
+            this.path = path;
+            this.lengthInKm = lengthInKm;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (lengthInKm != other.lengthInKm) return Double.compare(lengthInKm, other.lengthInKm);
+            if (path.length != other.path.length) return Integer.compare(path.length, other.path.length);
+            for (int link = 0; link < path.length; link++) {
+                if (path[link] != other.path[link]) return Integer.compare(path[link], other.path[link]);
+            }
+            return 0;
+        }
+    }
+
+    private static class PathKey {
+        private final int[] path;
+        private final int hash;
+
+        PathKey(int[] path) {
+            this.path = path;
+            this.hash = Arrays.hashCode(path);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PathKey && Arrays.equals(path, ((PathKey) other).path);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package grooming.bench;
+
+import com.net2plan.interfaces.networkDesign.IAlgorithm;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static grooming.bench.HeuristicClasses.*;
+
+/*
+ * Full runs of executeAlgorithm on a copy of the topology, with multiple transponder types (LR in the core, ZR+ in
+ * the metro) and with a single transponder type, from the k shortest paths to the result record, with the design added
+ * to the NetPlan at the end or only the results (buildNetPlan). Each invocation uses its own seed, the results are
+ * appended to a JSONL file in a temporary folder.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ExecuteAlgorithmBenchmark {
+    @Param({ "false", "true" })
+    public boolean singleTransponderForAll;
+
+    @Param({ "350" })
+    public int numberOfDemands;
+
+    @Param({ "true", "false" })
+    public boolean buildNetPlan;
+
+    private NetPlan topology;
+    private Path resultFolder;
+    private NetPlan netPlan;
+    private IAlgorithm algorithm;
+    private Map<String, String> parameters;
+    private int seed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        topology = loadTopology();
+        resultFolder = Files.createTempDirectory("grooming-bench");
+        Map<String, String> baseParameters = new HashMap<>();
+        baseParameters.put("singleTransponderForAll", Boolean.toString(singleTransponderForAll));
+        baseParameters.put("NumberOfDemands", Integer.toString(numberOfDemands));
+        baseParameters.put("resultFormat", "jsonl");
+        baseParameters.put("resultPath", resultFolder.toString());
+        baseParameters.put("writeTransponderAttributes", "false");
+        baseParameters.put("buildNetPlan", Boolean.toString(buildNetPlan));
+        parameters = withDefaults(newAlgorithm(), baseParameters);
+    }
+
+    // fresh copy of the topology and algorithm, next seed
+    @Setup(Level.Invocation)
+    public void prepareRun() {
+        netPlan = topology.copy();
+        algorithm = newAlgorithm();
+        parameters.put("randomSeed", Integer.toString(seed++));
+    }
+
+    @Benchmark
+    public String executeAlgorithm() {
+        return algorithm.executeAlgorithm(netPlan, parameters, new HashMap<>());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteResults() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(resultFolder)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(resultFolder);
+    }
+}
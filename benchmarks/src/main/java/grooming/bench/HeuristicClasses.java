@@ -0,0 +1,144 @@
+package grooming.bench;
+
+import com.net2plan.interfaces.networkDesign.IAlgorithm;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.utils.Triple;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Access to the classes of the heuristic, which are in the default package: JMH does not accept benchmarks in the
+ * default package and a named package cannot import it, so the benchmarks call the heuristic through these handles.
+ * The handles are static final and have the reference types erased to Object, so invokeExact is inlined by the JIT
+ * like a direct call.
+ */
+final class HeuristicClasses {
+    static final String ALGORITHM_CLASS = "Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming";
+    static final String DEFAULT_TOPOLOGY = "topology/Nokia_topology.n2p";
+
+    static final Class<?> SPECTRUM_OCCUPANCY = load("SpectrumOccupancy");
+    static final Class<?> TOPOLOGY_INDEX = load("TopologyIndex");
+    static final Class<?> PATH_PLAN_CACHE = load("PathPlanCache");
+    static final Class<?> TRANSPONDER = load("Transponder");
+    static final Class<?> TRAFFIC_GENERATOR = load("TrafficGenerator");
+
+    // (int numFibers, int numSlots)
+    static final MethodHandle NEW_SPECTRUM_OCCUPANCY = constructor(SPECTRUM_OCCUPANCY, int.class, int.class);
+    // (occupancy, int[] fibers, int numContiguousSlots) -> int
+    static final MethodHandle FIRST_FIT = method(SPECTRUM_OCCUPANCY, "firstFit", int[].class, int.class);
+    static final MethodHandle BEST_FIT = method(SPECTRUM_OCCUPANCY, "bestFit", int[].class, int.class);
+    static final MethodHandle EXACT_FIT = method(SPECTRUM_OCCUPANCY, "exactFit", int[].class, int.class);
+    // (occupancy, int[] fibers, int firstSlot, int numContiguousSlots)
+    static final MethodHandle ALLOCATE = method(SPECTRUM_OCCUPANCY, "allocate", int[].class, int.class, int.class);
+    // (NetPlan, NetworkLayer wdmLayer, int k, double maxPropagationDelayMs)
+    static final MethodHandle NEW_TOPOLOGY_INDEX = constructor(TOPOLOGY_INDEX, NetPlan.class, NetworkLayer.class, int.class, double.class);
+    // (topology, int origin, int destination) -> int[][]
+    static final MethodHandle GET_CANDIDATE_PATHS = method(TOPOLOGY_INDEX, "getCandidatePaths", int.class, int.class);
+    // (topology, Map transponders, String singleTransponderType)
+    static final MethodHandle NEW_PATH_PLAN_CACHE = constructor(PATH_PLAN_CACHE, TOPOLOGY_INDEX, Map.class, String.class);
+    // (cache, int[] path) -> List<int[]>
+    static final MethodHandle CALCULATE_SUB_PATH = method(PATH_PLAN_CACHE, "calculateSubPath", int[].class);
+    // (cache, int[] path, transponder) -> List<int[]>
+    static final MethodHandle CALCULATE_SUB_PATHS_BASED_ON_TRANSPONDER = method(PATH_PLAN_CACHE, "calculateSubPathsBasedOnTransponder", int[].class, TRANSPONDER);
+    // (cache, int origin, int destination) -> PathPlan[]
+    static final MethodHandle GET_PATH_PLANS = method(PATH_PLAN_CACHE, "getPathPlans", int.class, int.class);
+    // (transponder, double pathLength) -> Modulation
+    static final MethodHandle GET_BEST_MODULATION_FORMAT = method(TRANSPONDER, "getBestModulationFormat", double.class);
+    // (NetPlan, double probabilityOfStartingFromCore, long seed)
+    static final MethodHandle NEW_TRAFFIC_GENERATOR = constructor(TRAFFIC_GENERATOR, NetPlan.class, double.class, long.class);
+    // (generator, int numberOfDemands)
+    static final MethodHandle GENERATE = method(TRAFFIC_GENERATOR, "generate", int.class);
+    // (generator, int numberOfDemands) -> TrafficMatrix
+    static final MethodHandle GENERATE_MATRIX = method(TRAFFIC_GENERATOR, "generateMatrix", int.class);
+
+    private HeuristicClasses() {
+    }
+
+    static IAlgorithm newAlgorithm() {
+        try {
+            return (IAlgorithm) load(ALGORITHM_CLASS).getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * transponders method
+     * The transponder catalog of the heuristic (subregion type -> Transponder), as built by initializeTransponders
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> transponders() {
+        try {
+            Object algorithm = newAlgorithm();
+            Method initialize = algorithm.getClass().getDeclaredMethod("initializeTransponders");
+            initialize.setAccessible(true);
+            initialize.invoke(algorithm);
+            Field transponders = algorithm.getClass().getDeclaredField("transponders");
+            transponders.setAccessible(true);
+            return (Map<String, Object>) transponders.get(algorithm);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * withDefaults method
+     * Same as SweepRunner.withDefaults: the default value of every parameter of the algorithm, overridden by parameters
+     */
+    static Map<String, String> withDefaults(IAlgorithm algorithm, Map<String, String> parameters) {
+        Map<String, String> allParameters = new HashMap<>();
+        for (Triple<String, String, String> parameter : algorithm.getParameters()) {
+            String defaultValue = parameter.getSecond();
+            if (defaultValue.startsWith("#boolean#")) defaultValue = defaultValue.substring("#boolean#".length()).trim();
+            else if (defaultValue.startsWith("#select#")) defaultValue = defaultValue.substring("#select#".length()).trim().split(" ")[0];
+            allParameters.put(parameter.getFirst(), defaultValue);
+        }
+        allParameters.putAll(parameters);
+        return allParameters;
+    }
+
+    // topology file, -Dtopology=... to benchmark another one
+    static NetPlan loadTopology() {
+        return new NetPlan(new java.io.File(System.getProperty("topology", DEFAULT_TOPOLOGY)));
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // private methods too, so the segmentation of PathPlanCache can be measured on its own
+    private static MethodHandle method(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            MethodType erased = handle.type().erase();
+            return handle.asType(erased);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
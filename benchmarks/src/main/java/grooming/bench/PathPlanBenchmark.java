@@ -0,0 +1,108 @@
+package grooming.bench;
+
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static grooming.bench.HeuristicClasses.*;
+
+/*
+ * Per path steps of the routing: segmentation of a candidate path by region (calculateSubPath) and by transponder
+ * reach (calculateSubPathsBasedOnTransponder), best modulation of a length (Transponder.getBestModulationFormat) and
+ * the whole plan of a node pair on a cold PathPlanCache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathPlanBenchmark {
+    // number of paths and lengths the benchmark cycles on, a power of two
+    private static final int NUM_SAMPLES = 1024;
+
+    private Object topology;
+    private Map<String, Object> transponders;
+    private Object pathPlanCache;
+    private Object metroTransponder;
+    private Object coreTransponder;
+    private int[][] paths;
+    private int[][] nodePairs;
+    private double[] lengthsInKm;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        NetPlan netPlan = loadTopology();
+        NetworkLayer wdmLayer = netPlan.getNetworkLayer("WDM");
+        topology = NEW_TOPOLOGY_INDEX.invoke(netPlan, wdmLayer, 10, -1.0);
+        transponders = transponders();
+        metroTransponder = transponders.get("METRO");
+        coreTransponder = transponders.get("CORE");
+        pathPlanCache = NEW_PATH_PLAN_CACHE.invoke(topology, transponders, (String) null);
+
+        // candidate paths of random node pairs, lengths up to the longest reach of the catalog
+        SplittableRandom random = new SplittableRandom(1);
+        List<int[]> pairs = new ArrayList<>();
+        paths = new int[NUM_SAMPLES][];
+        lengthsInKm = new double[NUM_SAMPLES];
+        for (int p = 0; p < NUM_SAMPLES; p++) {
+            int[][] candidatePaths = null;
+            int origin = 0;
+            int destination = 0;
+            while (candidatePaths == null || candidatePaths.length == 0) {
+                origin = random.nextInt(netPlan.getNumberOfNodes());
+                destination = random.nextInt(netPlan.getNumberOfNodes());
+                if (origin != destination) candidatePaths = (int[][]) GET_CANDIDATE_PATHS.invoke(topology, origin, destination);
+            }
+            pairs.add(new int[] { origin, destination });
+            paths[p] = candidatePaths[random.nextInt(candidatePaths.length)];
+            lengthsInKm[p] = random.nextDouble(5000);
+        }
+        nodePairs = pairs.toArray(new int[0][]);
+    }
+
+    @Benchmark
+    public Object calculateSubPath() throws Throwable {
+        int[] path = paths[next++ & (NUM_SAMPLES - 1)];
+        return CALCULATE_SUB_PATH.invokeExact(pathPlanCache, (Object) path);
+    }
+
+    @Benchmark
+    public Object calculateSubPathsBasedOnTransponder() throws Throwable {
+        int[] path = paths[next++ & (NUM_SAMPLES - 1)];
+        return CALCULATE_SUB_PATHS_BASED_ON_TRANSPONDER.invokeExact(pathPlanCache, (Object) path, metroTransponder);
+    }
+
+    @Benchmark
+    public Object getBestModulationFormat() throws Throwable {
+        double length = lengthsInKm[next++ & (NUM_SAMPLES - 1)];
+        return GET_BEST_MODULATION_FORMAT.invokeExact(coreTransponder, length);
+    }
+
+    // segmentation, modulation and cost of the k candidate paths of a node pair, the plans are never in the cache
+    @Benchmark
+    public Object pathPlans(ColdCache cold) throws Throwable {
+        int[] pair = nodePairs[next++ & (NUM_SAMPLES - 1)];
+        return GET_PATH_PLANS.invokeExact(cold.pathPlanCache, pair[0], pair[1]);
+    }
+
+    /*
+     * Empty PathPlanCache at every call, only for pathPlans: the per invocation setup would skew the other benchmarks
+     */
+    @State(Scope.Thread)
+    public static class ColdCache {
+        private Object pathPlanCache;
+
+        @Setup(Level.Invocation)
+        public void setUp(PathPlanBenchmark benchmark) throws Throwable {
+            pathPlanCache = NEW_PATH_PLAN_CACHE.invoke(benchmark.topology, benchmark.transponders, (String) null);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package grooming.bench;
+
+import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.libraries.WDMUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static grooming.bench.HeuristicClasses.*;
+
+/*
+ * First-fit spectrum assignment on the candidate paths of the topology: SpectrumOccupancy (packed bitmaps) against
+ * WDMUtils.spectrumAssignment_firstFit (slot x fiber matrix) on the same occupancy, filled by random lightpaths up to
+ * the given fraction of the slots. Best fit and exact fit of SpectrumOccupancy on the same paths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpectrumAssignmentBenchmark {
+    private static final int NUM_SLOTS = 4950;
+    // number of paths the benchmark cycles on, a power of two
+    private static final int NUM_PATHS = 1024;
+
+    @Param({ "0.25", "0.75" })
+    public double occupiedFraction;
+
+    // channel spacing of the lightpath to assign, in slots
+    @Param({ "50", "100" })
+    public int numContiguousSlots;
+
+    private Object spectrumOccupancy;
+    private DoubleMatrix2D frequencySlot2FiberOccupancy;
+    private int[][] pathLinkIndexes;
+    private List<List<Link>> pathLinks;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        NetPlan netPlan = loadTopology();
+        NetworkLayer wdmLayer = netPlan.getNetworkLayer("WDM");
+        int numFibers = netPlan.getNumberOfLinks(wdmLayer);
+        Object topology = NEW_TOPOLOGY_INDEX.invoke(netPlan, wdmLayer, 10, -1.0);
+        SplittableRandom random = new SplittableRandom(1);
+
+        // random candidate paths of random node pairs
+        pathLinkIndexes = new int[NUM_PATHS][];
+        pathLinks = new ArrayList<>(NUM_PATHS);
+        for (int p = 0; p < NUM_PATHS; p++) {
+            int[][] candidatePaths = null;
+            while (candidatePaths == null || candidatePaths.length == 0) {
+                int origin = random.nextInt(netPlan.getNumberOfNodes());
+                int destination = random.nextInt(netPlan.getNumberOfNodes());
+                if (origin != destination) candidatePaths = (int[][]) GET_CANDIDATE_PATHS.invoke(topology, origin, destination);
+            }
+            pathLinkIndexes[p] = candidatePaths[random.nextInt(candidatePaths.length)];
+            List<Link> links = new ArrayList<>(pathLinkIndexes[p].length);
+            for (int e : pathLinkIndexes[p]) links.add(netPlan.getLink(e, wdmLayer));
+            pathLinks.add(links);
+        }
+
+        // same occupancy in both representations: lightpaths of 50 or 100 GHz on the paths until the fraction is reached
+        spectrumOccupancy = NEW_SPECTRUM_OCCUPANCY.invoke(numFibers, NUM_SLOTS);
+        frequencySlot2FiberOccupancy = DoubleFactory2D.dense.make(NUM_SLOTS, numFibers);
+        long targetOccupiedSlots = (long) (occupiedFraction * NUM_SLOTS * numFibers);
+        long occupiedSlots = 0;
+        int failures = 0;
+        while (occupiedSlots < targetOccupiedSlots && failures < 100) {
+            int[] path = pathLinkIndexes[random.nextInt(NUM_PATHS)];
+            int width = random.nextBoolean() ? 50 : 100;
+            int slot = (int) FIRST_FIT.invokeExact(spectrumOccupancy, (Object) path, width);
+            if (slot < 0) {
+                failures++;
+                continue;
+            }
+            ALLOCATE.invokeExact(spectrumOccupancy, (Object) path, slot, width);
+            for (int e : path) {
+                for (int s = slot; s < slot + width; s++) frequencySlot2FiberOccupancy.set(s, e, 1);
+            }
+            occupiedSlots += (long) width * path.length;
+        }
+    }
+
+    @Benchmark
+    public int spectrumOccupancyFirstFit() throws Throwable {
+        int[] path = pathLinkIndexes[next++ & (NUM_PATHS - 1)];
+        return (int) FIRST_FIT.invokeExact(spectrumOccupancy, (Object) path, numContiguousSlots);
+    }
+
+    @Benchmark
+    public int spectrumOccupancyBestFit() throws Throwable {
+        int[] path = pathLinkIndexes[next++ & (NUM_PATHS - 1)];
+        return (int) BEST_FIT.invokeExact(spectrumOccupancy, (Object) path, numContiguousSlots);
+    }
+
+    @Benchmark
+    public int spectrumOccupancyExactFit() throws Throwable {
+        int[] path = pathLinkIndexes[next++ & (NUM_PATHS - 1)];
+        return (int) EXACT_FIT.invokeExact(spectrumOccupancy, (Object) path, numContiguousSlots);
+    }
+
+    @Benchmark
+    public int wdmUtilsFirstFit() {
+        List<Link> path = pathLinks.get(next++ & (NUM_PATHS - 1));
+        return WDMUtils.spectrumAssignment_firstFit(path, frequencySlot2FiberOccupancy, numContiguousSlots);
+    }
+}
@@ -0,0 +1,60 @@
+package grooming.bench;
+
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.utils.Constants.RoutingType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static grooming.bench.HeuristicClasses.*;
+
+/*
+ * Traffic generation: the demands as primitive arrays (generateMatrix) and the demands added to the IP layer of the
+ * NetPlan (generate). The IP demands of the previous call are removed before each call of generate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrafficGeneratorBenchmark {
+    @Param({ "350", "1000", "10000" })
+    public int numberOfDemands;
+
+    private NetPlan netPlan;
+    private NetworkLayer ipLayer;
+    private Object trafficGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        // IP layer on top of the WDM layer, as created by the heuristic
+        netPlan = loadTopology();
+        ipLayer = netPlan.addLayer("IP", "IP layer", "Gbps", "Gbps", null, null);
+        netPlan.setRoutingTypeAllDemands(RoutingType.SOURCE_ROUTING, ipLayer);
+        trafficGenerator = NEW_TRAFFIC_GENERATOR.invoke(netPlan, 0.5, 1L);
+    }
+
+    @Benchmark
+    public Object generateMatrix() throws Throwable {
+        return GENERATE_MATRIX.invokeExact(trafficGenerator, numberOfDemands);
+    }
+
+    @Benchmark
+    public int generate(EmptyIPLayer empty) throws Throwable {
+        GENERATE.invokeExact(trafficGenerator, numberOfDemands);
+        return netPlan.getNumberOfDemands(ipLayer);
+    }
+
+    /*
+     * Removes the IP demands before every call, only for generate
+     */
+    @State(Scope.Thread)
+    public static class EmptyIPLayer {
+        @Setup(Level.Invocation)
+        public void setUp(TrafficGeneratorBenchmark benchmark) {
+            benchmark.netPlan.removeAllDemands(benchmark.ipLayer);
+        }
+    }
+}
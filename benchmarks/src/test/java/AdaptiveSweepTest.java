@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * AdaptiveSweep on a stub runner whose trials fail exactly from a known number of demands (failure rate 0 below it and 1
+ * from it): the bracketing and the bisection must end on two load points one resolution apart around that limit, from
+ * a start below or above it. The Wilson interval against published values, and the decision rule of a load point.
+ */
+public class AdaptiveSweepTest {
+    private static final double TARGET = 0.5;
+    private static final double MAX_HALF_WIDTH = 0.1;
+
+    @Test
+    public void wilsonIntervalMatchesPublishedValues() {
+        assertArrayEquals(new double[] { 0, 0.27754 }, AdaptiveSweep.wilsonInterval(0, 10), 1e-5);
+        assertArrayEquals(new double[] { 0.23659, 0.76341 }, AdaptiveSweep.wilsonInterval(5, 10), 1e-5);
+        assertArrayEquals(new double[] { 0.72246, 1 }, AdaptiveSweep.wilsonInterval(10, 10), 1e-5);
+        assertArrayEquals(new double[] { 0.40383, 0.59617 }, AdaptiveSweep.wilsonInterval(50, 100), 1e-5);
+        // no trials: nothing is known
+        assertArrayEquals(new double[] { 0, 1 }, AdaptiveSweep.wilsonInterval(0, 0));
+        // failures and successes are symmetric
+        for (int failures = 0; failures <= 20; failures++) {
+            double[] interval = AdaptiveSweep.wilsonInterval(failures, 20);
+            double[] mirrored = AdaptiveSweep.wilsonInterval(20 - failures, 20);
+            assertEquals(interval[0], 1 - mirrored[1], 1e-12);
+            assertTrue(interval[0] <= failures / 20.0 && failures / 20.0 <= interval[1]);
+        }
+    }
+
+    @Test
+    public void loadPointIsDecidedByItsConfidenceInterval() {
+        AdaptiveSweep sweep = new AdaptiveSweep(new StubRunner(limit -> false), TARGET, MAX_HALF_WIDTH, 100, 1, 1000);
+        // the upper bound of 0 failures on 3 trials is 0.56, above the target, on 4 trials it is 0.49
+        assertFalse(point(sweep, 0, 3).isDecided());
+        assertTrue(point(sweep, 0, 4).isDecided());
+        assertTrue(point(sweep, 4, 4).isDecided());
+        // around the target: half width 0.107 on 80 trials, 0.096 on 100 trials (also the maximum)
+        assertFalse(point(sweep, 40, 80).isDecided());
+        assertTrue(point(sweep, 50, 100).isDecided());
+        AdaptiveSweep wide = new AdaptiveSweep(new StubRunner(limit -> false), TARGET, 0.01, 90, 1, 1000);
+        assertFalse(point(wide, 44, 89).isDecided());
+        assertTrue(point(wide, 45, 90).isDecided());
+        assertFalse(point(wide, 0, 0).isDecided());
+    }
+
+    @Test
+    public void limitIsBracketedWithinTheResolution() {
+        int resolution = 10;
+        for (int limit : new int[] { 37, 100, 101, 537, 4000 }) {
+            for (int start : new int[] { 10, 100, 2000 }) {
+                StubRunner runner = new StubRunner(demands -> demands >= limit);
+                AdaptiveSweep.Estimate estimate = new AdaptiveSweep(runner, TARGET, MAX_HALF_WIDTH, 30, 4, 100000).run(start, resolution, "unused");
+                String name = "limit " + limit + " from " + start;
+                assertTrue(estimate.isBracketed(), name);
+                assertNotNull(estimate.getLower(), name);
+                assertTrue(estimate.getLower().getNumberOfDemands() < limit && limit <= estimate.getUpper().getNumberOfDemands(), name + ": " + estimate);
+                assertTrue(estimate.getErrorBar() <= resolution, name + ": " + estimate);
+                // the interpolation of a step from 0 to 1 is the middle of the bracket
+                assertEquals((estimate.getLower().getNumberOfDemands() + estimate.getUpper().getNumberOfDemands()) / 2.0, estimate.getNumberOfDemands(), 1e-9, name);
+                // a point with every trial on one side of the target is decided after a few trials
+                assertEquals(runner.trials, estimate.getTotalTrials(), name);
+                assertTrue(estimate.getTotalTrials() <= 5 * runner.loads.size(), name + ": " + estimate.getTotalTrials() + " trials");
+                for (int load : runner.loads) assertTrue(load >= resolution && load <= 100000, name + ": load " + load);
+            }
+        }
+    }
+
+    @Test
+    public void limitBelowTheResolutionHasNoLowerPoint() {
+        StubRunner runner = new StubRunner(demands -> true);
+        AdaptiveSweep.Estimate estimate = new AdaptiveSweep(runner, TARGET, MAX_HALF_WIDTH, 30, 4, 100000).run(500, 10, "unused");
+        assertNull(estimate.getLower());
+        // the smallest load is tried before giving up
+        assertEquals(10, estimate.getUpper().getNumberOfDemands());
+        assertTrue(runner.loads.contains(10));
+    }
+
+    @Test
+    public void limitAboveTheMaximumIsNotBracketed() {
+        StubRunner runner = new StubRunner(demands -> demands >= 5000);
+        AdaptiveSweep.Estimate estimate = new AdaptiveSweep(runner, TARGET, MAX_HALF_WIDTH, 30, 4, 1000).run(100, 10, "unused");
+        assertFalse(estimate.isBracketed());
+        assertTrue(Double.isNaN(estimate.getNumberOfDemands()));
+        assertEquals(1000, estimate.getLower().getNumberOfDemands());
+        for (int load : runner.loads) assertTrue(load <= 1000, "load " + load);
+        assertTrue(estimate.toString().startsWith("Limit not bracketed"));
+    }
+
+    @Test
+    public void errorTrialAbortsTheSearch() {
+        StubRunner runner = new StubRunner(demands -> demands >= 300);
+        runner.errorAt = 150;
+        AdaptiveSweep sweep = new AdaptiveSweep(runner, TARGET, MAX_HALF_WIDTH, 30, 4, 100000);
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> sweep.run(100, 50, "unused"));
+        assertTrue(exception.getMessage().contains("150 demands"), exception.getMessage());
+    }
+
+    @Test
+    public void invalidResolutionOrTrialLimitIsRejected() {
+        StubRunner runner = new StubRunner(demands -> demands >= 300);
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveSweep(runner, TARGET, MAX_HALF_WIDTH, 0, 4, 100000));
+        AdaptiveSweep sweep = new AdaptiveSweep(runner, TARGET, MAX_HALF_WIDTH, 30, 4, 100000);
+        assertThrows(IllegalArgumentException.class, () -> sweep.run(100, 0, "unused"));
+        assertThrows(IllegalArgumentException.class, () -> sweep.run(100, -10, "unused"));
+        assertEquals(0, runner.trials);
+    }
+
+    // a load point of the sweep with the given failures on the given trials
+    private static AdaptiveSweep.LoadPoint point(AdaptiveSweep sweep, int failures, int trials) {
+        AdaptiveSweep.LoadPoint point = sweep.new LoadPoint(100);
+        for (int trial = 0; trial < trials; trial++) point.add(trial < failures);
+        return point;
+    }
+
+    // trials that fail when failsAt is true for their number of demands, and end with an error at errorAt demands
+    private static class StubRunner implements AdaptiveSweep.TrialRunner {
+        final IntPredicate failsAt;
+        final List<Integer> loads = new ArrayList<>();
+        int errorAt = -1;
+        int trials;
+
+        StubRunner(IntPredicate failsAt) {
+            this.failsAt = failsAt;
+        }
+
+        @Override
+        public List<SweepRunner.TrialResult> runTrials(int numDemands, int firstIteration, int count, String outputFolder) {
+            if (!loads.contains(numDemands)) loads.add(numDemands);
+            List<SweepRunner.TrialResult> results = new ArrayList<>();
+            for (int iteration = firstIteration; iteration < firstIteration + count; iteration++) {
+                trials++;
+                if (numDemands == errorAt) results.add(new SweepRunner.TrialResult(numDemands, iteration, -1, false, true, "java.lang.NullPointerException", null));
+                else results.add(new SweepRunner.TrialResult(numDemands, iteration, -1, !failsAt.test(numDemands), "stub"));
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * AliasTable against the distribution of its weights: the frequency of every index over many samples is within five
+ * standard deviations of its probability, and indexes of weight zero are never sampled.
+ */
+public class AliasTableTest {
+    private static final int NUM_SAMPLES = 1_000_000;
+
+    @Test
+    public void frequenciesMatchWeights() {
+        double[][] weightSets = {
+                { 1 },
+                { 1, 1, 1, 1 },
+                { 0.5, 0.25, 0.125, 0.125 },
+                { 1e-6, 1, 3, 0, 7.5, 0 },
+                randomWeights(new SplittableRandom(1), 50),
+                randomWeights(new SplittableRandom(2), 1000),
+        };
+        long seed = 0;
+        for (double[] weights : weightSets) checkFrequencies(weights, new SplittableRandom(++seed));
+    }
+
+    private static void checkFrequencies(double[] weights, SplittableRandom random) {
+        AliasTable table = new AliasTable(weights);
+        long[] counts = new long[weights.length];
+        for (int sample = 0; sample < NUM_SAMPLES; sample++) counts[table.sample(random)]++;
+
+        double sum = 0;
+        for (double weight : weights) sum += weight;
+        for (int i = 0; i < weights.length; i++) {
+            double probability = weights[i] / sum;
+            if (probability == 0) {
+                assertEquals(0, counts[i], "index " + i + " has weight zero");
+                continue;
+            }
+            double expected = probability * NUM_SAMPLES;
+            double deviation = Math.sqrt(NUM_SAMPLES * probability * (1 - probability));
+            assertEquals(expected, counts[i], 5 * deviation + 1, "index " + i + " of " + weights.length);
+        }
+    }
+
+    // a few heavy weights among many light ones, as the destinations of the traffic generator
+    private static double[] randomWeights(SplittableRandom random, int n) {
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) weights[i] = random.nextInt(10) == 0 ? 10 + 90 * random.nextDouble() : random.nextDouble();
+        return weights;
+    }
+}
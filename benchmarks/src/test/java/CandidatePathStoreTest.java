@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * CandidatePathStore: the paths read back from the file are the ones written, for random path lists with pairs without
+ * paths and link indexes on every variable length int boundary, and a file of another hash or incomplete is not opened.
+ */
+public class CandidatePathStoreTest {
+    private static final int[] BOUNDARY_LINKS = { 0, 1, 127, 128, 16383, 16384, 2097151, 2097152, Integer.MAX_VALUE };
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void readReturnsThePathsWritten() throws IOException {
+        for (int numberOfNodes : new int[] { 1, 5, 30 }) {
+            SplittableRandom random = new SplittableRandom(numberOfNodes);
+            int[][][] candidatePaths = new int[numberOfNodes * numberOfNodes][][];
+            for (int pair = 0; pair < candidatePaths.length; pair++) {
+                if (random.nextInt(4) == 0) continue;
+                candidatePaths[pair] = new int[random.nextInt(6)][];
+                for (int p = 0; p < candidatePaths[pair].length; p++) {
+                    int[] path = new int[random.nextInt(12)];
+                    for (int l = 0; l < path.length; l++)
+                        path[l] = random.nextBoolean() ? BOUNDARY_LINKS[random.nextInt(BOUNDARY_LINKS.length)] : random.nextInt(500);
+                    candidatePaths[pair][p] = path;
+                }
+            }
+            byte[] hash = hash(numberOfNodes);
+            Path file = CandidatePathStore.file(folder, hash);
+            CandidatePathStore.write(file, hash, numberOfNodes, candidatePaths);
+
+            CandidatePathStore store = CandidatePathStore.open(file, hash);
+            assertNotNull(store);
+            assertEquals(numberOfNodes, store.getNumberOfNodes());
+            // pairs read in random order, each one decoded from its own offset
+            int[] order = new int[candidatePaths.length];
+            for (int pair = 0; pair < order.length; pair++) order[pair] = pair;
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            for (int pair : order) assertArrayEquals(candidatePaths[pair], store.read(pair), "pair " + pair);
+        }
+    }
+
+    @Test
+    public void fileOfAnotherHashOrIncompleteIsNotOpened() throws IOException {
+        byte[] hash = hash(1);
+        Path file = CandidatePathStore.file(folder, hash);
+        assertNull(CandidatePathStore.open(file, hash));
+        CandidatePathStore.write(file, hash, 2, new int[][][] { null, { { 0 } }, { { 1 }, { 2, 3 } }, null });
+        assertNotNull(CandidatePathStore.open(file, hash));
+
+        byte[] otherHash = hash.clone();
+        otherHash[31] ^= 1;
+        assertNull(CandidatePathStore.open(file, otherHash));
+        // the file name depends on the hash
+        assertNotEquals(file, CandidatePathStore.file(folder, hash(2)));
+
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 1));
+        assertNull(CandidatePathStore.open(file, hash));
+        Files.write(file, Arrays.copyOf(content, 20));
+        assertNull(CandidatePathStore.open(file, hash));
+    }
+
+    private static byte[] hash(int seed) {
+        byte[] hash = new byte[32];
+        new SplittableRandom(seed).nextBytes(hash);
+        return hash;
+    }
+}
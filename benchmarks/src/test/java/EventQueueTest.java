@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * EventQueue against a PriorityQueue of the same times, with random interleaved additions and removals. Events with the
+ * same time can come out in any order, so each payload is checked to be pending with the time polled.
+ */
+public class EventQueueTest {
+
+    @Test
+    public void pollsInTimeOrderAsPriorityQueue() {
+        for (long seed = 1; seed <= 10; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            EventQueue queue = new EventQueue(1);
+            PriorityQueue<Double> oracle = new PriorityQueue<>();
+            Map<Integer, Double> pending = new HashMap<>();
+            double now = 0;
+            int nextPayload = 0;
+            for (int step = 0; step < 20000; step++) {
+                if (oracle.isEmpty() || random.nextInt(5) < 3) {
+                    // times on a grid, so equal times are frequent
+                    double time = now + random.nextInt(50) * 0.5;
+                    queue.add(time, nextPayload);
+                    oracle.add(time);
+                    pending.put(nextPayload++, time);
+                } else {
+                    assertEquals(oracle.peek(), queue.peekTime());
+                    now = oracle.poll();
+                    int payload = queue.poll();
+                    assertEquals(Double.valueOf(now), pending.remove(payload), "payload " + payload);
+                }
+                assertEquals(oracle.size(), queue.size());
+            }
+            while (!oracle.isEmpty()) {
+                double time = oracle.poll();
+                assertEquals(time, queue.peekTime());
+                assertEquals(Double.valueOf(time), pending.remove(queue.poll()));
+            }
+            assertTrue(queue.isEmpty());
+            assertEquals(Double.POSITIVE_INFINITY, queue.peekTime());
+        }
+    }
+}
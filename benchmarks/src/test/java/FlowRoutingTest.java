@@ -0,0 +1,93 @@
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Routing of identical demands as flows (routeFlow) on the topology of the repository, against routing every demand
+ * alone with the full evaluation of its candidate paths (routeFlows false): the same result record and the same
+ * outcome, with the demands in generation order (only consecutive identical demands form a flow) or grouped
+ * (aggregateDemands, every group is a flow), in both transponder modes, at loads where every demand is routed and at one
+ * where a demand is blocked.
+ */
+public class FlowRoutingTest {
+    private static final int[] NUMBERS_OF_DEMANDS = { 400, 1200, 2000 };
+
+    // loaded once, every run has its own copy and shares the candidate paths, as the trials of SweepRunner
+    private static NetPlan topology;
+    private static TopologyIndex sharedTopology;
+
+    @TempDir
+    Path folder;
+
+    @BeforeAll
+    public static void loadTopology() {
+        topology = TestTopology.load();
+        Map<String, String> defaults = SweepRunner.withDefaults(new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(), new HashMap<>());
+        sharedTopology = new TopologyIndex(topology, topology.getNetworkLayer("WDM"), Integer.parseInt(defaults.get("k")), Double.parseDouble(defaults.get("maxPropagationDelayMs")));
+    }
+
+    @Test
+    public void flowsGiveTheResultOfRoutingEveryDemandAlone() {
+        boolean blocked = false;
+        for (int numberOfDemands : NUMBERS_OF_DEMANDS) {
+            for (String singleTransponderForAll : new String[] { "false", "true" }) {
+                for (String aggregateDemands : new String[] { "false", "true" }) {
+                    Map<String, String> parameters = new HashMap<>();
+                    parameters.put("singleTransponderForAll", singleTransponderForAll);
+                    parameters.put("aggregateDemands", aggregateDemands);
+                    parameters.put("NumberOfDemands", Integer.toString(numberOfDemands));
+                    parameters.put("randomSeed", "11");
+                    parameters.put("profileRun", "true");
+                    parameters.put("resultFormat", "jsonl");
+                    parameters.put("resultPath", folder.toString());
+                    parameters.put("buildNetPlan", "false");
+                    parameters.put("candidatePathCache", "");
+                    String name = numberOfDemands + " demands, singleTransponderForAll " + singleTransponderForAll + ", aggregateDemands " + aggregateDemands;
+
+                    Run flows = new Run(parameters, true);
+                    Run alone = new Run(parameters, false);
+                    assertEquals(alone.message, flows.message, name);
+                    if (flows.message.startsWith("Blocked")) blocked = true;
+                    assertEquals(withoutProfile(alone.record), withoutProfile(flows.record), name);
+                    assertEquals(alone.record.get("count_lightpaths_created"), flows.record.get("count_lightpaths_created"), name);
+                }
+            }
+        }
+        assertTrue(blocked, "a load where a demand is blocked");
+    }
+
+    // the record without the times and counts of the profile, which depend on the routing of the flows
+    private static Map<String, Object> withoutProfile(Map<String, Object> record) {
+        Map<String, Object> fields = new HashMap<>(record);
+        fields.keySet().removeIf(field -> field.startsWith("time_ms_") || field.startsWith("count_"));
+        return fields;
+    }
+
+    // one run on a copy of the topology: its message ("Blocked" and the exception message if it failed) and record
+    private static class Run {
+        final String message;
+        final Map<String, Object> record;
+
+        Run(Map<String, String> parameters, boolean routeFlows) {
+            Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming algorithm = new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(sharedTopology, null);
+            algorithm.routeFlows = routeFlows;
+            String outcome;
+            try {
+                outcome = algorithm.executeAlgorithm(topology.copy(), SweepRunner.withDefaults(algorithm, parameters), new HashMap<>());
+            } catch (Net2PlanException e) {
+                outcome = "Blocked: " + e.getMessage();
+            }
+            this.message = outcome;
+            // also the state at the demand that was blocked
+            this.record = algorithm.buildResultRecord();
+        }
+    }
+}
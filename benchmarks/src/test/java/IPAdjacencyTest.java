@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * IPAdjacency against a HashMap of node pairs and a list of the pairs of each origin in creation order, with enough
+ * pairs to rehash the table several times.
+ */
+public class IPAdjacencyTest {
+
+    @Test
+    public void pairsMatchHashMap() {
+        for (int numberOfNodes : new int[] { 3, 40, 300 }) {
+            SplittableRandom random = new SplittableRandom(numberOfNodes);
+            IPAdjacency adjacency = new IPAdjacency(numberOfNodes);
+            Map<Long, IPLinkCapacityIndex> pairs = new HashMap<>();
+            List<List<Integer>> destinationsFrom = new ArrayList<>();
+            for (int node = 0; node < numberOfNodes; node++) destinationsFrom.add(new ArrayList<>());
+
+            for (int step = 0; step < 5000; step++) {
+                int origin = random.nextInt(numberOfNodes);
+                int destination = random.nextInt(numberOfNodes);
+                long key = (long) origin * numberOfNodes + destination;
+                if (random.nextBoolean()) {
+                    IPLinkCapacityIndex index = adjacency.getOrCreate(origin, destination);
+                    IPLinkCapacityIndex expected = pairs.get(key);
+                    if (expected == null) {
+                        pairs.put(key, index);
+                        destinationsFrom.get(origin).add(destination);
+                        index.add(step, random.nextInt(4) * 100.0);
+                    } else {
+                        assertSame(expected, index);
+                    }
+                } else {
+                    assertSame(pairs.get(key), adjacency.get(origin, destination));
+                    double traffic = random.nextInt(4) * 100.0;
+                    IPLinkCapacityIndex expected = pairs.get(key);
+                    assertEquals(expected != null && expected.hasSpareCapacity(traffic), adjacency.hasSpareCapacity(origin, destination, traffic));
+                    assertEquals(expected == null ? -1 : expected.getFirstWithSpareCapacity(traffic), adjacency.getFirstWithSpareCapacity(origin, destination, traffic));
+                }
+            }
+
+            assertEquals(pairs.size(), adjacency.getNumberOfPairs());
+            for (int origin = 0; origin < numberOfNodes; origin++) {
+                List<Integer> destinations = new ArrayList<>();
+                for (int pair = adjacency.firstPair(origin); pair >= 0; pair = adjacency.nextPair(pair)) {
+                    destinations.add(adjacency.getDestination(pair));
+                    assertSame(pairs.get((long) origin * numberOfNodes + adjacency.getDestination(pair)), adjacency.getIPLinks(pair));
+                }
+                assertEquals(destinationsFrom.get(origin), destinations, "pairs from node " + origin);
+            }
+        }
+    }
+
+    @Test
+    public void keysOfDifferentPairsDoNotCollide() {
+        // pairs whose origin and destination swap, or differ only in the origin, are different keys
+        IPAdjacency adjacency = new IPAdjacency(70000);
+        Map<String, IPLinkCapacityIndex> created = new LinkedHashMap<>();
+        int[][] pairs = { { 0, 1 }, { 1, 0 }, { 65536, 1 }, { 1, 65536 }, { 0, 65537 }, { 69999, 69999 } };
+        for (int[] pair : pairs) created.put(pair[0] + "-" + pair[1], adjacency.getOrCreate(pair[0], pair[1]));
+        assertEquals(pairs.length, adjacency.getNumberOfPairs());
+        for (int[] pair : pairs) assertSame(created.get(pair[0] + "-" + pair[1]), adjacency.get(pair[0], pair[1]));
+        assertNull(adjacency.get(65537, 0));
+        assertEquals(-1, adjacency.firstPair(2));
+    }
+}
@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * IPLinkCapacityIndex against a linear scan of its links in creation order, after random additions, capacity updates,
+ * removals and compactions.
+ */
+public class IPLinkCapacityIndexTest {
+
+    @Test
+    public void firstWithSpareCapacityMatchesLinearScan() {
+        for (long seed = 1; seed <= 20; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            IPLinkCapacityIndex index = new IPLinkCapacityIndex();
+            // live links in creation order: lightpath and spare capacity
+            List<double[]> links = new ArrayList<>();
+            int nextLightpath = 0;
+            for (int step = 0; step < 2000; step++) {
+                int operation = random.nextInt(10);
+                if (links.isEmpty() || operation < 4) {
+                    double spare = randomCapacity(random);
+                    index.add(nextLightpath, spare);
+                    links.add(new double[] { nextLightpath++, spare });
+                } else if (operation < 8) {
+                    double[] link = links.get(random.nextInt(links.size()));
+                    link[1] = randomCapacity(random);
+                    index.update(positionOf(index, (int) link[0]), link[1]);
+                } else {
+                    double[] link = links.remove(random.nextInt(links.size()));
+                    index.remove(positionOf(index, (int) link[0]));
+                    if (index.needsCompaction()) index.compact();
+                }
+                for (int check = 0; check < 4; check++) {
+                    double traffic = randomCapacity(random);
+                    int expected = -1;
+                    for (double[] link : links) {
+                        if (link[1] >= traffic) {
+                            expected = (int) link[0];
+                            break;
+                        }
+                    }
+                    assertEquals(expected, index.getFirstWithSpareCapacity(traffic), "traffic " + traffic);
+                    assertEquals(expected >= 0, index.hasSpareCapacity(traffic), "traffic " + traffic);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compactKeepsTheCreationOrder() {
+        IPLinkCapacityIndex index = new IPLinkCapacityIndex();
+        for (int lightpath = 0; lightpath < 10; lightpath++) assertEquals(lightpath, index.add(lightpath, 100 - lightpath));
+        for (int position = 0; position < 10; position += 2) index.remove(position);
+        assertEquals(-1, index.getLightpath(4));
+        assertEquals(10, index.size());
+        assertTrue(index.needsCompaction());
+        index.compact();
+        assertFalse(index.needsCompaction());
+        assertEquals(5, index.size());
+        for (int position = 0; position < 5; position++) assertEquals(2 * position + 1, index.getLightpath(position));
+        assertEquals(1, index.getFirstWithSpareCapacity(99));
+        index.update(0, 0);
+        assertEquals(3, index.getFirstWithSpareCapacity(95));
+        assertEquals(-1, index.getFirstWithSpareCapacity(99.5));
+        // the positions after the compaction are the ones of the next additions
+        assertEquals(5, index.add(10, 200));
+        assertEquals(10, index.getFirstWithSpareCapacity(150));
+    }
+
+    // capacities on a coarse grid, so ties between links are frequent
+    private static double randomCapacity(SplittableRandom random) {
+        return 25.0 * random.nextInt(17);
+    }
+
+    private static int positionOf(IPLinkCapacityIndex index, int lightpath) {
+        for (int position = 0; position < index.size(); position++) {
+            if (index.getLightpath(position) == lightpath) return position;
+        }
+        throw new AssertionError("Lightpath " + lightpath + " is not in the index");
+    }
+}
@@ -0,0 +1,76 @@
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Incremental mode (incrementalDemands) on the topology of the repository: the first result of the ramp is the result of
+ * a run of NumberOfDemands demands with the same seed, and every batch adds its demands on top of the previous state,
+ * so the resources used never decrease.
+ */
+public class IncrementalDemandsTest {
+    private static final int NUMBER_OF_DEMANDS = 350;
+    private static final int INCREMENTAL_DEMANDS = 250;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void rampStartsFromTheRunOfTheFirstDemandsAndOnlyAdds() throws IOException {
+        for (String[] transponderMode : new String[][] { { "false", "true" }, { "true", "true" } }) {
+            Path single = Files.createDirectories(folder.resolve("single" + transponderMode[0]));
+            Path ramp = Files.createDirectories(folder.resolve("ramp" + transponderMode[0]));
+            Map<String, String> parameters = new HashMap<>();
+            parameters.put("singleTransponderForAll", transponderMode[0]);
+            parameters.put("singleTransponderType", transponderMode[1]);
+            parameters.put("NumberOfDemands", Integer.toString(NUMBER_OF_DEMANDS));
+            parameters.put("randomSeed", "5");
+            parameters.put("resultFormat", "jsonl");
+            parameters.put("buildNetPlan", "false");
+            parameters.put("candidatePathCache", "");
+
+            parameters.put("resultPath", single.toString());
+            run(parameters);
+            parameters.put("resultPath", ramp.toString());
+            parameters.put("incrementalDemands", Integer.toString(INCREMENTAL_DEMANDS));
+            String message = run(parameters);
+            assertTrue(message.contains("Blocked at"), message);
+
+            List<String> singleRecords = Files.readAllLines(single.resolve(ResultWriter.fileName(ResultWriter.Format.JSONL)));
+            List<String> rampRecords = Files.readAllLines(ramp.resolve(ResultWriter.fileName(ResultWriter.Format.JSONL)));
+            assertEquals(1, singleRecords.size());
+            assertTrue(rampRecords.size() > 1, "at least one batch routed");
+            assertEquals(singleRecords.get(0), rampRecords.get(0));
+            for (int batch = 1; batch < rampRecords.size(); batch++) {
+                String previous = rampRecords.get(batch - 1);
+                String record = rampRecords.get(batch);
+                assertEquals(NUMBER_OF_DEMANDS + batch * INCREMENTAL_DEMANDS, field(record, "demands"), 0);
+                for (String field : new String[] { "number_ZR", "number_LR", "total_Cost" })
+                    assertTrue(field(record, field) >= field(previous, field), field + " of batch " + batch);
+            }
+        }
+    }
+
+    private static String run(Map<String, String> parameters) {
+        NetPlan netPlan = TestTopology.load();
+        Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming algorithm = new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming();
+        return algorithm.executeAlgorithm(netPlan, SweepRunner.withDefaults(algorithm, parameters), new HashMap<>());
+    }
+
+    // numeric field of a flat JSON record
+    private static double field(String record, String name) {
+        Matcher matcher = Pattern.compile("\"" + Pattern.quote(name) + "\":([-0-9.Ee]+)").matcher(record);
+        assertTrue(matcher.find(), name + " in " + record);
+        return Double.parseDouble(matcher.group(1));
+    }
+}
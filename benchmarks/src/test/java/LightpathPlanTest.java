@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Teardown of the LightpathPlan used by the discrete-event mode, against lists of the live lightpaths of each node pair
+ * in creation order: the first IP link with spare capacity, the counters and the freed slots after random lightpath
+ * creations, traffic additions and releases.
+ */
+public class LightpathPlanTest {
+    private static final int NUM_NODES = 4;
+    private static final int NUM_FIBERS = 5;
+    private static final int NUM_SLOTS = 320;
+    private static final Modulation[] MODULATIONS = {
+            new Modulation("QPSK", 200, 8, 3000), new Modulation("16QAM", 400, 8, 600), new Modulation("8QAM", 300, 6, 1500) };
+
+    @Test
+    public void releasedLightpathsAreTornDownAndTheirSlotsFreed() {
+        for (long seed = 1; seed <= 10; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            LightpathPlan plan = new LightpathPlan(NUM_NODES);
+            SpectrumOccupancy spectrum = new SpectrumOccupancy(NUM_FIBERS, NUM_SLOTS);
+            // live lightpaths of each pair (origin * NUM_NODES + destination) in creation order
+            List<List<Integer>> live = new ArrayList<>();
+            for (int pair = 0; pair < NUM_NODES * NUM_NODES; pair++) live.add(new ArrayList<>());
+            // routed demands: lightpaths and traffic
+            List<int[]> demands = new ArrayList<>();
+            List<Double> demandTraffic = new ArrayList<>();
+            long expectedSlots = 0;
+
+            for (int step = 0; step < 3000; step++) {
+                int origin = random.nextInt(NUM_NODES);
+                int destination = random.nextInt(NUM_NODES);
+                double traffic = 50.0 * (1 + random.nextInt(4));
+                List<Integer> pairLightpaths = live.get(origin * NUM_NODES + destination);
+                if (!demands.isEmpty() && random.nextInt(2) == 0) {
+                    int demand = random.nextInt(demands.size());
+                    int[] lightpaths = demands.remove(demand);
+                    double released = demandTraffic.remove(demand);
+                    for (int lightpath : lightpaths) {
+                        if (plan.getCarriedTraffic(lightpath) - released <= 0) {
+                            expectedSlots -= (long) plan.getModulation(lightpath).getChannelSpacing() * plan.getFibers(lightpath).length;
+                            live.get(plan.getOrigin(lightpath) * NUM_NODES + plan.getDestination(lightpath)).remove(Integer.valueOf(lightpath));
+                        }
+                    }
+                    plan.releaseTraffic(released, lightpaths, spectrum);
+                } else {
+                    int expected = -1;
+                    for (int lightpath : pairLightpaths) {
+                        if (plan.getSpareCapacity(lightpath) >= traffic) {
+                            expected = lightpath;
+                            break;
+                        }
+                    }
+                    int lightpath = plan.getFirstWithSpareCapacity(origin, destination, traffic);
+                    assertEquals(expected, lightpath, "pair " + origin + "-" + destination + " traffic " + traffic);
+                    if (lightpath < 0) {
+                        Modulation modulation = MODULATIONS[random.nextInt(MODULATIONS.length)];
+                        int[] fibers = { random.nextInt(NUM_FIBERS), (origin + destination) % NUM_FIBERS };
+                        if (fibers[0] == fibers[1]) fibers = new int[] { fibers[0] };
+                        int firstSlot = spectrum.firstFit(fibers, modulation.getChannelSpacing());
+                        if (firstSlot < 0) continue;
+                        spectrum.allocate(fibers, firstSlot, modulation.getChannelSpacing());
+                        lightpath = plan.addLightpath(origin, destination, fibers, firstSlot, modulation, 100);
+                        pairLightpaths.add(lightpath);
+                        expectedSlots += (long) modulation.getChannelSpacing() * fibers.length;
+                    }
+                    plan.addTraffic(traffic, new int[] { lightpath });
+                    demands.add(new int[] { lightpath });
+                    demandTraffic.add(traffic);
+                }
+
+                int activeLightpaths = 0;
+                for (List<Integer> lightpaths : live) activeLightpaths += lightpaths.size();
+                assertEquals(activeLightpaths, plan.getNumberOfActiveLightpaths());
+                assertEquals(plan.getLightpathsCreated() - plan.getLightpathsTornDown(), activeLightpaths);
+                assertEquals(expectedSlots, plan.getOccupiedSlots());
+            }
+
+            while (!demands.isEmpty()) plan.releaseTraffic(demandTraffic.remove(0), demands.remove(0), spectrum);
+            assertEquals(0, plan.getNumberOfActiveLightpaths());
+            assertEquals(0, plan.getOccupiedSlots());
+            for (int fiber = 0; fiber < NUM_FIBERS; fiber++) assertEquals(0, spectrum.firstFit(new int[] { fiber }, NUM_SLOTS));
+        }
+    }
+
+    @Test
+    public void lightpathWithTrafficIsNotRemoved() {
+        LightpathPlan plan = new LightpathPlan(2);
+        SpectrumOccupancy spectrum = new SpectrumOccupancy(1, 64);
+        spectrum.allocate(new int[] { 0 }, 0, 8);
+        int lightpath = plan.addLightpath(0, 1, new int[] { 0 }, 0, MODULATIONS[0], 100);
+        plan.addTraffic(100, new int[] { lightpath });
+        assertThrows(IllegalStateException.class, () -> plan.removeLightpath(lightpath, spectrum));
+        plan.releaseTraffic(50, new int[] { lightpath }, spectrum);
+        assertEquals(150, plan.getSpareCapacity(lightpath));
+        plan.releaseTraffic(50, new int[] { lightpath }, spectrum);
+        assertEquals(-1, plan.getFirstWithSpareCapacity(0, 1, 0));
+        // the id of the torn down lightpath is reused
+        spectrum.allocate(new int[] { 0 }, 8, 8);
+        assertEquals(lightpath, plan.addLightpath(0, 1, new int[] { 0 }, 8, MODULATIONS[1], 100));
+        assertEquals(1, plan.getNumberOfLightpaths());
+        assertEquals(2, plan.getLightpathsCreated());
+    }
+}
@@ -0,0 +1,166 @@
+import com.net2plan.interfaces.networkDesign.Demand;
+import com.net2plan.interfaces.networkDesign.Link;
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import com.net2plan.interfaces.networkDesign.NetworkLayer;
+import com.net2plan.interfaces.networkDesign.Node;
+import com.net2plan.interfaces.networkDesign.Route;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * The NetPlan built in one pass by LightpathPlan.materialize (buildNetPlan) on the topology of the repository, against
+ * the result record computed from the internal plan, which is the same with buildNetPlan false: the numbers the results
+ * were computed from on the NetPlan when its objects were added one by one (WDM demands per node, average capacity and
+ * occupied capacity of the IP links) and the design it held, one WDM demand and one IP link per lightpath in creation
+ * order, routed on a continuous path, and one route per routed IP demand carrying its traffic, also at a blocked demand.
+ */
+public class NetPlanMaterializationTest {
+    private static final int[] NUMBERS_OF_DEMANDS = { 400, 2000 };
+
+    private static NetPlan topology;
+    private static TopologyIndex sharedTopology;
+    private static int slotsPerFiber;
+    // channel spacing of each datarate of the transponder catalog
+    private static final Map<Double, Set<Double>> channelSpacings = new HashMap<>();
+
+    @TempDir
+    Path folder;
+
+    @BeforeAll
+    public static void loadTopology() {
+        topology = TestTopology.load();
+        Map<String, String> defaults = SweepRunner.withDefaults(new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(), new HashMap<>());
+        sharedTopology = new TopologyIndex(topology, topology.getNetworkLayer("WDM"), Integer.parseInt(defaults.get("k")), Double.parseDouble(defaults.get("maxPropagationDelayMs")));
+        slotsPerFiber = Integer.parseInt(defaults.get("numFrequencySlotsPerFiber"));
+        for (Transponder transponder : TestTopology.transponders().values()) {
+            for (Modulation modulation : transponder.getModulations())
+                channelSpacings.computeIfAbsent((double) modulation.getDatarate(), datarate -> new HashSet<>()).add((double) modulation.getChannelSpacing());
+        }
+    }
+
+    @Test
+    public void netPlanMatchesTheRecordOfThePlan() {
+        boolean blocked = false;
+        for (int numberOfDemands : NUMBERS_OF_DEMANDS) {
+            for (String singleTransponderForAll : new String[] { "false", "true" }) {
+                Map<String, String> parameters = new HashMap<>();
+                parameters.put("singleTransponderForAll", singleTransponderForAll);
+                parameters.put("NumberOfDemands", Integer.toString(numberOfDemands));
+                parameters.put("randomSeed", "7");
+                parameters.put("resultFormat", "jsonl");
+                parameters.put("resultPath", folder.toString());
+                parameters.put("candidatePathCache", "");
+                String name = numberOfDemands + " demands, singleTransponderForAll " + singleTransponderForAll;
+
+                parameters.put("buildNetPlan", "false");
+                Run statsOnly = new Run(parameters);
+                parameters.put("buildNetPlan", "true");
+                Run built = new Run(parameters);
+                assertEquals(statsOnly.message, built.message, name);
+                assertEquals(statsOnly.record, built.record, name);
+                if (built.message.startsWith("Blocked")) blocked = true;
+                // the stats-only NetPlan keeps just the IP demands
+                NetworkLayer statsOnlyIpLayer = statsOnly.netPlan.getNetworkLayer("IP");
+                assertEquals(0, statsOnly.netPlan.getNumberOfLinks(statsOnlyIpLayer), name);
+                assertEquals(0, statsOnly.netPlan.getNumberOfRoutes(statsOnlyIpLayer), name);
+                checkNetPlan(built.netPlan, built.record, name);
+            }
+        }
+        assertTrue(blocked, "a load where a demand is blocked");
+    }
+
+    private static void checkNetPlan(NetPlan netPlan, Map<String, Object> record, String name) {
+        NetworkLayer wdmLayer = netPlan.getNetworkLayer("WDM");
+        NetworkLayer ipLayer = netPlan.getNetworkLayer("IP");
+        int numberOfLightpaths = netPlan.getNumberOfDemands(wdmLayer);
+        assertTrue(numberOfLightpaths > 0, name);
+        assertEquals(numberOfLightpaths, netPlan.getNumberOfLinks(ipLayer), name);
+
+        // the numbers the record was computed from on the NetPlan
+        for (Node node : netPlan.getNodes())
+            assertEquals(record.get("num_demands_Node" + node.getName().replace(' ', '-')), node.getOutgoingDemands(wdmLayer).size(), name + ", node " + node.getName());
+        double capacity = 0;
+        double occupiedCapacity = 0;
+        for (Link ipLink : netPlan.getLinks(ipLayer)) {
+            capacity += ipLink.getCapacity();
+            occupiedCapacity += ipLink.getOccupiedCapacity();
+            assertTrue(ipLink.getOccupiedCapacity() <= ipLink.getCapacity() + 1e-9, name + ", IP link " + ipLink);
+        }
+        assertEquals(((Number) record.get("totalAverageBitrate")).doubleValue(), capacity / numberOfLightpaths, 1e-9, name);
+        assertEquals(((Number) record.get("totalAverageOccupiedBitrate")).doubleValue(), occupiedCapacity / numberOfLightpaths, 1e-9, name);
+
+        // lightpath i: WDM demand i of the channel spacing of the datarate of IP link i, routed on a continuous path
+        Map<Link, Double> occupiedSlots = new HashMap<>();
+        for (int lightpath = 0; lightpath < numberOfLightpaths; lightpath++) {
+            Demand wdmDemand = netPlan.getDemand(lightpath, wdmLayer);
+            Link ipLink = netPlan.getLink(lightpath, ipLayer);
+            String lightpathName = name + ", lightpath " + lightpath;
+            assertEquals(ipLink.getOriginNode(), wdmDemand.getIngressNode(), lightpathName);
+            assertEquals(ipLink.getDestinationNode(), wdmDemand.getEgressNode(), lightpathName);
+            assertTrue(channelSpacings.getOrDefault(ipLink.getCapacity(), new HashSet<>()).contains(wdmDemand.getOfferedTraffic()), lightpathName);
+            List<Route> routes = new ArrayList<>(wdmDemand.getRoutes());
+            assertEquals(1, routes.size(), lightpathName);
+            assertEquals(wdmDemand.getOfferedTraffic(), routes.get(0).getCarriedTraffic(), 1e-9, lightpathName);
+            checkPath(routes.get(0).getSeqLinks(), wdmDemand, lightpathName);
+            for (Link fiber : routes.get(0).getSeqLinks()) occupiedSlots.merge(fiber, wdmDemand.getOfferedTraffic(), Double::sum);
+        }
+        for (Map.Entry<Link, Double> fiber : occupiedSlots.entrySet())
+            assertTrue(fiber.getValue() <= slotsPerFiber, name + ", slots of fiber " + fiber.getKey());
+
+        // every routed IP demand has one route carrying all its traffic
+        int routedDemands = 0;
+        for (Demand ipDemand : netPlan.getDemands(ipLayer)) {
+            List<Route> routes = new ArrayList<>(ipDemand.getRoutes());
+            assertTrue(routes.size() <= 1, name + ", IP demand " + ipDemand);
+            if (routes.isEmpty()) continue;
+            routedDemands++;
+            assertEquals(ipDemand.getOfferedTraffic(), routes.get(0).getCarriedTraffic(), 1e-9, name);
+            checkPath(routes.get(0).getSeqLinks(), ipDemand, name + ", IP demand " + ipDemand);
+        }
+        assertEquals(routedDemands, netPlan.getNumberOfRoutes(ipLayer), name);
+        assertTrue(routedDemands > 0, name);
+    }
+
+    // links from the ingress to the egress node of the demand, each one starting where the previous one ends
+    private static void checkPath(List<Link> links, Demand demand, String name) {
+        assertFalse(links.isEmpty(), name);
+        Node node = demand.getIngressNode();
+        for (Link link : links) {
+            assertEquals(node, link.getOriginNode(), name);
+            node = link.getDestinationNode();
+        }
+        assertEquals(demand.getEgressNode(), node, name);
+    }
+
+    // one run on a copy of the topology: its message ("Blocked" and the exception message if it failed), record and NetPlan
+    private static class Run {
+        final String message;
+        final Map<String, Object> record;
+        final NetPlan netPlan;
+
+        Run(Map<String, String> parameters) {
+            Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming algorithm = new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming(sharedTopology, null);
+            netPlan = topology.copy();
+            String outcome;
+            try {
+                outcome = algorithm.executeAlgorithm(netPlan, SweepRunner.withDefaults(algorithm, parameters), new HashMap<>());
+            } catch (Net2PlanException e) {
+                outcome = "Blocked: " + e.getMessage();
+            }
+            this.message = outcome;
+            this.record = algorithm.buildResultRecord();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * PathPlanCache on the topology of the repository: every plan is checked against its candidate path (segments that
+ * cover it, one region per segment in multiple transponder mode, within the reach of the transponder, best modulation
+ * and cost of the catalog), and the same plans are returned again, also to several threads asking for them at once
+ * (a thread that does not see the plan written by another one computes an equal one).
+ */
+public class PathPlanCacheTest {
+    private static final int K = 5;
+
+    @Test
+    public void plansMatchTheirCandidatePaths() {
+        NetPlan netPlan = TestTopology.load();
+        TopologyIndex topology = new TopologyIndex(netPlan, netPlan.getNetworkLayer("WDM"), K, -1);
+        Map<String, Transponder> transponders = TestTopology.transponders();
+        for (String singleTransponderType : new String[] { null, "METRO", "CORE" }) {
+            PathPlanCache cache = new PathPlanCache(topology, transponders, singleTransponderType);
+            SplittableRandom random = new SplittableRandom(1);
+            int numberOfNodes = topology.getNumberOfNodes();
+            for (int sample = 0; sample < 300; sample++) {
+                int origin = random.nextInt(numberOfNodes);
+                int destination = random.nextInt(numberOfNodes);
+                if (origin == destination) continue;
+                PathPlan[] plans = cache.getPathPlans(origin, destination);
+                int[][] paths = topology.getCandidatePaths(origin, destination);
+                assertEquals(Math.min(paths.length, K), plans.length);
+                for (int p = 0; p < plans.length; p++) {
+                    checkPlan(topology, transponders, singleTransponderType, paths[p], plans[p]);
+                    assertSame(plans[p], cache.getPathPlan(origin, destination, p));
+                }
+                assertNull(cache.getPathPlan(origin, destination, plans.length));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentRequestsShareThePlans() throws Exception {
+        NetPlan netPlan = TestTopology.load();
+        TopologyIndex topology = new TopologyIndex(netPlan, netPlan.getNetworkLayer("WDM"), K, -1);
+        PathPlanCache cache = new PathPlanCache(topology, TestTopology.transponders(), null);
+        int numberOfNodes = topology.getNumberOfNodes();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<PathPlan[][]>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                final long seed = thread;
+                futures.add(executor.submit(() -> {
+                    // every thread asks for all the pairs, in its own order
+                    PathPlan[][] plans = new PathPlan[numberOfNodes * numberOfNodes][];
+                    int[] pairs = shuffledPairs(numberOfNodes, new SplittableRandom(seed));
+                    for (int pair : pairs) {
+                        if (pair / numberOfNodes != pair % numberOfNodes) plans[pair] = cache.getPathPlans(pair / numberOfNodes, pair % numberOfNodes);
+                    }
+                    return plans;
+                }));
+            }
+            PathPlan[][] first = futures.get(0).get();
+            for (Future<PathPlan[][]> future : futures) {
+                PathPlan[][] plans = future.get();
+                for (int pair = 0; pair < plans.length; pair++) {
+                    if (plans[pair] == null) continue;
+                    assertEquals(first[pair].length, plans[pair].length);
+                    for (int p = 0; p < plans[pair].length; p++) assertSamePlan(first[pair][p], plans[pair][p], "pair " + pair + " plan " + p);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void checkPlan(TopologyIndex topology, Map<String, Transponder> transponders, String singleTransponderType, int[] path, PathPlan plan) {
+        RegionIndex regions = topology.getRegions();
+        int[] links = new int[0];
+        for (int segment = 0; segment < plan.getNumberOfSegments(); segment++) {
+            int[] segmentLinks = plan.getSegmentLinks(segment);
+            assertTrue(segmentLinks.length > 0);
+            assertEquals(topology.getLinkOrigin(segmentLinks[0]), plan.getSegmentOrigin(segment));
+            assertEquals(topology.getLinkDestination(segmentLinks[segmentLinks.length - 1]), plan.getSegmentDestination(segment));
+
+            String type = singleTransponderType != null ? singleTransponderType : RegionIndex.getRegionName(regions.getLinkRegion(segmentLinks[0]));
+            if (singleTransponderType == null) {
+                for (int link : segmentLinks) assertEquals(regions.getLinkRegion(segmentLinks[0]), regions.getLinkRegion(link), "one region per segment");
+            }
+            assertEquals(type, plan.getTransponderType(segment));
+            Transponder transponder = transponders.get(type);
+            double length = lengthOf(topology, segmentLinks);
+            // only a single link longer than the reach can not be split
+            assertTrue(length <= transponder.getMaxReach() || segmentLinks.length == 1, "segment of " + length + " km");
+            assertSame(transponder.getBestModulationFormat(length), plan.getModulation(segment));
+            assertEquals(2 * transponder.getCost(), plan.getTransponderCost(segment));
+
+            links = Arrays.copyOf(links, links.length + segmentLinks.length);
+            System.arraycopy(segmentLinks, 0, links, links.length - segmentLinks.length, segmentLinks.length);
+        }
+        assertArrayEquals(path, links, "the segments cover the candidate path");
+        assertEquals(lengthOf(topology, path), plan.getLengthInKm(), 1e-9);
+    }
+
+    private static void assertSamePlan(PathPlan expected, PathPlan plan, String message) {
+        assertEquals(expected.getNumberOfSegments(), plan.getNumberOfSegments(), message);
+        for (int segment = 0; segment < plan.getNumberOfSegments(); segment++) {
+            assertArrayEquals(expected.getSegmentLinks(segment), plan.getSegmentLinks(segment), message);
+            assertSame(expected.getModulation(segment), plan.getModulation(segment), message);
+            assertEquals(expected.getTransponderType(segment), plan.getTransponderType(segment), message);
+            assertEquals(expected.getTransponderCost(segment), plan.getTransponderCost(segment), message);
+        }
+        assertEquals(expected.getLengthInKm(), plan.getLengthInKm(), message);
+    }
+
+    private static double lengthOf(TopologyIndex topology, int[] links) {
+        double length = 0;
+        for (int link : links) length += topology.getLinkLengthInKm(link);
+        return length;
+    }
+
+    private static int[] shuffledPairs(int numberOfNodes, SplittableRandom random) {
+        int[] pairs = new int[numberOfNodes * numberOfNodes];
+        for (int pair = 0; pair < pairs.length; pair++) pairs[pair] = pair;
+        for (int i = pairs.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = pairs[i];
+            pairs[i] = pairs[j];
+            pairs[j] = swap;
+        }
+        return pairs;
+    }
+}
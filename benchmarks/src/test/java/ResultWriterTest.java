@@ -0,0 +1,285 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * ResultWriter against minimal JSON lines and RFC 4180 CSV readers: random records (strings with commas, quotes, line
+ * breaks and control characters, integers, doubles, booleans, NaN and infinite values) read back equal to the ones
+ * written, with missing values for the non finite numbers. CSV records with other fields than the header rejected, and
+ * the records of each writing thread in their order after the background thread.
+ */
+public class ResultWriterTest {
+    private static final String[] FIELDS = { "demands", "total_Cost", "success", "message", "ratio" };
+    private static final String CHARACTERS = "ab ,\"\n\r\t\\{}:;é1";
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void jsonlRecordsAreReadBack() throws Exception {
+        List<Map<String, Object>> records = randomRecords(new SplittableRandom(1), 500);
+        Path file = folder.resolve(ResultWriter.fileName(ResultWriter.Format.JSONL));
+        try (ResultWriter writer = new ResultWriter(file, ResultWriter.Format.JSONL)) {
+            for (Map<String, Object> record : records) writer.write(record);
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(records.size(), lines.size());
+        for (int r = 0; r < records.size(); r++) {
+            Map<String, Object> read = parseJson(lines.get(r));
+            assertEquals(Arrays.asList(FIELDS), new ArrayList<>(read.keySet()), lines.get(r));
+            for (String field : FIELDS) assertEquals(expectedJson(records.get(r).get(field)), read.get(field), field + " of " + lines.get(r));
+        }
+    }
+
+    @Test
+    public void csvRecordsAreReadBack() throws Exception {
+        List<Map<String, Object>> records = randomRecords(new SplittableRandom(2), 500);
+        Path file = folder.resolve(ResultWriter.fileName(ResultWriter.Format.CSV));
+        // the second writer appends to the file of the first one and keeps its header
+        try (ResultWriter writer = new ResultWriter(file, ResultWriter.Format.CSV)) {
+            for (Map<String, Object> record : records.subList(0, 200)) writer.write(record);
+        }
+        try (ResultWriter writer = new ResultWriter(file, ResultWriter.Format.CSV)) {
+            for (Map<String, Object> record : records.subList(200, records.size())) writer.write(record);
+        }
+        List<List<String>> rows = parseCsv(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList(FIELDS), rows.get(0));
+        assertEquals(records.size() + 1, rows.size());
+        for (int r = 0; r < records.size(); r++) {
+            for (int f = 0; f < FIELDS.length; f++)
+                assertEquals(expectedCsv(records.get(r).get(FIELDS[f])), rows.get(r + 1).get(f), FIELDS[f] + " of record " + r);
+        }
+    }
+
+    @Test
+    public void nonFiniteValuesAreMissing() throws Exception {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("nan", Double.NaN);
+        record.put("infinity", Double.POSITIVE_INFINITY);
+        record.put("float", Float.NEGATIVE_INFINITY);
+        record.put("none", null);
+        record.put("zero", 0.0);
+        Path json = folder.resolve("results.jsonl");
+        Path csv = folder.resolve("results.csv");
+        try (ResultWriter jsonWriter = new ResultWriter(json, ResultWriter.Format.JSONL); ResultWriter csvWriter = new ResultWriter(csv, ResultWriter.Format.CSV)) {
+            jsonWriter.write(record);
+            csvWriter.write(record);
+        }
+        assertEquals("{\"nan\":null,\"infinity\":null,\"float\":null,\"none\":null,\"zero\":0.0}", Files.readAllLines(json).get(0));
+        assertEquals(Arrays.asList("nan,infinity,float,none,zero", ",,,,0.0"), Files.readAllLines(csv));
+    }
+
+    @Test
+    public void csvRecordWithOtherFieldsIsRejected() throws Exception {
+        Path file = folder.resolve("results.csv");
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("demands", 10);
+        record.put("total_Cost", 1.5);
+        try (ResultWriter writer = new ResultWriter(file, ResultWriter.Format.CSV)) {
+            writer.write(record);
+            // the same fields in another order are the same columns
+            Map<String, Object> reordered = new LinkedHashMap<>();
+            reordered.put("total_Cost", 2.5);
+            reordered.put("demands", 20);
+            writer.write(reordered);
+        }
+        List<String> written = Files.readAllLines(file);
+        assertEquals(Arrays.asList("demands,total_Cost", "10,1.5", "20,2.5"), written);
+
+        Map<String, Object> extra = new LinkedHashMap<>(record);
+        extra.put("profile_ms", 3);
+        Map<String, Object> missing = new LinkedHashMap<>();
+        missing.put("demands", 10);
+        Map<String, Object> renamed = new LinkedHashMap<>();
+        renamed.put("demands", 10);
+        renamed.put("cost", 1.5);
+        try (ResultWriter writer = new ResultWriter(file, ResultWriter.Format.CSV)) {
+            for (Map<String, Object> other : Arrays.asList(extra, missing, renamed)) {
+                IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> writer.write(other));
+                assertTrue(exception.getMessage().contains(other == missing ? "missing: [total_Cost]" : other == extra ? "[profile_ms]" : "[cost]"), exception.getMessage());
+            }
+        }
+        // nothing of the rejected records is written
+        assertEquals(written, Files.readAllLines(file));
+    }
+
+    @Test
+    public void recordsOfEachThreadKeepTheirOrder() throws Exception {
+        int numThreads = 4;
+        int recordsPerThread = 3000;
+        Path file = folder.resolve("results.jsonl");
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (ResultWriter writer = new ResultWriter(file, ResultWriter.Format.JSONL)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < numThreads; thread++) {
+                final int writerThread = thread;
+                futures.add(executor.submit(() -> {
+                    for (int sequence = 0; sequence < recordsPerThread; sequence++) {
+                        Map<String, Object> record = new LinkedHashMap<>();
+                        record.put("thread", writerThread);
+                        record.put("sequence", sequence);
+                        record.put("padding", "x,\"y\"\n" + sequence);
+                        writer.write(record);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        // every record is on its own line, whole, and after the previous record of its thread
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(numThreads * recordsPerThread, lines.size());
+        int[] next = new int[numThreads];
+        for (String line : lines) {
+            Map<String, Object> record = parseJson(line);
+            int thread = ((Double) record.get("thread")).intValue();
+            int sequence = ((Double) record.get("sequence")).intValue();
+            assertEquals(next[thread]++, sequence, "thread " + thread);
+            assertEquals("x,\"y\"\n" + sequence, record.get("padding"));
+        }
+        for (int thread = 0; thread < numThreads; thread++) assertEquals(recordsPerThread, next[thread]);
+    }
+
+    @Test
+    public void formatOfIgnoresCaseAndBlanks() {
+        assertEquals(ResultWriter.Format.CSV, ResultWriter.formatOf(" Csv"));
+        assertEquals(ResultWriter.Format.JSONL, ResultWriter.formatOf("jsonl"));
+        assertThrows(IllegalArgumentException.class, () -> ResultWriter.formatOf("xml"));
+        assertEquals("results.jsonl", ResultWriter.fileName(ResultWriter.Format.JSONL));
+    }
+
+    // records with the fields of FIELDS, in that order
+    private static List<Map<String, Object>> randomRecords(SplittableRandom random, int count) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("demands", random.nextInt(-5, 100000));
+            int kind = random.nextInt(6);
+            record.put("total_Cost", kind == 0 ? Double.NaN : kind == 1 ? Double.NEGATIVE_INFINITY : kind == 2 ? (double) random.nextInt(1000) : random.nextDouble() * Math.pow(10, random.nextInt(-8, 20)));
+            record.put("success", random.nextBoolean());
+            StringBuilder message = new StringBuilder();
+            for (int c = random.nextInt(12); c > 0; c--) message.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            record.put("message", message.toString());
+            record.put("ratio", random.nextInt(4) == 0 ? null : random.nextInt(3) == 0 ? (Object) Float.NaN : (Object) (float) random.nextDouble());
+            records.add(record);
+        }
+        return records;
+    }
+
+    // value read back from JSON: strings and booleans as written, numbers as doubles, null for the missing values
+    private static Object expectedJson(Object value) {
+        if (value == null) return null;
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return Double.isNaN(number) || Double.isInfinite(number) ? null : Double.valueOf(value.toString());
+        }
+        return value;
+    }
+
+    // text of the CSV field, empty for the missing values
+    private static String expectedCsv(Object value) {
+        Object json = expectedJson(value);
+        return json == null ? "" : value.toString();
+    }
+
+    // flat JSON object of strings, numbers (as doubles), booleans and nulls
+    private static Map<String, Object> parseJson(String line) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        int[] position = { 0 };
+        expect(line, position, '{');
+        while (line.charAt(position[0]) != '}') {
+            if (!object.isEmpty()) expect(line, position, ',');
+            String name = parseJsonString(line, position);
+            expect(line, position, ':');
+            char c = line.charAt(position[0]);
+            Object value;
+            if (c == '"') {
+                value = parseJsonString(line, position);
+            } else {
+                int end = position[0];
+                while (end < line.length() && ",}".indexOf(line.charAt(end)) < 0) end++;
+                String token = line.substring(position[0], end);
+                position[0] = end;
+                value = token.equals("null") ? null : token.equals("true") || token.equals("false") ? (Object) Boolean.valueOf(token) : (Object) Double.valueOf(token);
+            }
+            assertFalse(object.containsKey(name), "field " + name + " twice");
+            object.put(name, value);
+        }
+        assertEquals(line.length() - 1, position[0], "characters after the object: " + line);
+        return object;
+    }
+
+    private static String parseJsonString(String line, int[] position) {
+        expect(line, position, '"');
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            char c = line.charAt(position[0]++);
+            if (c == '"') return text.toString();
+            assertTrue(c >= 0x20, "control character in a JSON string");
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            char escaped = line.charAt(position[0]++);
+            if (escaped == 'u') {
+                text.append((char) Integer.parseInt(line.substring(position[0], position[0] + 4), 16));
+                position[0] += 4;
+            } else {
+                assertTrue(escaped == '"' || escaped == '\\', "escape \\" + escaped);
+                text.append(escaped);
+            }
+        }
+    }
+
+    private static void expect(String line, int[] position, char c) {
+        assertEquals(c, line.charAt(position[0]++), "at " + (position[0] - 1) + " of " + line);
+    }
+
+    // rows of an RFC 4180 file: quoted fields may hold commas, doubled quotes and line breaks, rows end with \n
+    private static List<List<String>> parseCsv(String text) {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i + 1 < text.length() && text.charAt(i + 1) == '"') field.append(text.charAt(++i));
+                else quoted = false;
+            } else if (c == '"') {
+                assertEquals(0, field.length(), "quote inside an unquoted field");
+                quoted = true;
+            } else if (c == ',' || c == '\n') {
+                row.add(field.toString());
+                field.setLength(0);
+                if (c == '\n') {
+                    rows.add(row);
+                    row = new ArrayList<>();
+                }
+            } else {
+                assertNotEquals('\r', c, "carriage return outside a quoted field");
+                field.append(c);
+            }
+        }
+        assertFalse(quoted);
+        assertTrue(row.isEmpty() && field.length() == 0, "last row without line break");
+        return rows;
+    }
+}
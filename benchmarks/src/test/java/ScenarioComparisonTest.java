@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Paired cost differences and paired records of ScenarioComparison on trials with known total_Cost, some of them with a
+ * failed scenario, against the mean and 95% confidence interval computed by hand over the trials where both succeeded.
+ */
+public class ScenarioComparisonTest {
+    private static final int ZR = 0;
+    private static final int LR = 1;
+    private static final int SPLIT = 2;
+
+    @Test
+    public void differenceIsOverTheTrialsWhereBothSucceeded() {
+        List<List<SweepRunner.TrialResult>> trials = new ArrayList<>();
+        // total_Cost of zr_everywhere, lr_everywhere and region_split, NaN for a failed scenario
+        trials.add(trial(0, 10, 30, 8));
+        trials.add(trial(1, 12, 31, 9));
+        trials.add(trial(2, 20, Double.NaN, Double.NaN));
+        trials.add(trial(3, 7, 26, 5));
+        trials.add(trial(4, Double.NaN, 40, 6));
+
+        // differences 2, 3 and 2: mean 7 / 3, sample variance 1 / 3
+        double[] zr = ScenarioComparison.pairedCostDifference(trials, ZR, SPLIT);
+        assertEquals(7.0 / 3, zr[0], 1e-12);
+        assertEquals(1.96 * Math.sqrt(1.0 / 3 / 3), zr[1], 1e-12);
+        assertEquals(3, zr[2]);
+
+        // differences 22, 22, 21 and 34
+        double[] lr = ScenarioComparison.pairedCostDifference(trials, LR, SPLIT);
+        double mean = (22 + 22 + 21 + 34) / 4.0;
+        double variance = (Math.pow(22 - mean, 2) * 2 + Math.pow(21 - mean, 2) + Math.pow(34 - mean, 2)) / 3;
+        assertEquals(mean, lr[0], 1e-12);
+        assertEquals(1.96 * Math.sqrt(variance / 4), lr[1], 1e-9);
+        assertEquals(4, lr[2]);
+
+        // the difference is antisymmetric
+        double[] reversed = ScenarioComparison.pairedCostDifference(trials, SPLIT, ZR);
+        assertEquals(-zr[0], reversed[0], 1e-12);
+        assertEquals(zr[1], reversed[1], 1e-12);
+    }
+
+    @Test
+    public void differenceOfASinglePairHasNoInterval() {
+        List<List<SweepRunner.TrialResult>> trials = Arrays.asList(trial(0, 10, Double.NaN, 4), trial(1, Double.NaN, 3, 5));
+        assertArrayEquals(new double[] { 6, 0, 1 }, ScenarioComparison.pairedCostDifference(trials, ZR, SPLIT));
+        // no trial where both succeeded
+        assertNull(ScenarioComparison.pairedCostDifference(trials, ZR, LR));
+        assertNull(ScenarioComparison.pairedCostDifference(Collections.emptyList(), ZR, SPLIT));
+    }
+
+    @Test
+    public void pairedRecordHasEveryScenarioWithEmptyFieldsWhenFailed() {
+        Map<String, Object> record = ScenarioComparison.buildPairedRecord(trial(7, 10, Double.NaN, 8));
+        assertEquals(1000, record.get("demands"));
+        assertEquals(7, record.get("iteration"));
+        assertEquals(107, record.get("random_seed"));
+        assertEquals(true, record.get("zr_everywhere_success"));
+        assertEquals(10.0, record.get("zr_everywhere_total_Cost"));
+        assertEquals(false, record.get("lr_everywhere_success"));
+        assertEquals("", record.get("lr_everywhere_total_Cost"));
+        assertEquals("", record.get("lr_everywhere_number_ZR"));
+        assertEquals(8.0, record.get("region_split_total_Cost"));
+        // the same fields for every trial, so the paired records can go to one CSV file
+        assertEquals(new ArrayList<>(record.keySet()), new ArrayList<>(ScenarioComparison.buildPairedRecord(trial(8, 1, 2, 3)).keySet()));
+    }
+
+    // results of the three scenarios of a trial of 1000 demands, a NaN cost is a failed scenario (without record)
+    private static List<SweepRunner.TrialResult> trial(int iteration, double... costs) {
+        List<SweepRunner.TrialResult> results = new ArrayList<>();
+        for (double cost : costs) {
+            if (Double.isNaN(cost)) {
+                results.add(new SweepRunner.TrialResult(1000, iteration, 100 + iteration, false, "Demand blocked"));
+                continue;
+            }
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("total_Cost", cost);
+            record.put("number_ZR", 2);
+            record.put("number_LR", 1);
+            record.put("totalAverageOccupiedBitrate", 0.5);
+            results.add(new SweepRunner.TrialResult(1000, iteration, 100 + iteration, true, "ok", record));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,169 @@
+import com.net2plan.interfaces.networkDesign.Net2PlanException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * SpectrumOccupancy against a naive oracle (one boolean per slot and fiber, runs of common free slots found by a linear
+ * scan) after random allocations and releases, so the word summaries are checked through the fits that use them.
+ * Spectrum sizes not multiple of 64 and over 64 words, so the last word and the second summary word are covered.
+ */
+public class SpectrumOccupancyTest {
+    private static final int NUM_FIBERS = 6;
+
+    @Test
+    public void fitsMatchOracleAfterRandomAllocationsAndReleases() {
+        for (int numSlots : new int[] { 70, 130, 4950 }) {
+            for (long seed = 1; seed <= 5; seed++) checkRandomSequence(numSlots, new SplittableRandom(seed));
+        }
+    }
+
+    private static void checkRandomSequence(int numSlots, SplittableRandom random) {
+        SpectrumOccupancy spectrum = new SpectrumOccupancy(NUM_FIBERS, numSlots);
+        boolean[][] oracle = new boolean[NUM_FIBERS][numSlots];
+        // allocated lightpaths: fibers, first slot, number of slots
+        List<int[][]> allocated = new ArrayList<>();
+        int maxWidth = Math.max(2, numSlots / 20);
+        for (int step = 0; step < 600; step++) {
+            if (!allocated.isEmpty() && random.nextInt(3) == 0) {
+                int[][] lightpath = allocated.remove(random.nextInt(allocated.size()));
+                spectrum.deallocate(lightpath[0], lightpath[1][0], lightpath[1][1]);
+                set(oracle, lightpath[0], lightpath[1][0], lightpath[1][1], false);
+            } else {
+                int[] fibers = randomFibers(random);
+                int width = 1 + random.nextInt(maxWidth);
+                SpectrumOccupancy.Policy policy = SpectrumOccupancy.Policy.values()[random.nextInt(3)];
+                int firstSlot = fit(oracle, fibers, width, policy);
+                assertEquals(firstSlot, fit(spectrum, fibers, width, policy), policy + " of " + width + " slots");
+                if (firstSlot >= 0) {
+                    spectrum.allocate(fibers, firstSlot, width);
+                    set(oracle, fibers, firstSlot, width, true);
+                    allocated.add(new int[][] { fibers, { firstSlot, width } });
+                }
+            }
+            for (int check = 0; check < 5; check++) {
+                int[] fibers = randomFibers(random);
+                int width = 1 + random.nextInt(2 * maxWidth);
+                for (SpectrumOccupancy.Policy policy : SpectrumOccupancy.Policy.values())
+                    assertEquals(fit(oracle, fibers, width, policy), fit(spectrum, fibers, width, policy), policy + " of " + width + " slots");
+            }
+        }
+    }
+
+    @Test
+    public void assignUsesThePolicyOfTheOccupancy() {
+        for (SpectrumOccupancy.Policy policy : SpectrumOccupancy.Policy.values()) {
+            SpectrumOccupancy spectrum = new SpectrumOccupancy(1, 100, policy);
+            int[] fiber = { 0 };
+            // free runs: [0, 10) of 10 slots, [20, 24) of 4 slots, [30, 100) of 70 slots
+            spectrum.allocate(fiber, 10, 10);
+            spectrum.allocate(fiber, 24, 6);
+            int expected = policy == SpectrumOccupancy.Policy.FIRST_FIT ? 0 : 20;
+            assertEquals(expected, spectrum.assign(fiber, 4), policy.toString());
+            assertEquals(0, spectrum.assign(fiber, 6), policy.toString());
+            assertEquals(30, spectrum.assign(fiber, 11), policy.toString());
+            assertEquals(-1, spectrum.assign(fiber, 71));
+        }
+        assertEquals(SpectrumOccupancy.Policy.BEST_FIT, SpectrumOccupancy.Policy.policyOf(" bestFit"));
+        assertThrows(IllegalArgumentException.class, () -> SpectrumOccupancy.Policy.policyOf("worstFit"));
+    }
+
+    @Test
+    public void allocateAndDeallocateRejectInvalidSlots() {
+        SpectrumOccupancy spectrum = new SpectrumOccupancy(2, 100);
+        spectrum.allocate(new int[] { 0 }, 10, 5);
+        assertThrows(Net2PlanException.class, () -> spectrum.allocate(new int[] { 1, 0 }, 14, 3));
+        assertThrows(Net2PlanException.class, () -> spectrum.allocate(new int[] { 1 }, 98, 3));
+        // nothing is freed if one of the slots is not occupied
+        assertThrows(Net2PlanException.class, () -> spectrum.deallocate(new int[] { 0 }, 10, 6));
+        assertEquals(15, spectrum.firstFit(new int[] { 0 }, 11));
+        assertEquals(0, spectrum.firstFit(new int[] { 1 }, 100));
+    }
+
+    @Test
+    public void commitAllocatesAllTheReservedSegmentsOrNone() {
+        SpectrumOccupancy spectrum = new SpectrumOccupancy(3, 100);
+        SpectrumOccupancy.Reservation reservation = spectrum.newReservation(3);
+        assertTrue(spectrum.reserve(reservation, 0, new int[] { 0 }, 10));
+        assertTrue(spectrum.reserve(reservation, 2, new int[] { 1, 2 }, 20));
+        assertFalse(spectrum.reserve(reservation, 1, new int[] { 0 }, 101));
+        assertFalse(reservation.isReserved(1));
+        // the slots of a reservation are not occupied until it is committed
+        spectrum.allocate(new int[] { 2 }, 5, 1);
+        assertThrows(Net2PlanException.class, () -> spectrum.commit(reservation));
+        assertEquals(0, spectrum.firstFit(new int[] { 0 }, 100));
+
+        SpectrumOccupancy.Reservation other = spectrum.newReservation(2);
+        assertTrue(spectrum.reserve(other, 0, new int[] { 0 }, 10));
+        assertTrue(spectrum.reserve(other, 1, new int[] { 1, 2 }, 20));
+        assertEquals(6, other.getFirstSlot(1));
+        spectrum.commit(other);
+        assertEquals(10, spectrum.firstFit(new int[] { 0 }, 1));
+        assertEquals(26, spectrum.firstFit(new int[] { 1, 2 }, 6));
+    }
+
+    // one to three distinct fibers, as the links of a path
+    private static int[] randomFibers(SplittableRandom random) {
+        int first = random.nextInt(NUM_FIBERS);
+        int numFibers = 1 + random.nextInt(3);
+        int[] fibers = new int[numFibers];
+        for (int i = 0; i < numFibers; i++) fibers[i] = (first + 2 * i) % NUM_FIBERS;
+        return fibers;
+    }
+
+    private static int fit(SpectrumOccupancy spectrum, int[] fibers, int width, SpectrumOccupancy.Policy policy) {
+        switch (policy) {
+            case FIRST_FIT: return spectrum.firstFit(fibers, width);
+            case BEST_FIT: return spectrum.bestFit(fibers, width);
+            default: return spectrum.exactFit(fibers, width);
+        }
+    }
+
+    // the fit of the policy from the runs of slots free in all the fibers, in slot order
+    private static int fit(boolean[][] oracle, int[] fibers, int width, SpectrumOccupancy.Policy policy) {
+        int numSlots = oracle[0].length;
+        int firstFit = -1;
+        int bestFit = -1;
+        int bestWidth = Integer.MAX_VALUE;
+        int exactFit = -1;
+        int slot = 0;
+        while (slot < numSlots) {
+            if (!isFree(oracle, fibers, slot)) {
+                slot++;
+                continue;
+            }
+            int start = slot;
+            while (slot < numSlots && isFree(oracle, fibers, slot)) slot++;
+            int runWidth = slot - start;
+            if (runWidth < width) continue;
+            if (firstFit < 0) firstFit = start;
+            if (runWidth < bestWidth) {
+                bestFit = start;
+                bestWidth = runWidth;
+            }
+            if (runWidth == width && exactFit < 0) exactFit = start;
+        }
+        switch (policy) {
+            case FIRST_FIT: return firstFit;
+            case BEST_FIT: return bestFit;
+            default: return exactFit >= 0 ? exactFit : firstFit;
+        }
+    }
+
+    private static boolean isFree(boolean[][] oracle, int[] fibers, int slot) {
+        for (int fiber : fibers) {
+            if (oracle[fiber][slot]) return false;
+        }
+        return true;
+    }
+
+    private static void set(boolean[][] oracle, int[] fibers, int firstSlot, int width, boolean occupied) {
+        for (int fiber : fibers) {
+            for (int slot = firstSlot; slot < firstSlot + width; slot++) oracle[fiber][slot] = occupied;
+        }
+    }
+}
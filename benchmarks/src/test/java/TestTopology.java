@@ -0,0 +1,40 @@
+import com.net2plan.interfaces.networkDesign.NetPlan;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/*
+ * Topology and transponder catalog of the heuristic for the tests that need a NetPlan. Tests run from the benchmarks
+ * folder, the topology is read from the repository root unless -Dtopology is given.
+ */
+final class TestTopology {
+    static final String DEFAULT_TOPOLOGY = "../topology/Nokia_topology.n2p";
+
+    private TestTopology() {
+    }
+
+    static NetPlan load() {
+        return new NetPlan(new File(System.getProperty("topology", DEFAULT_TOPOLOGY)));
+    }
+
+    /*
+     * transponders method
+     * The catalog of the heuristic (subregion type -> Transponder), as built by initializeTransponders
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Transponder> transponders() {
+        try {
+            Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming algorithm = new Offline_ipOverWdm_routingSpectrumAndModulationAssignmentHeuristicNotGrooming();
+            Method initialize = algorithm.getClass().getDeclaredMethod("initializeTransponders");
+            initialize.setAccessible(true);
+            initialize.invoke(algorithm);
+            Field transponders = algorithm.getClass().getDeclaredField("transponders");
+            transponders.setAccessible(true);
+            return (Map<String, Transponder>) transponders.get(algorithm);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import com.net2plan.interfaces.networkDesign.NetPlan;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * TrafficGenerator on the topology of the repository: a seed gives the same traffic in any thread, the random streams
+ * continue from one matrix to the next (so batches of a load ramp are the demands of a single larger matrix), and the
+ * demands follow the rules of the traffic classes.
+ */
+public class TrafficGeneratorTest {
+    private static final double PROBABILITY_OF_STARTING_FROM_CORE = 0.5;
+
+    @Test
+    public void sameSeedGivesSameTrafficInAnyThread() throws Exception {
+        NetPlan netPlan = TestTopology.load();
+        TrafficMatrix expected = new TrafficGenerator(netPlan, PROBABILITY_OF_STARTING_FROM_CORE, 7).generateMatrix(2000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<TrafficMatrix>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++)
+                futures.add(executor.submit(() -> new TrafficGenerator(netPlan, PROBABILITY_OF_STARTING_FROM_CORE, 7).generateMatrix(2000)));
+            for (Future<TrafficMatrix> future : futures) assertSameTraffic(expected, 0, future.get(), 0, expected.size());
+        } finally {
+            executor.shutdownNow();
+        }
+        TrafficMatrix other = new TrafficGenerator(netPlan, PROBABILITY_OF_STARTING_FROM_CORE, 8).generateMatrix(2000);
+        boolean differs = false;
+        for (int demand = 0; demand < other.size() && !differs; demand++)
+            differs = other.getSource(demand) != expected.getSource(demand) || other.getDestination(demand) != expected.getDestination(demand);
+        assertTrue(differs, "another seed gives other traffic");
+    }
+
+    @Test
+    public void batchesContinueTheSameStreams() {
+        NetPlan netPlan = TestTopology.load();
+        TrafficMatrix whole = new TrafficGenerator(netPlan, PROBABILITY_OF_STARTING_FROM_CORE, 3).generateMatrix(1750);
+        TrafficGenerator generator = new TrafficGenerator(netPlan, PROBABILITY_OF_STARTING_FROM_CORE, 3);
+        int offset = 0;
+        for (int batch : new int[] { 350, 50, 1, 849, 500 }) {
+            TrafficMatrix part = generator.generateMatrix(batch);
+            assertEquals(batch, part.size());
+            assertSameTraffic(whole, offset, part, 0, batch);
+            offset += batch;
+        }
+    }
+
+    @Test
+    public void demandsFollowTheTrafficClasses() {
+        NetPlan netPlan = TestTopology.load();
+        RegionIndex regions = new RegionIndex(netPlan, netPlan.getNetworkLayer("WDM"));
+        for (double probabilityOfStartingFromCore : new double[] { 0, 0.5, 1 }) {
+            TrafficMatrix traffic = new TrafficGenerator(netPlan, probabilityOfStartingFromCore, 11).generateMatrix(5000);
+            int coreSources = 0;
+            for (int demand = 0; demand < traffic.size(); demand++) {
+                int source = traffic.getSource(demand);
+                int destination = traffic.getDestination(demand);
+                assertNotEquals(source, destination);
+                assertTrue(destination >= 0 && destination < regions.getNumberOfNodes());
+                // the demands of the core nodes are always priority
+                if (regions.isNodeInRegion(source, RegionIndex.REGION_CORE)) {
+                    coreSources++;
+                    assertTrue(traffic.isPriority(demand), "demand " + demand + " from core node " + source);
+                } else {
+                    assertTrue(regions.isNodeInRegion(source, RegionIndex.REGION_METRO));
+                }
+            }
+            // the source is a core node with probability 1 - probabilityOfStartingFromCore
+            if (probabilityOfStartingFromCore == 0) assertEquals(traffic.size(), coreSources);
+            if (probabilityOfStartingFromCore == 1) assertEquals(0, coreSources);
+        }
+    }
+
+    private static void assertSameTraffic(TrafficMatrix expected, int expectedOffset, TrafficMatrix traffic, int offset, int numberOfDemands) {
+        for (int demand = 0; demand < numberOfDemands; demand++) {
+            String message = "demand " + (expectedOffset + demand);
+            assertEquals(expected.getSource(expectedOffset + demand), traffic.getSource(offset + demand), message);
+            assertEquals(expected.getDestination(expectedOffset + demand), traffic.getDestination(offset + demand), message);
+            assertEquals(expected.isPriority(expectedOffset + demand), traffic.isPriority(offset + demand), message);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * YenPathProvider against the enumeration of every loopless path of small random graphs (parallel links included),
+ * sorted by length and filtered by the propagation delay limit, with the same or different propagation speeds.
+ */
+public class YenPathProviderTest {
+    private static final int K = 6;
+
+    @Test
+    public void pathsMatchSortedEnumeration() {
+        for (long seed = 1; seed <= 40; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            Graph graph = randomGraph(random, 4 + random.nextInt(4), false);
+            boolean sameSpeed = seed % 2 == 0;
+            double speedInKmPerMs = 200;
+            for (int link = 0; link < graph.length.length; link++)
+                graph.delay[link] = graph.length[link] / (sameSpeed ? speedInKmPerMs : 100 + 200 * random.nextDouble());
+            // no limit, or one that leaves out the longer paths
+            double maxDelay = seed % 3 == 0 ? 0 : 1.5 + 2 * random.nextDouble();
+            YenPathProvider provider = graph.provider(maxDelay);
+
+            for (int origin = 0; origin < graph.numberOfNodes; origin++) {
+                for (int destination = 0; destination < graph.numberOfNodes; destination++) {
+                    List<int[]> expected = graph.expectedPaths(origin, destination, maxDelay);
+                    // the paths are asked out of order, as the lazy routing asks for the next ones
+                    int first = random.nextInt(K + 1);
+                    checkPath(provider, graph, origin, destination, first, expected);
+                    for (int index = 0; index <= K; index++) checkPath(provider, graph, origin, destination, index, expected);
+                    assertEquals(expected.size(), provider.getNumberOfGeneratedPaths(origin, destination), "pair " + origin + "-" + destination);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pathsOfEqualLengthAreAllFound() {
+        for (long seed = 1; seed <= 20; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            Graph graph = randomGraph(random, 5 + random.nextInt(3), true);
+            YenPathProvider provider = graph.provider(0);
+            for (int origin = 0; origin < graph.numberOfNodes; origin++) {
+                for (int destination = 0; destination < graph.numberOfNodes; destination++) {
+                    List<int[]> expected = graph.expectedPaths(origin, destination, 0);
+                    Set<List<Integer>> found = new HashSet<>();
+                    for (int index = 0; index < K; index++) {
+                        int[] path = provider.getPath(origin, destination, index);
+                        if (index >= expected.size()) {
+                            assertNull(path);
+                            continue;
+                        }
+                        assertNotNull(path);
+                        // ties can come in any order: same lengths, valid and distinct paths
+                        assertEquals(graph.lengthOf(expected.get(index)), graph.lengthOf(path), "path " + index + " of " + origin + "-" + destination);
+                        assertTrue(graph.isLooplessPath(path, origin, destination), Arrays.toString(path));
+                        assertTrue(found.add(toList(path)), "path " + Arrays.toString(path) + " returned twice");
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkPath(YenPathProvider provider, Graph graph, int origin, int destination, int index, List<int[]> expected) {
+        int[] path = provider.getPath(origin, destination, index);
+        if (index < expected.size()) assertArrayEquals(expected.get(index), path, "path " + index + " of " + origin + "-" + destination);
+        else assertNull(path, "path " + index + " of " + origin + "-" + destination);
+        // paths past the k-th are never generated
+        if (index < K) assertTrue(provider.getNumberOfGeneratedPaths(origin, destination) >= Math.min(index + 1, expected.size()));
+    }
+
+    // directed links between random node pairs, some of them parallel; unit lengths if equalLengths
+    private static Graph randomGraph(SplittableRandom random, int numberOfNodes, boolean equalLengths) {
+        List<int[]> links = new ArrayList<>();
+        for (int origin = 0; origin < numberOfNodes; origin++) {
+            for (int destination = 0; destination < numberOfNodes; destination++) {
+                if (origin == destination || random.nextInt(5) >= 2) continue;
+                links.add(new int[] { origin, destination });
+                if (random.nextInt(8) == 0) links.add(new int[] { origin, destination });
+            }
+        }
+        Graph graph = new Graph(numberOfNodes, links.size());
+        for (int link = 0; link < links.size(); link++) {
+            graph.origin[link] = links.get(link)[0];
+            graph.destination[link] = links.get(link)[1];
+            graph.length[link] = equalLengths ? 1 : 50 + 250 * random.nextDouble();
+            graph.delay[link] = graph.length[link] / 200;
+        }
+        return graph;
+    }
+
+    private static List<Integer> toList(int[] path) {
+        List<Integer> list = new ArrayList<>();
+        for (int link : path) list.add(link);
+        return list;
+    }
+
+    private static class Graph {
+        final int numberOfNodes;
+        final int[] origin;
+        final int[] destination;
+        final double[] length;
+        final double[] delay;
+
+        Graph(int numberOfNodes, int numberOfLinks) {
+            this.numberOfNodes = numberOfNodes;
+            this.origin = new int[numberOfLinks];
+            this.destination = new int[numberOfLinks];
+            this.length = new double[numberOfLinks];
+            this.delay = new double[numberOfLinks];
+        }
+
+        YenPathProvider provider(double maxDelay) {
+            return new YenPathProvider(numberOfNodes, K, maxDelay, length, delay, origin, destination);
+        }
+
+        /*
+         * Every loopless path from source to target in length order, the ones within the delay limit among the first
+         * 100 k (the most the provider generates per pair), at most k
+         */
+        List<int[]> expectedPaths(int source, int target, double maxDelay) {
+            List<int[]> paths = new ArrayList<>();
+            if (source != target) enumerate(source, target, new boolean[numberOfNodes], new ArrayList<>(), paths);
+            paths.sort(Comparator.comparingDouble(this::lengthOf));
+            List<int[]> expected = new ArrayList<>();
+            for (int p = 0; p < Math.min(paths.size(), 100 * K) && expected.size() < K; p++) {
+                if (maxDelay <= 0 || delayOf(paths.get(p)) <= maxDelay) expected.add(paths.get(p));
+            }
+            return expected;
+        }
+
+        private void enumerate(int node, int target, boolean[] visited, List<Integer> path, List<int[]> paths) {
+            if (node == target) {
+                int[] links = new int[path.size()];
+                for (int i = 0; i < links.length; i++) links[i] = path.get(i);
+                paths.add(links);
+                return;
+            }
+            visited[node] = true;
+            for (int link = 0; link < origin.length; link++) {
+                if (origin[link] != node || visited[destination[link]]) continue;
+                path.add(link);
+                enumerate(destination[link], target, visited, path, paths);
+                path.remove(path.size() - 1);
+            }
+            visited[node] = false;
+        }
+
+        double lengthOf(int[] path) {
+            double sum = 0;
+            for (int link : path) sum += length[link];
+            return sum;
+        }
+
+        double delayOf(int[] path) {
+            double sum = 0;
+            for (int link : path) sum += delay[link];
+            return sum;
+        }
+
+        boolean isLooplessPath(int[] path, int source, int target) {
+            boolean[] visited = new boolean[numberOfNodes];
+            int node = source;
+            visited[node] = true;
+            for (int link : path) {
+                if (origin[link] != node || visited[destination[link]]) return false;
+                node = destination[link];
+                visited[node] = true;
+            }
+            return node == target;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+ * JFR events of RunProfile, recorded with -XX:StartFlightRecording (or jcmd JFR.start) and shown under "Grooming" in
+ * JDK Mission Control, or printed with: jfr print --events grooming.Phase,grooming.RunSummary recording.jfr
+ * Kept in its own source folder, compiled only on JDKs with jdk.jfr (Java 11, or Java 8 from 8u262), so the rest of the
+ * tree builds on any Java 8. RunProfile loads it by name when profiling is enabled, and emits no event if it is missing.
+ */
+final class RunProfileEvents implements RunProfile.EventSink {
+    RunProfileEvents() {
+    }
+
+    @Override
+    public void phase(String name, long durationNanos) {
+        PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) return;
+        event.phase = name;
+        event.phaseDuration = durationNanos;
+        event.commit();
+    }
+
+    @Override
+    public void summary(RunProfile profile, int numberOfDemands) {
+        RunSummaryEvent event = new RunSummaryEvent();
+        if (!event.isEnabled()) return;
+        event.demands = numberOfDemands;
+        event.candidatePaths = profile.getPhaseNanos(RunProfile.PHASE_CANDIDATE_PATHS);
+        event.trafficGeneration = profile.getPhaseNanos(RunProfile.PHASE_TRAFFIC_GENERATION);
+        event.pathPlans = profile.getPhaseNanos(RunProfile.PHASE_PATH_PLANS);
+        event.demandSorting = profile.getPhaseNanos(RunProfile.PHASE_DEMAND_SORTING);
+        event.routing = profile.getPhaseNanos(RunProfile.PHASE_ROUTING);
+        event.resultWriting = profile.getPhaseNanos(RunProfile.PHASE_RESULT_WRITING);
+        event.spectrumFirstFit = profile.getPhaseNanos(RunProfile.PHASE_SPECTRUM_FIRST_FIT);
+        event.ipLinkScan = profile.getPhaseNanos(RunProfile.PHASE_IP_LINK_SCAN);
+        event.netPlanObjects = profile.getPhaseNanos(RunProfile.PHASE_NETPLAN_OBJECTS);
+        event.firstFitCalls = profile.getCount(RunProfile.COUNT_FIRST_FIT_CALLS);
+        event.ipLinkCandidatesScanned = profile.getCount(RunProfile.COUNT_IP_LINK_CANDIDATES_SCANNED);
+        event.lightpathsCreated = profile.getCount(RunProfile.COUNT_LIGHTPATHS_CREATED);
+        event.pathsRejectedSpectrum = profile.getCount(RunProfile.COUNT_PATHS_REJECTED_SPECTRUM);
+        event.pathsRejectedReach = profile.getCount(RunProfile.COUNT_PATHS_REJECTED_REACH);
+        event.commit();
+    }
+
+    @Name("grooming.Phase")
+    @Label("Heuristic Phase")
+    @Category("Grooming")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Phase Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long phaseDuration;
+    }
+
+    @Name("grooming.RunSummary")
+    @Label("Heuristic Run Summary")
+    @Description("Time per phase and counts of a run, up to the result written last")
+    @Category("Grooming")
+    @StackTrace(false)
+    static class RunSummaryEvent extends Event {
+        @Label("Demands")
+        int demands;
+        @Label("Candidate Paths") @Timespan(Timespan.NANOSECONDS)
+        long candidatePaths;
+        @Label("Traffic Generation") @Timespan(Timespan.NANOSECONDS)
+        long trafficGeneration;
+        @Label("Path Plans") @Timespan(Timespan.NANOSECONDS)
+        long pathPlans;
+        @Label("Demand Sorting") @Timespan(Timespan.NANOSECONDS)
+        long demandSorting;
+        @Label("Routing") @Timespan(Timespan.NANOSECONDS)
+        long routing;
+        @Label("Result Writing") @Timespan(Timespan.NANOSECONDS)
+        long resultWriting;
+        @Label("Spectrum First Fit") @Timespan(Timespan.NANOSECONDS)
+        long spectrumFirstFit;
+        @Label("IP Link Scan") @Timespan(Timespan.NANOSECONDS)
+        long ipLinkScan;
+        @Label("NetPlan Objects") @Timespan(Timespan.NANOSECONDS)
+        long netPlanObjects;
+        @Label("First Fit Calls")
+        long firstFitCalls;
+        @Label("IP Link Candidates Scanned")
+        long ipLinkCandidatesScanned;
+        @Label("Lightpaths Created")
+        long lightpathsCreated;
+        @Label("Paths Rejected For Spectrum")
+        long pathsRejectedSpectrum;
+        @Label("Paths Rejected For Reach")
+        long pathsRejectedReach;
+    }
+}
@@ -38,6 +38,15 @@ else:
         for case in next(os.walk(path_transponder))[1]:
             # for over directories in C<percentage_core> (demands<num_demands>)
             print('\t\t' + case)
+            # consolidated results of SweepRunner (one record per run), loaded with a single read
+            path_case = path_transponder + '/' + case
+            if os.path.exists(path_case + '/results.jsonl'):
+                print('\t\t\tresults.jsonl')
+                results = pd.concat([results, pd.read_json(path_case + '/results.jsonl', lines=True)], ignore_index=True)
+            if os.path.exists(path_case + '/results.csv'):
+                print('\t\t\tresults.csv')
+                results = pd.concat([results, pd.read_csv(path_case + '/results.csv')], ignore_index=True)
+            # one xml file per run (launch.py or resultFormat=xml)
             for demand in next(os.walk(path_transponder + '/' + case))[1]:
                 print('\t\t\t' + demand)
                 # for over files in demands<num_demands> (results<num_demands>)